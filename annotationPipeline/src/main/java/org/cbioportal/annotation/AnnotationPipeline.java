@@ -36,10 +36,13 @@ import org.apache.commons.cli.ParseException;
 import org.cbioportal.annotation.annotationTools.MafMerger;
 import org.cbioportal.annotation.cli.*;
 import org.cbioportal.annotation.pipeline.BatchConfiguration;
+import org.cbioportal.annotation.pipeline.DirectAnnotationRunner;
+import org.cbioportal.annotator.internal.PhaseProfiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.*;
 import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -49,13 +52,26 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 /**
  * @author Mete Ozguz
@@ -66,34 +82,139 @@ public class AnnotationPipeline {
 
     private static final Logger LOG = LoggerFactory.getLogger(AnnotationPipeline.class);
 
-    private static void annotateJob(String[] args, String filename, String outputFilename, String outputFormat, String isoformOverride, String replaceSymbolEntrez,
-                                    String errorReportLocation, String postIntervalSize, String stripMatchingBases,
-                                    Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn) throws Exception {
+    /**
+     * Input, output and error report of one input file. When annotating for several isoform override
+     * sources, the output and error report hold one file per source, separated by commas.
+     */
+    private record AnnotationFiles(String filename, String outputFilename, String errorReportLocation) {}
+
+    private static ConfigurableApplicationContext startApplication(String[] args, String checkpointDatabase, boolean direct) {
         SpringApplication app = new SpringApplication(AnnotationPipeline.class);
         app.setWebApplicationType(WebApplicationType.NONE);
         app.setAllowBeanDefinitionOverriding(Boolean.TRUE);
-        ConfigurableApplicationContext ctx = app.run(args);
-        JobLauncher jobLauncher = ctx.getBean(JobLauncher.class);
-        Job annotationJob = ctx.getBean(BatchConfiguration.ANNOTATION_JOB, Job.class);
-        JobParametersBuilder jobParametersBuilder = new JobParametersBuilder();
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "filename", filename);
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "outputFilename", outputFilename);
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "outputFormat", outputFormat);
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "isoformOverride", isoformOverride);
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "replaceSymbolEntrez", replaceSymbolEntrez);
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "errorReportLocation", errorReportLocation);
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "postIntervalSize", postIntervalSize);
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "stripMatchingBases", stripMatchingBases);
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "ignoreOriginalGenomicLocation", String.valueOf(ignoreOriginalGenomicLocation));
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "addOriginalGenomicLocation", String.valueOf(addOriginalGenomicLocation));
-        addJobParameterIfValueIsNotNull(jobParametersBuilder, "noteColumn", String.valueOf(noteColumn));
-        JobParameters jobParameters = jobParametersBuilder.toJobParameters();
+        Properties properties = new Properties();
+        if (checkpointDatabase != null) {
+            // the job repository outlives the process, so a failed job can be restarted from its last commit
+            properties.setProperty("spring.datasource.url", "jdbc:sqlite:" + checkpointDatabase);
+            properties.setProperty("spring.batch.jdbc.initialize-schema", "always");
+        }
+        if (direct) {
+            // only the beans the direct runner needs are created, not the data source, job repository and job
+            properties.setProperty("spring.main.lazy-initialization", "true");
+        }
+        app.setDefaultProperties(properties);
+        return app.run(args);
+    }
+
+    /**
+     * Job parameters shared by all files annotated with these options
+     */
+    private static JobParameters getSharedJobParameters(Subcommand subcommand, String outputFormat) {
+        JobParametersBuilder sharedJobParametersBuilder = new JobParametersBuilder();
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "outputFormat", outputFormat);
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "replaceSymbolEntrez", subcommand.getOptionValue("replace-symbol-entrez", "true"));
+        // When you change the default value of post-interval-size, do not forget to update MutationRecordReader.postIntervalSize accordingly
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "postIntervalSize", subcommand.getOptionValue("post-interval-size", "100"));
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "stripMatchingBases", subcommand.getOptionValue("strip-matching-bases", "all"));
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "ignoreOriginalGenomicLocation", String.valueOf(subcommand.hasOption("ignore-original-genomic-location")));
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "addOriginalGenomicLocation", String.valueOf(subcommand.hasOption("add-original-genomic-location")));
+        // notecolumn is set to true, can reset to noteColumn parameter if have grouped arguments in the future
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "noteColumn", String.valueOf(true));
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "streamingWindowSize", subcommand.getOptionValue("streaming-window-size"));
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "pipelineDepth", subcommand.getOptionValue("pipeline-depth"));
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "previousOutput", subcommand.getOptionValue("previous-output"));
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "writeRowHashes", String.valueOf(subcommand.hasOption("write-row-hashes")));
+        addJobParameterIfValueIsNotNull(sharedJobParametersBuilder, "partitions", subcommand.getOptionValue("partitions"));
+        return sharedJobParametersBuilder.toJobParameters();
+    }
+
+    /**
+     * @return false when the annotation of a file did not complete
+     */
+    private static boolean annotateJob(String[] args, List<AnnotationFiles> annotationFiles, int concurrentFiles, JobParameters sharedJobParameters,
+                                    String isoformOverride, String checkpointDatabase, boolean direct) throws Exception {
+        ConfigurableApplicationContext ctx = startApplication(args, checkpointDatabase, direct);
+        JobLauncher jobLauncher = direct ? null : ctx.getBean(JobLauncher.class);
+        Job annotationJob = direct ? null : ctx.getBean(BatchConfiguration.ANNOTATION_JOB, Job.class);
+        DirectAnnotationRunner directAnnotationRunner = direct ? ctx.getBean(DirectAnnotationRunner.class) : null;
         Instant annotationStart = Instant.now();
-        JobExecution jobExecution = jobLauncher.run(annotationJob, jobParameters);
+        boolean completed = true;
+        if (annotationFiles.size() == 1) {
+            completed = annotateFile(jobLauncher, annotationJob, directAnnotationRunner, sharedJobParameters, annotationFiles.getFirst(), isoformOverride, checkpointDatabase != null);
+        } else {
+            // all files are annotated by the one annotator of this context, so variants shared by several
+            // files are fetched once and the requests of all files count against the same limit
+            Map<AnnotationFiles, Future<Boolean>> results = new LinkedHashMap<>();
+            try (ExecutorService fileExecutor = Executors.newFixedThreadPool(concurrentFiles, Thread.ofPlatform().name("annotate-file-", 0).factory())) {
+                for (AnnotationFiles files : annotationFiles) {
+                    results.put(files, fileExecutor.submit(() -> annotateFile(jobLauncher, annotationJob, directAnnotationRunner, sharedJobParameters, files, isoformOverride, checkpointDatabase != null)));
+                }
+                int failedFiles = 0;
+                for (Map.Entry<AnnotationFiles, Future<Boolean>> result : results.entrySet()) {
+                    boolean fileCompleted = false;
+                    try {
+                        fileCompleted = result.getValue().get();
+                    } catch (ExecutionException e) {
+                        LOG.error("Annotation of " + result.getKey().filename() + " failed", e.getCause());
+                    }
+                    if (!fileCompleted) {
+                        System.out.println("Annotation of " + result.getKey().filename() + " failed.");
+                        failedFiles++;
+                    }
+                }
+                System.out.println("Annotated " + (annotationFiles.size() - failedFiles) + " of " + annotationFiles.size() + " files.");
+                completed = failedFiles == 0;
+            }
+        }
         System.out.println(" ANNOTATION_TIME: " + Duration.between(annotationStart, Instant.now()).getSeconds() + " secs.");
-        if (!jobExecution.getExitStatus().equals(ExitStatus.COMPLETED)) {
-            System.exit(2);
+        return completed;
+    }
+
+    /**
+     * Runs the annotation job for one input file, one job per isoform override source. With a direct
+     * annotation runner the step of the job is run without the job launcher.
+     *
+     * @return false as soon as a job did not complete
+     */
+    private static boolean annotateFile(JobLauncher jobLauncher, Job annotationJob, DirectAnnotationRunner directAnnotationRunner,
+                                        JobParameters sharedJobParameters, AnnotationFiles files,
+                                        String isoformOverride, boolean restartable) throws Exception {
+        // with several isoform override sources one job is run per source and output file, the first
+        // job annotates the input for all sources and the others only write their output
+        String[] isoformOverrides = isoformOverride != null ? isoformOverride.split(",") : new String[] { null };
+        String[] outputFilenames = isoformOverrides.length > 1 ? files.outputFilename().split(",") : new String[] { files.outputFilename() };
+        String[] errorReportLocations = isoformOverrides.length > 1 && files.errorReportLocation().contains(",") ?
+            files.errorReportLocation().split(",") : Collections.nCopies(isoformOverrides.length, files.errorReportLocation()).toArray(new String[0]);
+        for (int i = 0; i < isoformOverrides.length; i++) {
+            JobParametersBuilder jobParametersBuilder = new JobParametersBuilder(sharedJobParameters);
+            addJobParameterIfValueIsNotNull(jobParametersBuilder, "filename", files.filename());
+            addJobParameterIfValueIsNotNull(jobParametersBuilder, "outputFilename", outputFilenames[i]);
+            addJobParameterIfValueIsNotNull(jobParametersBuilder, "isoformOverride", isoformOverrides[i]);
+            if (isoformOverrides.length > 1) {
+                addJobParameterIfValueIsNotNull(jobParametersBuilder, "isoformOverrides", isoformOverride);
+            }
+            addJobParameterIfValueIsNotNull(jobParametersBuilder, "errorReportLocation", errorReportLocations[i]);
+            if (restartable) {
+                // a changed input starts a new job instead of restarting the one for the old input
+                addJobParameterIfValueIsNotNull(jobParametersBuilder, "inputLastModified", String.valueOf(new File(files.filename()).lastModified()));
+            }
+            JobParameters jobParameters = jobParametersBuilder.toJobParameters();
+            ExitStatus exitStatus;
+            if (directAnnotationRunner != null) {
+                exitStatus = directAnnotationRunner.run(jobParameters);
+            } else {
+                try {
+                    exitStatus = jobLauncher.run(annotationJob, jobParameters).getExitStatus();
+                } catch (JobInstanceAlreadyCompleteException e) {
+                    System.out.println("Annotation of " + files.filename() + " into " + outputFilenames[i] + " was already completed with the same options, nothing to do.");
+                    continue;
+                }
+            }
+            if (!exitStatus.equals(ExitStatus.COMPLETED)) {
+                return false;
+            }
         }
+        return true;
     }
 
     // in Spring Batch 5.x, null valued JobParameters are not allowed. (java.lang.IllegalArgumentException: value must not be null)
@@ -118,6 +239,7 @@ public class AnnotationPipeline {
             if (help || args.length == 0) {
                 AnnotateSubcommand.help();
                 MergeSubcommand.help();
+                ServeSubcommand.help();
                 throw e;
             }
         }
@@ -132,6 +254,8 @@ public class AnnotationPipeline {
             merge(subcommand);
         } else if (subcommand instanceof VersionSubcommand) {
             version((VersionSubcommand) subcommand);
+        } else if (subcommand instanceof ServeSubcommand) {
+            serve(subcommand, args);
         }
     }
 
@@ -220,14 +344,110 @@ public class AnnotationPipeline {
             subcommand.printHelp();
             return;
         }
-        if (!subcommand.hasOption("filename")) {
-            subcommand.printHelp();
-            throw new AnnotationFailedException("required option: filename");
+        List<AnnotationFiles> annotationFiles;
+        if (subcommand.hasOption("batch-file") || subcommand.hasOption("input-mafs-directory")) {
+            annotationFiles = getBatchAnnotationFiles(subcommand);
+        } else {
+            if (!subcommand.hasOption("filename")) {
+                subcommand.printHelp();
+                throw new AnnotationFailedException("required option: filename");
+            }
+            if (!subcommand.hasOption("output-filename")) {
+                subcommand.printHelp();
+                throw new AnnotationFailedException("required option: output-filename");
+            }
+            annotationFiles = Collections.singletonList(new AnnotationFiles(subcommand.getOptionValue("filename"),
+                subcommand.getOptionValue("output-filename"), subcommand.getOptionValue("error-report-location", "")));
+        }
+        String outputFormat = validateAnnotateOptions(subcommand, true);
+        PhaseProfiler.getInstance().setEnabled(subcommand.hasOption("profile"));
+        boolean completed;
+        try (MetricsFileWriter metricsFileWriter = subcommand.hasOption("metrics-file")
+                ? new MetricsFileWriter(Paths.get(subcommand.getOptionValue("metrics-file")), Integer.parseInt(subcommand.getOptionValue("metrics-interval", "10")))
+                : null) {
+            completed = annotateJob(args, annotationFiles, Integer.parseInt(subcommand.getOptionValue("concurrent-files", "4")), getSharedJobParameters(subcommand, outputFormat),
+                    subcommand.getOptionValue("isoform-override"), subcommand.getOptionValue("checkpoint-database"), subcommand.hasOption("direct"));
+        } catch (Exception e) {
+            throw new AnnotationFailedException(e);
+        }
+        if (subcommand.hasOption("profile")) {
+            System.out.print(PhaseProfiler.getInstance().getBreakdown());
         }
-        if (!subcommand.hasOption("output-filename")) {
+        if (!completed) {
+            System.exit(2);
+        }
+    }
+
+    private static void serve(Subcommand subcommand, String[] args) throws AnnotationFailedException {
+        if (subcommand.hasOption("h")) {
             subcommand.printHelp();
-            throw new AnnotationFailedException("required option: output-filename");
+            return;
+        }
+        validatePositiveIntegerOption(subcommand, "port");
+        validatePositiveIntegerOption(subcommand, "concurrent-jobs");
+        InetSocketAddress address = new InetSocketAddress(subcommand.getOptionValue("host", "127.0.0.1"),
+            Integer.parseInt(subcommand.getOptionValue("port", "8181")));
+        // the context, and with it the annotator, its caches and its request limits, is shared by all jobs
+        ConfigurableApplicationContext ctx = startApplication(args, null, false);
+        JobLauncher jobLauncher = ctx.getBean(JobLauncher.class);
+        Job annotationJob = ctx.getBean(BatchConfiguration.ANNOTATION_JOB, Job.class);
+        AnnotationServer server;
+        try {
+            server = new AnnotationServer(address, Integer.parseInt(subcommand.getOptionValue("concurrent-jobs", "4")), jobArgs -> {
+                AnnotateSubcommand jobSubcommand = new AnnotateSubcommand(jobArgs);
+                validateServedAnnotateOptions(jobSubcommand);
+                String outputFormat = validateAnnotateOptions(jobSubcommand, false);
+                AnnotationFiles files = new AnnotationFiles(jobSubcommand.getOptionValue("filename"), jobSubcommand.getOptionValue("output-filename"), "");
+                DirectAnnotationRunner directAnnotationRunner = jobSubcommand.hasOption("direct") ? ctx.getBean(DirectAnnotationRunner.class) : null;
+                return annotateFile(jobLauncher, annotationJob, directAnnotationRunner, getSharedJobParameters(jobSubcommand, outputFormat), files,
+                    jobSubcommand.getOptionValue("isoform-override"), false);
+            });
+        } catch (IOException e) {
+            ctx.close();
+            throw new AnnotationFailedException(e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        System.out.println("Annotating MAF files posted to http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + AnnotationServer.ANNOTATE_PATH);
+    }
+
+    /**
+     * Annotate options that do not apply to a single file posted to the serve subcommand
+     */
+    static void validateServedAnnotateOptions(AnnotateSubcommand subcommand) throws AnnotationFailedException {
+        // the server adds the input and output files of the job, any other value came with the request
+        for (String option : Arrays.asList("filename", "output-filename")) {
+            String[] values = subcommand.getOptionValues(option);
+            if (values == null || values.length != 1) {
+                throw new AnnotationFailedException(option + " is set by the serve subcommand.");
+            }
+        }
+        for (String option : Arrays.asList("help", "error-report-location", "checkpoint-database", "batch-file", "input-mafs-directory",
+            "output-mafs-directory", "concurrent-files", "metrics-file", "metrics-interval", "profile", "previous-output",
+            "write-row-hashes")) {
+            if (subcommand.hasOption(option)) {
+                throw new AnnotationFailedException(option + " can not be used with the serve subcommand.");
+            }
         }
+        // files named in a request would be read on the server, so the columns are given instead of a format file
+        if (subcommand.hasOption("output-format")) {
+            String outputFormat = subcommand.getOptionValue("output-format");
+            if (!("extended".equals(outputFormat) || "minimal".equals(outputFormat) || outputFormat.contains(","))) {
+                throw new AnnotationFailedException("output-format of the serve subcommand is 'minimal', 'extended' or the output columns separated by commas. Supplied outputFormat value: " + outputFormat);
+            }
+        }
+        if (subcommand.hasOption("isoform-override") && subcommand.getOptionValue("isoform-override").contains(",")) {
+            throw new AnnotationFailedException("Only one isoform override source can be used with the serve subcommand.");
+        }
+    }
+
+    /**
+     * Validates the options of an annotation, other than its input and output files
+     *
+     * @param outputFormatFileAllowed whether output-format can name a format file, otherwise it lists the output columns
+     * @return the output format
+     */
+    private static String validateAnnotateOptions(Subcommand subcommand, boolean outputFormatFileAllowed) throws AnnotationFailedException {
         String outputFormat = "";
         if (subcommand.hasOption("output-format")) {
             String outputFormatFile = subcommand.getOptionValue("output-format");
@@ -235,6 +455,8 @@ public class AnnotationPipeline {
                 outputFormat = "extended";
             } else if ("minimal".equals(outputFormatFile)) {
                 outputFormat = "minimal";
+            } else if (!outputFormatFileAllowed) {
+                outputFormat = outputFormatFile;
             } else if (!Files.exists(Paths.get(outputFormatFile))) {
                 String error = "Either file is not exist or outputFormat is not 'minimal' or 'extended'. Supplied outputFormat value: " + outputFormatFile;
                 System.err.println(error);
@@ -254,9 +476,14 @@ public class AnnotationPipeline {
             }
         }
         if (subcommand.hasOption("isoform-override")) {
-            String isoformOverride = subcommand.getOptionValue("isoform-override");
-            if (!(isoformOverride.equals("mskcc") || isoformOverride.equals("uniprot"))) {
-                throw new AnnotationFailedException("Isoform override not valid. Options: 'mskcc' or 'uniprot'.");
+            String[] isoformOverrides = subcommand.getOptionValue("isoform-override").split(",");
+            for (String isoformOverride : isoformOverrides) {
+                if (!(isoformOverride.equals("mskcc") || isoformOverride.equals("uniprot"))) {
+                    throw new AnnotationFailedException("Isoform override not valid. Options: 'mskcc' or 'uniprot'.");
+                }
+            }
+            if (isoformOverrides.length > 1) {
+                validateIsoformOverrideOutputs(subcommand, isoformOverrides);
             }
         }
         if (subcommand.hasOption("replace-symbol-entrez")) {
@@ -272,15 +499,132 @@ public class AnnotationPipeline {
                 throw new AnnotationFailedException("Strip matching bases not valid. Options: 'first', 'all' or 'none'.");
             }
         }
+        validatePositiveIntegerOption(subcommand, "streaming-window-size");
+        validatePositiveIntegerOption(subcommand, "pipeline-depth");
+        if (subcommand.hasOption("pipeline-depth") && !subcommand.hasOption("streaming-window-size")) {
+            throw new AnnotationFailedException("--pipeline-depth requires --streaming-window-size");
+        }
+        validatePositiveIntegerOption(subcommand, "partitions");
+        if (subcommand.hasOption("partitions") && (subcommand.hasOption("streaming-window-size") || subcommand.hasOption("previous-output")
+            || subcommand.hasOption("write-row-hashes"))) {
+            throw new AnnotationFailedException("--partitions can not be combined with --streaming-window-size, --previous-output or --write-row-hashes");
+        }
+        if (subcommand.hasOption("direct") && (subcommand.hasOption("checkpoint-database") || subcommand.hasOption("partitions"))) {
+            throw new AnnotationFailedException("--direct can not be combined with --checkpoint-database or --partitions");
+        }
+        if (subcommand.hasOption("checkpoint-database") && !subcommand.hasOption("streaming-window-size")) {
+            throw new AnnotationFailedException("--checkpoint-database requires --streaming-window-size");
+        }
+        validatePositiveIntegerOption(subcommand, "concurrent-files");
+        validatePositiveIntegerOption(subcommand, "metrics-interval");
+        if (subcommand.hasOption("metrics-interval") && !subcommand.hasOption("metrics-file")) {
+            throw new AnnotationFailedException("--metrics-interval requires --metrics-file");
+        }
+        if (subcommand.hasOption("previous-output") && !new File(subcommand.getOptionValue("previous-output")).isFile()) {
+            throw new AnnotationFailedException("--previous-output not found: " + subcommand.getOptionValue("previous-output"));
+        }
+        return outputFormat;
+    }
+
+    /**
+     * Input and output files of a batch run, either listed in a batch file with an input, output and
+     * optional error report file per line separated by tabs, or every file of an input directory
+     * written to a file of the same name in the output directory.
+     */
+    private static List<AnnotationFiles> getBatchAnnotationFiles(Subcommand subcommand) throws AnnotationFailedException {
+        if (subcommand.hasOption("batch-file") && subcommand.hasOption("input-mafs-directory")) {
+            subcommand.printHelp();
+            throw new AnnotationFailedException("Please choose only one of the following options when running script: --batch-file | --input-mafs-directory");
+        }
+        for (String option : Arrays.asList("filename", "output-filename", "error-report-location", "previous-output")) {
+            if (subcommand.hasOption(option)) {
+                throw new AnnotationFailedException("--" + option + " can not be used with --batch-file or --input-mafs-directory.");
+            }
+        }
+        if (subcommand.hasOption("isoform-override") && subcommand.getOptionValue("isoform-override").contains(",")) {
+            throw new AnnotationFailedException("--batch-file and --input-mafs-directory can not be used with more than one isoform override source.");
+        }
+        List<AnnotationFiles> annotationFiles = new ArrayList<>();
         try {
-            annotateJob(args, subcommand.getOptionValue("filename"), subcommand.getOptionValue("output-filename"), outputFormat, subcommand.getOptionValue("isoform-override"), subcommand.getOptionValue("replace-symbol-entrez", "true"),
-                    subcommand.getOptionValue("error-report-location", ""),
-                    subcommand.getOptionValue("post-interval-size", "100"), subcommand.getOptionValue("strip-matching-bases", "all"), subcommand.hasOption("ignore-original-genomic-location"), subcommand.hasOption("add-original-genomic-location"), true);
-            // When you change the default value of post-interval-size, do not forget to update MutationRecordReader.postIntervalSize accordingly
-            // "replace-symbol-entrez" is true by default
-            // notecolumn is set to true, can reset to noteColumn parameter if have grouped arguments in the future
-        } catch (Exception e) {
+            if (subcommand.hasOption("batch-file")) {
+                List<String> lines = Files.readAllLines(Paths.get(subcommand.getOptionValue("batch-file")));
+                for (int i = 0; i < lines.size(); i++) {
+                    String line = lines.get(i).trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] columns = line.split("\t");
+                    if (columns.length < 2 || columns.length > 3) {
+                        throw new AnnotationFailedException("Line " + (i + 1) + " of --batch-file should hold an input file, an output file and optionally an error report file, separated by tabs: " + line);
+                    }
+                    annotationFiles.add(new AnnotationFiles(columns[0], columns[1], columns.length > 2 ? columns[2] : ""));
+                }
+            } else {
+                if (!subcommand.hasOption("output-mafs-directory")) {
+                    subcommand.printHelp();
+                    throw new AnnotationFailedException("required option with --input-mafs-directory: output-mafs-directory");
+                }
+                Path outputDirectory = Files.createDirectories(Paths.get(subcommand.getOptionValue("output-mafs-directory")));
+                try (Stream<Path> inputFiles = Files.list(Paths.get(subcommand.getOptionValue("input-mafs-directory")))) {
+                    for (Path inputFile : inputFiles.filter(Files::isRegularFile).filter(p -> !p.getFileName().toString().startsWith(".")).sorted().toList()) {
+                        annotationFiles.add(new AnnotationFiles(inputFile.toString(), outputDirectory.resolve(inputFile.getFileName()).toString(), ""));
+                    }
+                }
+            }
+        } catch (IOException e) {
             throw new AnnotationFailedException(e);
         }
+        Set<String> outputFilenames = new HashSet<>();
+        for (AnnotationFiles files : annotationFiles) {
+            if (!new File(files.filename()).isFile()) {
+                throw new AnnotationFailedException("Input file not found: " + files.filename());
+            }
+            if (!outputFilenames.add(files.outputFilename())) {
+                throw new AnnotationFailedException("Output file listed more than once: " + files.outputFilename());
+            }
+        }
+        if (annotationFiles.isEmpty()) {
+            throw new AnnotationFailedException("No input files to annotate.");
+        }
+        return annotationFiles;
+    }
+
+    private static void validateIsoformOverrideOutputs(Subcommand subcommand, String[] isoformOverrides) throws AnnotationFailedException {
+        if (new HashSet<>(Arrays.asList(isoformOverrides)).size() < isoformOverrides.length) {
+            throw new AnnotationFailedException("--isoform-override lists the same isoform override source more than once.");
+        }
+        if (subcommand.getOptionValue("output-filename").split(",").length != isoformOverrides.length) {
+            throw new AnnotationFailedException("--output-filename needs one output file per isoform override source, separated by commas.");
+        }
+        String errorReportLocation = subcommand.getOptionValue("error-report-location", "");
+        if (errorReportLocation.contains(",") && errorReportLocation.split(",").length != isoformOverrides.length) {
+            throw new AnnotationFailedException("--error-report-location needs one error report per isoform override source, separated by commas.");
+        }
+        if (subcommand.hasOption("streaming-window-size")) {
+            throw new AnnotationFailedException("--streaming-window-size can not be used with more than one isoform override source.");
+        }
+        if (subcommand.hasOption("previous-output")) {
+            throw new AnnotationFailedException("--previous-output can not be used with more than one isoform override source.");
+        }
+        if (subcommand.hasOption("write-row-hashes")) {
+            throw new AnnotationFailedException("--write-row-hashes can not be used with more than one isoform override source.");
+        }
+        if (subcommand.hasOption("partitions")) {
+            throw new AnnotationFailedException("--partitions can not be used with more than one isoform override source.");
+        }
+    }
+
+    private static void validatePositiveIntegerOption(Subcommand subcommand, String option) throws AnnotationFailedException {
+        if (subcommand.hasOption(option)) {
+            String value = subcommand.getOptionValue(option);
+            try {
+                if (Integer.parseInt(value) > 0) {
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                // fall through to the error below
+            }
+            throw new AnnotationFailedException("--" + option + " not valid. It should be a positive number, supplied value: " + value);
+        }
     }
 }
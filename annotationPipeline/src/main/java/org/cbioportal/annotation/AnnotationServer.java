@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.cli.ParseException;
+import org.cbioportal.annotation.cli.AnnotateSubcommand;
+import org.cbioportal.annotation.cli.AnnotationFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Local HTTP endpoint of the serve subcommand. A MAF posted to /annotate is annotated with the
+ * options of the annotate subcommand given as query parameters, e.g.
+ * {@code /annotate?isoform-override=mskcc&output-format=minimal}, and the annotated MAF is returned.
+ * Options without a value, such as {@code note-column}, are passed as a parameter without a value.
+ */
+public class AnnotationServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationServer.class);
+    public static final String ANNOTATE_PATH = "/annotate";
+    private static final String INPUT_FILENAME = "input.maf";
+    private static final String OUTPUT_FILENAME = "output.maf";
+    // input and output file options
+    private static final Set<String> SERVER_OPTIONS = Set.of("filename", "output-filename");
+
+    /**
+     * Annotates the file of the --filename argument into the file of the --output-filename argument,
+     * with the other annotate subcommand arguments
+     */
+    @FunctionalInterface
+    public interface FileAnnotator {
+        /**
+         * @return false when the annotation did not complete
+         */
+        boolean annotate(String[] args) throws Exception;
+    }
+
+    private final HttpServer httpServer;
+    private final ExecutorService jobExecutor;
+    private final FileAnnotator fileAnnotator;
+
+    public AnnotationServer(InetSocketAddress address, int concurrentJobs, FileAnnotator fileAnnotator) throws IOException {
+        this.fileAnnotator = fileAnnotator;
+        httpServer = HttpServer.create(address, 0);
+        httpServer.createContext(ANNOTATE_PATH, this::annotate);
+        // a request is handled on one of these threads from upload to response, so at most
+        // concurrentJobs files are annotated at the same time and further requests wait
+        jobExecutor = Executors.newFixedThreadPool(concurrentJobs, Thread.ofPlatform().name("annotation-job-", 0).factory());
+        httpServer.setExecutor(jobExecutor);
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        jobExecutor.shutdownNow();
+    }
+
+    private void annotate(HttpExchange exchange) throws IOException {
+        Path jobDirectory = null;
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "POST the MAF to annotate to " + ANNOTATE_PATH);
+                return;
+            }
+            List<String> args;
+            try {
+                args = getAnnotateArgs(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            // the job writes its input and output files to a directory of its own
+            jobDirectory = Files.createTempDirectory("annotation-job-");
+            Path inputFile = jobDirectory.resolve(INPUT_FILENAME);
+            Path outputFile = jobDirectory.resolve(OUTPUT_FILENAME);
+            try (InputStream requestBody = exchange.getRequestBody()) {
+                Files.copy(requestBody, inputFile);
+            }
+            args.addAll(List.of("--filename", inputFile.toString(), "--output-filename", outputFile.toString()));
+            boolean completed;
+            try {
+                completed = fileAnnotator.annotate(args.toArray(new String[0]));
+            } catch (AnnotationFailedException | ParseException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            } catch (Exception e) {
+                LOG.error("Annotation failed", e);
+                sendError(exchange, 500, "Annotation failed: " + e.getMessage());
+                return;
+            }
+            if (!completed || !Files.exists(outputFile)) {
+                sendError(exchange, 500, "Annotation did not complete, see the server log");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/tab-separated-values; charset=utf-8");
+            // a length of 0 sends the output in chunks as it is read
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                Files.copy(outputFile, responseBody);
+            }
+        } finally {
+            deleteJobDirectory(jobDirectory);
+        }
+    }
+
+    /**
+     * Converts the query parameters of a request to annotate subcommand arguments. Only long option
+     * names are accepted, so that a parameter can not be parsed as another option, such as a short
+     * option with an attached value.
+     */
+    static List<String> getAnnotateArgs(String rawQuery) {
+        List<String> args = new ArrayList<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return args;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int separator = parameter.indexOf('=');
+            String option = URLDecoder.decode(separator < 0 ? parameter : parameter.substring(0, separator), StandardCharsets.UTF_8);
+            String value = separator < 0 ? "" : URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+            if (option.isEmpty() || option.startsWith("-") || option.contains("=") || !AnnotateSubcommand.isLongOption(option)) {
+                throw new IllegalArgumentException("Invalid query parameter: " + parameter);
+            }
+            if (SERVER_OPTIONS.contains(option)) {
+                throw new IllegalArgumentException(option + " is set by the server, post the MAF to annotate as the request body.");
+            }
+            args.add("--" + option);
+            if (!value.isEmpty()) {
+                args.add(value);
+            }
+        }
+        return args;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private static void deleteJobDirectory(Path jobDirectory) {
+        if (jobDirectory == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(jobDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to delete annotation job directory: " + jobDirectory, e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation;
+
+import org.cbioportal.annotator.internal.AnnotationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites a file with the current annotation metrics in the Prometheus text format every interval,
+ * for a node exporter textfile collector or for watching a run with {@code cat}. The file is replaced
+ * atomically so a reader never sees a partially written file, and it is written once more on close so
+ * it ends with the totals of the run.
+ */
+public class MetricsFileWriter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsFileWriter.class);
+
+    private final Path metricsFile;
+    private final ScheduledExecutorService scheduler;
+
+    public MetricsFileWriter(Path metricsFile, int intervalSeconds) {
+        this.metricsFile = metricsFile.toAbsolutePath();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("metrics-file").daemon().factory());
+        scheduler.scheduleAtFixedRate(this::write, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private synchronized void write() {
+        try {
+            Path temporaryFile = metricsFile.resolveSibling(metricsFile.getFileName() + ".tmp");
+            Files.writeString(temporaryFile, AnnotationMetrics.getInstance().toPrometheusText(), StandardCharsets.UTF_8);
+            Files.move(temporaryFile, metricsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // a missed update is not worth failing the annotation for
+            LOG.warn("Failed to write metrics to " + metricsFile + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        write();
+    }
+}
@@ -23,6 +23,13 @@ public class AnnotateSubcommand implements Subcommand {
         commandLine = Subcommands.getCommandLine(args, options);
     }
 
+    /**
+     * @return whether name is the long name of an annotate subcommand option
+     */
+    public static boolean isLongOption(String name) {
+        return options.hasLongOption(name);
+    }
+
     public static void help() {
         Subcommand.help("GenomeNexusAnnotationPipeline annotate", "annotate is the default behavior when subcommand is omitted.\nannotate subcommand options:", options);
     }
@@ -31,16 +38,30 @@ public class AnnotateSubcommand implements Subcommand {
         Options gnuOptions = new Options();
         gnuOptions.addOption("h", "help", false, "shows this help document and quits.")
                 .addOption("f", "filename", true, "Mutation filename")
-                .addOption("o", "output-filename", true, "Output filename (including path)")
+                .addOption("o", "output-filename", true, "Output filename (including path), one per isoform override source separated by commas")
                 .addOption("t", "output-format", true, "extended, minimal or a file path which includes output format (FORMAT EXAMPLE: Chromosome,Hugo_Symbol,Entrez_Gene_Id,Center,NCBI_Build)")
-                .addOption("i", "isoform-override", true, "Isoform Overrides (mskcc or uniprot)")
+                .addOption("i", "isoform-override", true, "Isoform Overrides (mskcc or uniprot). Several sources separated by commas annotate the input once and write one output file per source")
                 .addOption("e", "error-report-location", true, "Error report filename (including path)")
                 .addOption("r", "replace-symbol-entrez", true, "Replace gene symbols and entrez id with what is provided by annotator, by default is set to true")
                 .addOption("p", "post-interval-size", true, "Number of records to make POST requests to Genome Nexus with at a time")
                 .addOption("s", "strip-matching-bases", true, "Strip matching allele bases, options are: first,all,none")
                 .addOption("d", "ignore-original-genomic-location", false, "Ignore original genomic location in input file (columns with prefix 'IGNORE_Genome_Nexus_Original_').")
                 .addOption("a", "add-original-genomic-location", false, "Add original genomic location input columns in the output, name columns with prefix 'IGNORE_Genome_Nexus_Original_')")
-                .addOption("n", "note-column", false, "Add 'Genomic Location Explanation' column for variants that have altered genomic location");
+                .addOption("n", "note-column", false, "Add 'Genomic Location Explanation' column for variants that have altered genomic location")
+                .addOption(null, "streaming-window-size", true, "Read, annotate and write the input in windows of this many records instead of loading the whole file into memory")
+                .addOption(null, "pipeline-depth", true, "With --streaming-window-size, read and annotate up to this many windows ahead while earlier windows are written")
+                .addOption(null, "previous-output", true, "Earlier output of this input to copy unchanged, successfully annotated records from instead of annotating them again")
+                .addOption(null, "write-row-hashes", false, "Write the hashes of the input rows next to the output, so that the output can be given as --previous-output of a later run")
+                .addOption(null, "checkpoint-database", true, "With --streaming-window-size, SQLite file to keep job progress in, so a failed run restarted with the same options continues where it stopped")
+                .addOption(null, "partitions", true, "Split the input into this many genomic ranges that are annotated and converted concurrently, then merged in input order")
+                .addOption(null, "batch-file", true, "File listing one input file, output file and optional error report file per line, separated by tabs, to annotate in one run")
+                .addOption(null, "input-mafs-directory", true, "Directory of input files to annotate in one run, requires --output-mafs-directory")
+                .addOption(null, "output-mafs-directory", true, "Directory to write the output of each file in --input-mafs-directory to, under the same file name")
+                .addOption(null, "concurrent-files", true, "With --batch-file or --input-mafs-directory, number of files annotated at the same time (default 4)")
+                .addOption(null, "direct", false, "Run the reader, annotator and writer directly instead of as a Spring Batch job, which starts faster for small files")
+                .addOption(null, "metrics-file", true, "File to rewrite with live annotation metrics in the Prometheus text format while the annotation runs")
+                .addOption(null, "metrics-interval", true, "With --metrics-file, seconds between updates of the metrics file (default 10)")
+                .addOption(null, "profile", false, "Print the wall time, CPU time and allocations of each annotation phase at the end of the run");
 
         return gnuOptions;
     }
@@ -65,4 +86,11 @@ public class AnnotateSubcommand implements Subcommand {
         return commandLine.getOptionValue(opt, defaultValue);
     }
 
+    /**
+     * @return the values of every occurrence of the option, null when it is not given
+     */
+    public String[] getOptionValues(String opt) {
+        return commandLine.getOptionValues(opt);
+    }
+
 }
@@ -0,0 +1,57 @@
+package org.cbioportal.annotation.cli;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+public class ServeSubcommand implements Subcommand {
+    private static Options options;
+
+    static {
+        options = getOptions();
+    }
+
+    private CommandLine commandLine;
+
+    private ServeSubcommand() {
+    }
+
+    public ServeSubcommand(String[] args) throws ParseException {
+        commandLine = Subcommands.getCommandLine(args, options);
+    }
+
+    public static void help() {
+        Subcommand.help("GenomeNexusAnnotationPipeline serve", "serve keeps the annotator running and annotates the MAF posted to /annotate, with annotate subcommand options as query parameters.\nserve subcommand options:", options);
+    }
+
+    private static Options getOptions() {
+        Options gnuOptions = new Options();
+        gnuOptions.addOption("h", "help", false, "shows this help document and quits.")
+                .addOption(null, "host", true, "Address to listen on, by default 127.0.0.1 so only local clients can connect")
+                .addOption(null, "port", true, "Port to listen on (default 8181)")
+                .addOption(null, "concurrent-jobs", true, "Number of posted files annotated at the same time (default 4)");
+
+        return gnuOptions;
+    }
+
+    @Override
+    public void printHelp() {
+        help();
+    }
+
+    @Override
+    public boolean hasOption(String opt) {
+        return commandLine.hasOption(opt);
+    }
+
+    @Override
+    public String getOptionValue(String opt) {
+        return commandLine.getOptionValue(opt);
+    }
+
+    @Override
+    public String getOptionValue(String opt, String defaultValue) {
+        return commandLine.getOptionValue(opt, defaultValue);
+    }
+
+}
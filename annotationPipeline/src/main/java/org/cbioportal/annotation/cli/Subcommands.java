@@ -14,6 +14,8 @@ public class Subcommands {
                 return new MergeSubcommand(args);
             } else if("version".equals(arg)) {
                 return new VersionSubcommand(args);
+            } else if ("serve".equals(arg)) {
+                return new ServeSubcommand(args);
             }
         }
         throw new NoSubcommandFoundException();
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation.pipeline;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cbioportal.annotator.internal.AnnotationSummaryStatistics;
+import org.cbioportal.models.MutationRecord;
+
+/**
+ * Input records of a partitioned annotation job, split into partitions by the partitioner and
+ * taken by the worker steps, which annotate them concurrently into one partial output each.
+ * The merge step then restores the input order from the row numbers kept with each partition.
+ */
+public class AnnotationPartitions {
+
+    public static class Partition {
+        private List<MutationRecord> mutationRecords;
+        private final int[] rowNumbers;
+        private final String outputFilename;
+
+        public Partition(List<MutationRecord> mutationRecords, int[] rowNumbers, String outputFilename) {
+            this.mutationRecords = mutationRecords;
+            this.rowNumbers = rowNumbers;
+            this.outputFilename = outputFilename;
+        }
+
+        /**
+         * @return the records of the partition, in input order; they are released once taken
+         */
+        public synchronized List<MutationRecord> takeMutationRecords() {
+            List<MutationRecord> records = mutationRecords;
+            mutationRecords = null;
+            return records;
+        }
+
+        /**
+         * @return the input row number of each record of the partition, in ascending order
+         */
+        public int[] getRowNumbers() {
+            return rowNumbers;
+        }
+
+        public String getOutputFilename() {
+            return outputFilename;
+        }
+    }
+
+    public static class Partitions {
+        private final List<Partition> partitions;
+        private final List<String> inputFileHeaders;
+        private final List<String> commentLines;
+        private final AnnotationSummaryStatistics summaryStatistics;
+
+        public Partitions(List<Partition> partitions, List<String> inputFileHeaders, List<String> commentLines, AnnotationSummaryStatistics summaryStatistics) {
+            this.partitions = partitions;
+            this.inputFileHeaders = inputFileHeaders;
+            this.commentLines = commentLines;
+            this.summaryStatistics = summaryStatistics;
+        }
+
+        public List<Partition> getPartitions() {
+            return partitions;
+        }
+
+        public List<String> getInputFileHeaders() {
+            return inputFileHeaders;
+        }
+
+        public List<String> getCommentLines() {
+            return commentLines;
+        }
+
+        public AnnotationSummaryStatistics getSummaryStatistics() {
+            return summaryStatistics;
+        }
+    }
+
+    private final Map<String, Partitions> partitionsByOutput = new HashMap<>();
+
+    public synchronized void put(String outputFilename, Partitions partitions) {
+        partitionsByOutput.put(outputFilename, partitions);
+    }
+
+    public synchronized Partitions get(String outputFilename) {
+        return partitionsByOutput.get(outputFilename);
+    }
+
+    public synchronized Partitions remove(String outputFilename) {
+        return partitionsByOutput.remove(outputFilename);
+    }
+}
@@ -38,12 +38,18 @@ import org.cbioportal.models.AnnotatedRecord;
 import org.springframework.batch.core.*;
 import org.springframework.batch.core.configuration.annotation.*;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.item.*;
+import org.springframework.batch.repeat.CompletionPolicy;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.*;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
 /**
@@ -54,34 +60,120 @@ import org.springframework.transaction.PlatformTransactionManager;
 public class BatchConfiguration
 {
     public static final String ANNOTATION_JOB = "annotationJob";
+    private static final String PARTITIONED = "PARTITIONED";
 
     @Value("${chunk:1000000}")
     private String chunkSize;
 
+    /**
+     * Runs the single step, or with a 'partitions' job parameter the partitioned step followed
+     * by the step merging the partial outputs.
+     */
     @Bean
-    public Job annotationJob(JobRepository jobRepository, Step step)
+    public Job annotationJob(JobRepository jobRepository, PlatformTransactionManager transactionManager)
     {
         return new JobBuilder(ANNOTATION_JOB, jobRepository)
-            .start(step)
+            .start(annotationModeDecider())
+                .on(PARTITIONED).to(partitionedStep(jobRepository, transactionManager)).next(mergePartitionsStep(jobRepository, transactionManager))
+            .from(annotationModeDecider())
+                .on("*").to(step(jobRepository, transactionManager))
+            .end()
             .build();
     }
 
+    @Bean
+    public JobExecutionDecider annotationModeDecider()
+    {
+        return (jobExecution, stepExecution) -> new FlowExecutionStatus(
+            jobExecution.getJobParameters().getString("partitions") != null ? PARTITIONED : FlowExecutionStatus.COMPLETED.getName());
+    }
+
     @Bean
     public AnnotationUtil annotationUtil() {
         return new AnnotationUtil();
     }
 
+    @Bean
+    public IsoformAnnotations isoformAnnotations() {
+        return new IsoformAnnotations();
+    }
+
+    @Bean
+    public AnnotationPartitions annotationPartitions() {
+        return new AnnotationPartitions();
+    }
+
+    @Bean
+    public DirectAnnotationRunner directAnnotationRunner() {
+        return new DirectAnnotationRunner();
+    }
+
     @Bean
     public Step step(JobRepository jobRepository, PlatformTransactionManager transactionManager)
     {
         return new StepBuilder("step", jobRepository)
-            .<AnnotatedRecord, String> chunk(Integer.parseInt(chunkSize), transactionManager)
+            .<AnnotatedRecord, String> chunk(chunkCompletionPolicy(null), transactionManager)
             .reader(reader())
             .processor(processor())
             .writer(writer())
             .build();
     }
 
+    /**
+     * Annotates and converts the partitions of the input concurrently, each in a worker
+     * execution of the single step writing a partial output.
+     */
+    @Bean
+    public Step partitionedStep(JobRepository jobRepository, PlatformTransactionManager transactionManager)
+    {
+        return new StepBuilder("partitionedStep", jobRepository)
+            .partitioner("step", partitioner())
+            .step(step(jobRepository, transactionManager))
+            .taskExecutor(partitionTaskExecutor())
+            .build();
+    }
+
+    @Bean
+    public Step mergePartitionsStep(JobRepository jobRepository, PlatformTransactionManager transactionManager)
+    {
+        return new StepBuilder("mergePartitionsStep", jobRepository)
+            .tasklet(partitionMergeTasklet(), transactionManager)
+            .build();
+    }
+
+    @Bean
+    public TaskExecutor partitionTaskExecutor()
+    {
+        // virtual threads are carried by one platform thread per core, so partitions converting
+        // records use all cores while the others wait for Genome Nexus
+        return new SimpleAsyncTaskExecutor(Thread.ofVirtual().name("annotation-partition-", 0).factory());
+    }
+
+    @Bean
+    @StepScope
+    public GenomicRangePartitioner partitioner()
+    {
+        return new GenomicRangePartitioner();
+    }
+
+    @Bean
+    @StepScope
+    public PartitionMergeTasklet partitionMergeTasklet()
+    {
+        return new PartitionMergeTasklet();
+    }
+
+    /**
+     * In streaming mode chunks are bounded by the streaming window so that the
+     * writer flushes each annotated window instead of holding the whole file.
+     */
+    @Bean
+    @StepScope
+    public CompletionPolicy chunkCompletionPolicy(@Value("#{jobParameters[streamingWindowSize] ?: '0'}") Integer streamingWindowSize)
+    {
+        return new SimpleCompletionPolicy(streamingWindowSize > 0 ? streamingWindowSize : Integer.parseInt(chunkSize));
+    }
+
     @Bean
     @StepScope
     public ItemStreamReader<AnnotatedRecord> reader()
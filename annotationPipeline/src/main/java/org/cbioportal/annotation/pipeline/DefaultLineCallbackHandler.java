@@ -13,7 +13,8 @@ public class DefaultLineCallbackHandler implements LineCallbackHandler {
 
     private static final String[] requiredNames = {"Chromosome", "Start_Position", "End_Position", "Reference_Allele"};
     private final DelimitedLineTokenizer tokenizer;
-    private static List<String> inputFileHeaders;
+    // per handler, readers of different files can check their headers at the same time
+    private final List<String> inputFileHeaders;
 
     /**
      *
@@ -33,7 +34,11 @@ public class DefaultLineCallbackHandler implements LineCallbackHandler {
      * @param tokenizer It can be null if it won't be used for spring batch file operations later on.
      */
     public static void checkHeader(String line, DelimitedLineTokenizer tokenizer) {
-        String[] names = line.split("\t");
+        checkHeader(line, tokenizer, null);
+    }
+
+    private static void checkHeader(String line, DelimitedLineTokenizer tokenizer, List<String> inputFileHeaders) {
+        String[] names = line.split("\t", -1);
         Set<String> nameSet = new HashSet<>();
         nameSet.addAll(Arrays.asList(names));
         for (String requiredName : requiredNames) {
@@ -59,6 +64,6 @@ public class DefaultLineCallbackHandler implements LineCallbackHandler {
 
     @Override
     public void handleLine(String line) {
-        checkHeader(line, tokenizer);
+        checkHeader(line, tokenizer, inputFileHeaders);
     }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation.pipeline;
+
+import org.cbioportal.models.AnnotatedRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Runs the reader, processor and writer of the annotation step in the calling thread, without a
+ * job launcher, job repository or transactions. The step scoped beans are resolved against a step
+ * execution that is never persisted, so a run writes the same output as the annotation job but
+ * can not be restarted and does not support partitions.
+ */
+public class DirectAnnotationRunner {
+
+    @Autowired
+    private ItemStreamReader<AnnotatedRecord> reader;
+
+    @Autowired
+    private MutationRecordProcessor processor;
+
+    @Autowired
+    private ItemStreamWriter<String> writer;
+
+    @Value("${chunk:1000000}")
+    private String chunkSize;
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectAnnotationRunner.class);
+
+    public ExitStatus run(JobParameters jobParameters) {
+        StepExecution stepExecution = new StepExecution("step", new JobExecution(new JobInstance(0L, BatchConfiguration.ANNOTATION_JOB), jobParameters));
+        StepSynchronizationManager.register(stepExecution);
+        try {
+            ExecutionContext ec = stepExecution.getExecutionContext();
+            // the reader puts the header and comment lines into the context, so it is opened before the writer
+            reader.open(ec);
+            try {
+                writer.open(ec);
+                try {
+                    annotate(ec, getChunkSize(jobParameters));
+                } finally {
+                    writer.close();
+                }
+            } finally {
+                reader.close();
+            }
+            return ExitStatus.COMPLETED;
+        } catch (Exception e) {
+            LOG.error("Annotation failed", e);
+            return ExitStatus.FAILED;
+        } finally {
+            StepSynchronizationManager.release();
+        }
+    }
+
+    private void annotate(ExecutionContext ec, int chunkSize) throws Exception {
+        Chunk<String> chunk = new Chunk<>();
+        int readCount = 0;
+        AnnotatedRecord annotatedRecord;
+        while ((annotatedRecord = reader.read()) != null) {
+            String item = processor.process(annotatedRecord);
+            if (item != null) {
+                chunk.add(item);
+            }
+            // chunks end after the same number of read records as in the annotation step
+            if (++readCount == chunkSize) {
+                write(ec, chunk);
+                chunk = new Chunk<>();
+                readCount = 0;
+            }
+        }
+        if (readCount > 0) {
+            write(ec, chunk);
+        }
+    }
+
+    private void write(ExecutionContext ec, Chunk<String> chunk) throws Exception {
+        writer.write(chunk);
+        reader.update(ec);
+        writer.update(ec);
+    }
+
+    private int getChunkSize(JobParameters jobParameters) {
+        int streamingWindowSize = Integer.parseInt(jobParameters.getString("streamingWindowSize", "0"));
+        return streamingWindowSize > 0 ? streamingWindowSize : Integer.parseInt(chunkSize);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cbioportal.annotator.Annotator;
+import org.cbioportal.annotator.internal.AnnotationMetrics;
+import org.cbioportal.annotator.internal.AnnotationSummaryStatistics;
+import org.cbioportal.annotator.internal.PhaseProfiler;
+import org.cbioportal.models.MutationRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Splits the input of a partitioned annotation job into balanced genomic ranges: the records
+ * are ordered by chromosome and start position and cut into ranges of about the same number
+ * of records, so small chromosomes share a partition and large ones are split. Records at the
+ * same position always end up in the same partition, so each variant is looked up only once.
+ */
+public class GenomicRangePartitioner implements Partitioner {
+
+    public static final String PARTITION_INDEX = "partitionIndex";
+    public static final String PARTITION_OUTPUT_FILENAME = "partitionOutputFilename";
+
+    @Value("#{jobParameters[filename]}")
+    private String filename;
+
+    @Value("#{jobParameters[outputFilename]}")
+    private String outputFilename;
+
+    @Value("#{jobParameters[isoformOverride]}")
+    private String isoformOverride;
+
+    @Value("#{jobParameters[partitions] ?: '1'}")
+    private Integer partitionCount;
+
+    @Autowired
+    Annotator annotator;
+
+    @Autowired
+    AnnotationPartitions annotationPartitions;
+
+    private static final Logger LOG = LoggerFactory.getLogger(GenomicRangePartitioner.class);
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        List<String> inputFileHeaders = new ArrayList<>();
+        List<String> commentLines;
+        List<MutationRecord> mutationRecords;
+        LOG.info("Loading records from: " + filename);
+        try (MafFileReader mafReader = new MafFileReader(filename);
+             PhaseProfiler.Timer timer = PhaseProfiler.getInstance().start(PhaseProfiler.Phase.PARSE)) {
+            mafReader.open();
+            if (!mafReader.getHeader().isEmpty()) {
+                new DefaultLineCallbackHandler(null, inputFileHeaders).handleLine(String.join("\t", mafReader.getHeader()));
+            }
+            commentLines = MutationRecordReader.getCommentLines(annotator.getVersion(), isoformOverride, mafReader.getCommentLines());
+            mutationRecords = mafReader.readAll();
+            AnnotationMetrics.getInstance().addRecordsParsed(mutationRecords.size());
+            timer.setRecords(mutationRecords.size()).setBytes(new File(filename).length());
+        }
+        catch (IOException e) {
+            throw new ItemStreamException(e);
+        }
+
+        Map<String, ExecutionContext> executionContexts = new LinkedHashMap<>();
+        List<AnnotationPartitions.Partition> partitions = new ArrayList<>();
+        for (int[] rowNumbers : splitByGenomicRange(mutationRecords, partitionCount)) {
+            List<MutationRecord> partitionRecords = new ArrayList<>(rowNumbers.length);
+            for (int rowNumber : rowNumbers) {
+                partitionRecords.add(mutationRecords.get(rowNumber));
+            }
+            String partitionOutputFilename = outputFilename + ".partition" + partitions.size();
+            ExecutionContext executionContext = new ExecutionContext();
+            executionContext.putInt(PARTITION_INDEX, partitions.size());
+            executionContext.putString(PARTITION_OUTPUT_FILENAME, partitionOutputFilename);
+            executionContexts.put("partition" + partitions.size(), executionContext);
+            partitions.add(new AnnotationPartitions.Partition(partitionRecords, rowNumbers, partitionOutputFilename));
+        }
+        annotationPartitions.put(outputFilename, new AnnotationPartitions.Partitions(partitions, inputFileHeaders, commentLines, new AnnotationSummaryStatistics(annotator)));
+        LOG.info("Split " + String.valueOf(mutationRecords.size()) + " records from: " + filename + " into " + String.valueOf(partitions.size()) + " partitions");
+        return executionContexts;
+    }
+
+    /**
+     * @return the row numbers of the records in each range, in ascending order; no more than
+     * partitionCount ranges, fewer if there are fewer distinct positions
+     */
+    static List<int[]> splitByGenomicRange(List<MutationRecord> mutationRecords, int partitionCount) {
+        int recordCount = mutationRecords.size();
+        String[] chromosomes = new String[recordCount];
+        long[] startPositions = new long[recordCount];
+        Integer[] order = new Integer[recordCount];
+        for (int i = 0; i < recordCount; i++) {
+            chromosomes[i] = normalizeChromosome(mutationRecords.get(i).getCHROMOSOME());
+            startPositions[i] = parseStartPosition(mutationRecords.get(i).getSTART_POSITION());
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer, String>comparing(i -> chromosomes[i]).thenComparingLong(i -> startPositions[i]));
+
+        int rangeSize = (recordCount + Math.max(1, partitionCount) - 1) / Math.max(1, partitionCount);
+        List<int[]> ranges = new ArrayList<>();
+        int start = 0;
+        for (int end = 1; end <= recordCount; end++) {
+            boolean positionChanges = end == recordCount || !chromosomes[order[end - 1]].equals(chromosomes[order[end]])
+                || startPositions[order[end - 1]] != startPositions[order[end]];
+            if (positionChanges && (end - start >= rangeSize || end == recordCount)) {
+                int[] rowNumbers = new int[end - start];
+                for (int i = start; i < end; i++) {
+                    rowNumbers[i - start] = order[i];
+                }
+                Arrays.sort(rowNumbers);
+                ranges.add(rowNumbers);
+                start = end;
+            }
+        }
+        return ranges;
+    }
+
+    private static String normalizeChromosome(String chromosome) {
+        if (chromosome == null) {
+            return "";
+        }
+        return chromosome.regionMatches(true, 0, "chr", 0, 3) ? chromosome.substring(3) : chromosome;
+    }
+
+    private static long parseStartPosition(String startPosition) {
+        if (startPosition == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(startPosition.trim());
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation.pipeline;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cbioportal.annotator.internal.AnnotationSummaryStatistics;
+import org.cbioportal.models.AnnotatedRecord;
+
+/**
+ * Annotated records of an input file for each isoform override source of a run that writes one
+ * output per source. The first job of the run reads the input once and annotates it for every
+ * source, the jobs writing the other outputs take their records from here.
+ */
+public class IsoformAnnotations {
+
+    public static class Result {
+        private final List<AnnotatedRecord> annotatedRecords;
+        private final AnnotationSummaryStatistics summaryStatistics;
+
+        public Result(List<AnnotatedRecord> annotatedRecords, AnnotationSummaryStatistics summaryStatistics) {
+            this.annotatedRecords = annotatedRecords;
+            this.summaryStatistics = summaryStatistics;
+        }
+
+        public List<AnnotatedRecord> getAnnotatedRecords() {
+            return annotatedRecords;
+        }
+
+        public AnnotationSummaryStatistics getSummaryStatistics() {
+            return summaryStatistics;
+        }
+    }
+
+    private final Map<String, Result> results = new HashMap<>();
+
+    public synchronized void put(String filename, String isoformOverride, Result result) {
+        results.put(getKey(filename, isoformOverride), result);
+    }
+
+    /**
+     * Removes and returns the records annotated for the isoform override source, or null when the
+     * input has not been annotated for it yet
+     */
+    public synchronized Result take(String filename, String isoformOverride) {
+        return results.remove(getKey(filename, isoformOverride));
+    }
+
+    private String getKey(String filename, String isoformOverride) {
+        return filename + "|" + isoformOverride;
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation.pipeline;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.cbioportal.annotator.internal.PhaseProfiler;
+import org.cbioportal.models.MutationRecord;
+import org.cbioportal.models.MutationRecordBinder;
+
+/**
+ * Reads the records of a tab separated MAF file on several threads.
+ *
+ * The comment lines and the header are read in a single pass over the start of the file. The
+ * rest of the file is split into fixed size byte ranges that are memory-mapped and parsed on
+ * worker threads, each range owning the lines that start inside it, and records are returned
+ * in file order. Newlines and tabs are searched 8 bytes at a time, which is safe for UTF-8
+ * input because these bytes never occur inside a multi-byte character.
+ *
+ * Like the FlatFileItemReader it replaces, lines starting with '#' are skipped, but quotes
+ * have no special meaning and empty lines are ignored.
+ */
+public class MafFileReader implements Closeable {
+
+    private static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    // mapped past the end of a chunk to finish its last line, the mapping grows for longer lines
+    private static final int LINE_OVERRUN = 64 * 1024;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long NEWLINES = ONES * '\n';
+    private static final long TABS = ONES * '\t';
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path path;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int maxBufferedRecords;
+    private final List<String> commentLines = new ArrayList<>();
+    private String[] columns;
+    private FileChannel channel;
+    private long fileSize;
+    private long bodyStart;
+    private long nextChunkStart;
+    private ExecutorService workers;
+    private final Deque<Future<List<MutationRecord>>> parsedChunks = new ArrayDeque<>();
+    private Iterator<MutationRecord> currentChunk = Collections.emptyIterator();
+    private long readChunkCount = 0L;
+    private long readRecordCount = 0L;
+
+    public MafFileReader(String filename) {
+        this(filename, 0);
+    }
+
+    /**
+     * @param maxBufferedRecords about how many records to parse ahead of the caller, or 0 for no limit
+     */
+    public MafFileReader(String filename, int maxBufferedRecords) {
+        this(filename, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors(), maxBufferedRecords);
+    }
+
+    public MafFileReader(String filename, int chunkSize, int parallelism, int maxBufferedRecords) {
+        this.path = Paths.get(filename);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.maxBufferedRecords = Math.max(0, maxBufferedRecords);
+    }
+
+    public void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileSize = channel.size();
+        readCommentsAndHeader();
+        nextChunkStart = bodyStart;
+        workers = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("maf-reader-", 0).daemon().factory());
+    }
+
+    /**
+     * @return the comment lines found before the header
+     */
+    public List<String> getCommentLines() {
+        return commentLines;
+    }
+
+    /**
+     * @return the header columns, or an empty list if the file only contains comments
+     */
+    public List<String> getHeader() {
+        return columns != null ? Arrays.asList(columns) : Collections.emptyList();
+    }
+
+    /**
+     * @return the next record in file order, or null when there are no more records
+     */
+    public MutationRecord read() throws IOException {
+        while (!currentChunk.hasNext()) {
+            submitChunks();
+            if (parsedChunks.isEmpty()) {
+                return null;
+            }
+            List<MutationRecord> chunk = awaitChunk(parsedChunks.poll());
+            readChunkCount++;
+            readRecordCount += chunk.size();
+            currentChunk = chunk.iterator();
+        }
+        return currentChunk.next();
+    }
+
+    public List<MutationRecord> readAll() throws IOException {
+        List<MutationRecord> records = new ArrayList<>();
+        MutationRecord record;
+        while ((record = read()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+        parsedChunks.clear();
+        currentChunk = Collections.emptyIterator();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void readCommentsAndHeader() throws IOException {
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(0)), 65536);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long position = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            position++;
+            if (b != '\n') {
+                line.write(b);
+            } else if (handleLeadingLine(line)) {
+                bodyStart = position;
+                return;
+            }
+        }
+        handleLeadingLine(line);
+        bodyStart = fileSize;
+    }
+
+    /**
+     * @return true once the header has been read
+     */
+    private boolean handleLeadingLine(ByteArrayOutputStream bytes) {
+        String line = bytes.toString(StandardCharsets.UTF_8);
+        bytes.reset();
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        if (line.startsWith("#")) {
+            commentLines.add(line);
+            return false;
+        }
+        if (line.isEmpty()) {
+            return false;
+        }
+        columns = line.split("\t", -1);
+        return true;
+    }
+
+    private void submitChunks() {
+        // bounded so that streaming readers do not parse the whole file ahead of the consumer
+        int maxChunks = getMaxChunksAhead();
+        while (columns != null && nextChunkStart < fileSize && parsedChunks.size() < maxChunks) {
+            long start = nextChunkStart;
+            long end = Math.min(fileSize, start + chunkSize);
+            nextChunkStart = end;
+            parsedChunks.add(workers.submit(() -> {
+                // the caller times the parse phase, the workers add the CPU time and allocations of parsing to it
+                try (PhaseProfiler.Timer timer = PhaseProfiler.getInstance().startHelper(PhaseProfiler.Phase.PARSE)) {
+                    return parseChunk(start, end);
+                }
+            }));
+        }
+    }
+
+    /**
+     * @return the number of chunks to parse ahead, holding about maxBufferedRecords records when it is set
+     */
+    private int getMaxChunksAhead() {
+        int maxChunks = parallelism * 2;
+        if (maxBufferedRecords > 0) {
+            // the first chunk is parsed on its own to learn how many records a chunk holds
+            long recordsPerChunk = readChunkCount > 0 ? Math.max(1L, readRecordCount / readChunkCount) : maxBufferedRecords;
+            maxChunks = (int) Math.max(1L, Math.min(maxChunks, maxBufferedRecords / recordsPerChunk));
+        }
+        return maxChunks;
+    }
+
+    private List<MutationRecord> awaitChunk(Future<List<MutationRecord>> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading " + path);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to read " + path, e.getCause());
+        }
+    }
+
+    private List<MutationRecord> parseChunk(long start, long end) throws IOException {
+        // the chunk owns every line starting in [start, end), so the mapping starts one byte early to
+        // tell whether the first line starts exactly at start, and extends past end to finish the last line
+        long mapStart = start == bodyStart ? start : start - 1;
+        int limit = (int) (end - mapStart);
+        int mapLength = getMapLength(mapStart, (long) limit + LINE_OVERRUN);
+        MappedByteBuffer buffer = map(mapStart, mapLength);
+        int position = 0;
+        if (mapStart != start) {
+            int firstLineEnd;
+            while ((firstLineEnd = indexOf(buffer, 0, mapLength, NEWLINES)) < 0 && mapStart + mapLength < fileSize) {
+                mapLength = growMapLength(mapStart, mapLength, 0);
+                buffer = map(mapStart, mapLength);
+            }
+            position = firstLineEnd + 1;
+            if (position == 0) {
+                return Collections.emptyList();
+            }
+        }
+        MutationRecordBinder binder = new MutationRecordBinder(columns);
+        List<MutationRecord> records = new ArrayList<>();
+        String[] values = new String[columns.length];
+        byte[] line = new byte[4096];
+        while (position < limit) {
+            int lineEnd;
+            while ((lineEnd = indexOf(buffer, position, mapLength, NEWLINES)) < 0 && mapStart + mapLength < fileSize) {
+                mapLength = growMapLength(mapStart, mapLength, position);
+                buffer = map(mapStart, mapLength);
+            }
+            if (lineEnd < 0) {
+                lineEnd = mapLength;
+            }
+            int length = lineEnd - position;
+            if (length > 0 && buffer.get(position + length - 1) == '\r') {
+                length--;
+            }
+            if (length > 0 && buffer.get(position) != '#') {
+                if (line.length < length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                buffer.get(position, line, 0, length);
+                splitFields(line, length, values, mapStart + position);
+                records.add(binder.bind(values));
+            }
+            position = lineEnd + 1;
+        }
+        return records;
+    }
+
+    private MappedByteBuffer map(long mapStart, int mapLength) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapLength);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private int getMapLength(long mapStart, long length) {
+        return (int) Math.min(fileSize - mapStart, Math.min(length, Integer.MAX_VALUE));
+    }
+
+    /**
+     * @return the length of a mapping twice as long, for a line starting at position that does not end inside the mapping
+     */
+    private int growMapLength(long mapStart, int mapLength, int position) throws IOException {
+        if (mapLength == Integer.MAX_VALUE) {
+            throw new IOException("Line starting at byte " + (mapStart + position) + " of " + path + " is too long");
+        }
+        return getMapLength(mapStart, mapLength * 2L);
+    }
+
+    private void splitFields(byte[] line, int length, String[] values, long lineOffset) throws IOException {
+        int field = 0;
+        int fieldStart = 0;
+        int tab;
+        while ((tab = indexOf(line, fieldStart, length, TABS)) >= 0) {
+            if (field == values.length - 1) {
+                throw new IOException("Line starting at byte " + lineOffset + " of " + path + " has more than "
+                    + values.length + " columns");
+            }
+            values[field++] = new String(line, fieldStart, tab - fieldStart, StandardCharsets.UTF_8);
+            fieldStart = tab + 1;
+        }
+        if (field != values.length - 1) {
+            throw new IOException("Line starting at byte " + lineOffset + " of " + path + " has " + (field + 1)
+                + " columns, expected " + values.length);
+        }
+        values[field] = new String(line, fieldStart, length - fieldStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param pattern the byte to find, repeated in all 8 bytes of a long
+     * @return the index of the first matching byte in [from, to), or -1
+     */
+    static int indexOf(byte[] bytes, int from, int to, long pattern) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            int match = firstMatchingByte((long) LONGS.get(bytes, i) ^ pattern);
+            if (match < Long.BYTES) {
+                return i + match;
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == (byte) pattern) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(MappedByteBuffer buffer, int from, int to, long pattern) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            int match = firstMatchingByte(buffer.getLong(i) ^ pattern);
+            if (match < Long.BYTES) {
+                return i + match;
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == (byte) pattern) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param word 8 little endian bytes xor'ed with the pattern, so matching bytes are zero
+     * @return the index of the first zero byte, or 8 if there is none
+     */
+    private static int firstMatchingByte(long word) {
+        long zeroBytes = (word - ONES) & ~word & HIGH_BITS;
+        return Long.numberOfTrailingZeros(zeroBytes) >>> 3;
+    }
+}
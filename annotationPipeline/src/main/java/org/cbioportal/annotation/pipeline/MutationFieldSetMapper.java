@@ -33,6 +33,7 @@
 package org.cbioportal.annotation.pipeline;
 
 import org.cbioportal.models.MutationRecord;
+import org.cbioportal.models.MutationRecordBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.file.mapping.FieldSetMapper;
@@ -48,6 +49,9 @@ import org.springframework.validation.BindException;
 public class MutationFieldSetMapper implements  FieldSetMapper<MutationRecord> {
     private final Logger LOG = LoggerFactory.getLogger(MutationFieldSetMapper.class);
 
+    // every line of a MAF has the same columns, so the setters are only resolved again if the names change
+    private MutationRecordBinder binder;
+
     /**
      * Maps a single line of a MAF file into a MutationRecord
      *
@@ -57,21 +61,15 @@ public class MutationFieldSetMapper implements  FieldSetMapper<MutationRecord> {
      */
     @Override
     public MutationRecord mapFieldSet(FieldSet fs) throws BindException {
-        MutationRecord record = new MutationRecord();
-        for (String field : fs.getNames()) {
-            try {
-                record.getClass().getMethod("set" + field.toUpperCase(), String.class).invoke(record, fs.readRawString(field));
-            }
-            catch (NoSuchMethodException e) {
-                record.addAdditionalProperty(field, fs.readRawString(field));
-            }
-            catch (IllegalArgumentException e) {
-                LOG.debug("No such field inside of MutationRecord: " + field);
-            }
-            catch (Exception e) {
-                LOG.error("Unexpected behavior for the field: " + field + ". Contact devs.");
-            }
+        String[] names = fs.getNames();
+        if (binder == null || !binder.isBinderFor(names)) {
+            binder = new MutationRecordBinder(names);
+            LOG.debug("Resolved MutationRecord setters for " + names.length + " columns");
+        }
+        String[] values = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = fs.readRawString(names[i]);
         }
-        return record;
+        return binder.bind(values);
     }
 }
@@ -32,11 +32,12 @@
 
 package org.cbioportal.annotation.pipeline;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.cbioportal.annotator.internal.PhaseProfiler;
 import org.cbioportal.models.AnnotatedRecord;
+import org.cbioportal.models.RecordAccessors;
 import org.springframework.batch.item.ItemProcessor;
-import java.util.List;
-import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 
 /**
@@ -47,6 +48,12 @@ public class MutationRecordProcessor implements ItemProcessor<AnnotatedRecord, S
     @Value("#{stepExecutionContext['mutation_header']}")
     private List<String> header;
 
+    // getters for the header columns, resolved on the first record; null entries are additional properties
+    private Class<?> encodedRecordClass;
+    private Function<AnnotatedRecord, Object>[] getters;
+    private final StringBuilder row = new StringBuilder();
+    private final PhaseProfiler profiler = PhaseProfiler.getInstance();
+
     public MutationRecordProcessor() {
     }
 
@@ -56,15 +63,53 @@ public class MutationRecordProcessor implements ItemProcessor<AnnotatedRecord, S
 
     @Override
     public String process(AnnotatedRecord annotatedRecord) throws Exception {
-        List<String> record = new ArrayList();
-        for (String field : header) {
-            try {
-                record.add(annotatedRecord.getClass().getMethod("get" + field.toUpperCase()).invoke(annotatedRecord).toString().trim());
+        if (!profiler.isEnabled()) {
+            return encode(annotatedRecord);
+        }
+        try (PhaseProfiler.Timer timer = profiler.start(PhaseProfiler.Phase.ENCODE)) {
+            String encodedRecord = encode(annotatedRecord);
+            timer.setRecords(1).setBytes(encodedRecord.length());
+            return encodedRecord;
+        }
+    }
+
+    private String encode(AnnotatedRecord annotatedRecord) {
+        if (annotatedRecord.getClass() != encodedRecordClass) {
+            compileGetters(annotatedRecord.getClass());
+        }
+        row.setLength(0);
+        for (int i = 0; i < getters.length; i++) {
+            if (i > 0) {
+                row.append('\t');
             }
-            catch (Exception e) {
-                record.add(annotatedRecord.getAdditionalProperties().getOrDefault(field,"").trim());
+            Object value = getters[i] != null ? getters[i].apply(annotatedRecord) : null;
+            if (value == null) {
+                // fields without a getter, or with no value set, are looked up in the additional properties
+                value = annotatedRecord.getAdditionalProperties().getOrDefault(header.get(i), "");
             }
-        }        
-        return StringUtils.join(record, "\t");
-    }   
+            appendTrimmed(value != null ? value.toString() : "");
+        }
+        return row.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void compileGetters(Class<? extends AnnotatedRecord> recordClass) {
+        getters = new Function[header.size()];
+        for (int i = 0; i < header.size(); i++) {
+            getters[i] = RecordAccessors.getGetter(recordClass, header.get(i));
+        }
+        encodedRecordClass = recordClass;
+    }
+
+    private void appendTrimmed(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        row.append(value, start, end);
+    }
 }
@@ -33,19 +33,25 @@
 package org.cbioportal.annotation.pipeline;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.cbioportal.annotator.internal.AnnotationMetrics;
 import org.cbioportal.annotator.internal.AnnotationSummaryStatistics;
+import org.cbioportal.annotator.internal.PhaseProfiler;
 import org.cbioportal.annotator.Annotator;
 import org.cbioportal.format.ExtendedMafFormat;
 import org.cbioportal.models.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.*;
-import org.springframework.batch.item.file.*;
-import org.springframework.batch.item.file.mapping.DefaultLineMapper;
-import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.beans.factory.annotation.*;
-import org.springframework.core.io.FileSystemResource;
 
 /**
  * <pre>
@@ -60,17 +66,34 @@ import org.springframework.core.io.FileSystemResource;
  */
 public class MutationRecordReader implements ItemStreamReader<AnnotatedRecord> {
 
+    // number of records handed to the step, saved at every commit so a restarted job can skip them
+    private static final String READ_RECORDS_COUNT = "read_records_count";
+    // failed annotations of the committed records, added back to the statistics of a restarted job
+    private static final String COMMITTED_FAILURES = "committed_failures";
+
     private List<String> inputFileHeaders = new ArrayList<>();
 
     @Value("#{jobParameters[filename]}")
     private String filename;
 
+    @Value("#{jobParameters[outputFilename]}")
+    private String outputFilename;
+
+    @Value("#{jobParameters[previousOutput] ?: ''}")
+    private String previousOutputFilename;
+
+    @Value("#{jobParameters[writeRowHashes] ?: 'false'}")
+    private Boolean writeRowHashes;
+
     @Value("#{T(java.lang.Boolean).valueOf(jobParameters['replaceSymbolEntrez'] ?: 'true')}")
     private Boolean replaceSymbolEntrez;
 
     @Value("#{jobParameters[isoformOverride]}")
     private String isoformOverride;
 
+    @Value("#{jobParameters[isoformOverrides] ?: ''}")
+    private String isoformOverrides;
+
     @Value("#{jobParameters[errorReportLocation] ?: ''}")
     private String errorReportLocation;
 
@@ -92,95 +115,501 @@ public class MutationRecordReader implements ItemStreamReader<AnnotatedRecord> {
     @Value("#{jobParameters[noteColumn] ?: 'true'}")
     private Boolean noteColumn;
 
+    @Value("#{jobParameters[streamingWindowSize] ?: '0'}")
+    private Integer streamingWindowSize;
+
+    @Value("#{jobParameters[pipelineDepth] ?: '0'}")
+    private Integer pipelineDepth;
+
+    @Value("#{stepExecutionContext['partitionIndex']}")
+    private Integer partitionIndex;
+
     private AnnotationSummaryStatistics summaryStatistics;
-    private List<AnnotatedRecord> allAnnotatedRecords = new ArrayList<>();
+    // columns of a custom output format, passed with every annotator call since the annotator is shared by concurrent jobs
+    private List<String> outputColumns;
+    private Deque<AnnotatedRecord> annotatedRecordsBuffer = new ArrayDeque<>();
+    private final AnnotationMetrics metrics = AnnotationMetrics.getInstance();
     private Set<String> header = new LinkedHashSet<>();
+    private MafFileReader streamingReader;
+    private PipelinedWindowAnnotator pipeline;
+    private int streamedRecordsCount = 0;
+    private int readRecordsCount = 0;
+    // failures counted once each streamed window was annotated, keyed by the number of records read up to the end of the window
+    private final Queue<WindowFailures> windowFailures = new ConcurrentLinkedQueue<>();
+    private AnnotationSummaryStatistics.Failures committedFailures;
+    private PreviousOutput previousOutput;
+    private BufferedWriter rowHashesWriter;
 
     @Autowired
     Annotator annotator;
 
+    @Autowired
+    IsoformAnnotations isoformAnnotations;
+
+    @Autowired
+    AnnotationPartitions annotationPartitions;
+
     private static final Logger LOG = LoggerFactory.getLogger(MutationRecordReader.class);
 
+    private record WindowFailures(int recordsCount, AnnotationSummaryStatistics.Failures failures) {
+    }
+
     @Override
     public void open(ExecutionContext ec) throws ItemStreamException {
+        if (partitionIndex != null) {
+            openPartition(ec);
+            return;
+        }
         summaryStatistics = new AnnotationSummaryStatistics(annotator);
         String genomeNexusVersion = annotator.getVersion();
+        outputColumns = getOutputColumns(outputFormat);
+
+        MafFileReader mafReader = openMafReader();
+        processComments(ec, genomeNexusVersion, mafReader.getCommentLines());
+        if (!isoformOverrides.contains(",") && (writeRowHashes || !previousOutputFilename.isEmpty())) {
+            openRowHashes(mafReader, genomeNexusVersion);
+        }
+        if (streamingWindowSize > 0) {
+            committedFailures = (AnnotationSummaryStatistics.Failures) ec.get(COMMITTED_FAILURES);
+            if (committedFailures != null) {
+                summaryStatistics.addFailures(committedFailures);
+            }
+            openStreamingReader(ec, mafReader, ec.getInt(READ_RECORDS_COUNT, 0));
+            return;
+        }
+        List<AnnotatedRecord> allAnnotatedRecords;
+        if (isoformOverrides.contains(",")) {
+            allAnnotatedRecords = getIsoformAnnotatedRecords(mafReader);
+        } else {
+            allAnnotatedRecords = annotateRecords(loadMutationRecordsFromMaf(mafReader));
+        }
+        if (!allAnnotatedRecords.isEmpty()) {
+            resolveHeader(ec, collectHeader(allAnnotatedRecords));
+            summaryStatistics.printSummaryStatistics();
+            summaryStatistics.saveErrorMessagesToFile(errorReportLocation);
+            summaryStatistics.saveSummaryToFile(errorReportLocation);
+            bufferAnnotatedRecords(allAnnotatedRecords);
+            closeRowHashes();
+        } else {
+            discardRowHashes();
+            logNoRecordsFound();
+        }
+        // always add number of annotated records to execution context
+        // this is used to determine whether an output file should be generated or not
+        // to prevent writing a file without any annotated records
+        ec.put("records_to_write_count", annotatedRecordsBuffer.size());
+    }
+
+    /**
+     * Streaming mode: only the first window of records is annotated here, the rest
+     * of the file is read and annotated one window at a time as the step consumes
+     * records, so memory use is bounded by the window size instead of the file size.
+     * The header cannot be collected from the annotated records up front, so it is
+     * derived from the input file header and the configured enrichment fields.
+     *
+     * A restarted job skips the records that were written and committed by the failed
+     * execution, without annotating them again, and continues with the next window. The
+     * failed annotations of the skipped records are restored from the execution context,
+     * so that the error report of the restarted job covers the whole input.
+     */
+    private void openStreamingReader(ExecutionContext ec, MafFileReader mafReader, int committedRecordsCount) {
+        streamingReader = mafReader;
+        LOG.info("Streaming records from: " + filename + " in windows of " + String.valueOf(streamingWindowSize) + " records");
+        if (committedRecordsCount > 0) {
+            skipCommittedRecords(committedRecordsCount);
+        }
+        if (pipelineDepth > 0) {
+            // windows are read and annotated ahead of the step, which processes and writes them in the meantime
+            LOG.info("Reading and annotating up to " + String.valueOf(pipelineDepth) + " windows ahead of the writer");
+            pipeline = new PipelinedWindowAnnotator(this::readWindow, this::annotateWindow, pipelineDepth);
+        }
+        fillAnnotatedRecordsBuffer();
+        if (!annotatedRecordsBuffer.isEmpty()) {
+            resolveHeader(ec, annotator.getAnnotatedRecordHeader(inputFileHeaders, addOriginalGenomicLocation, noteColumn, outputColumns));
+        } else if (committedRecordsCount > 0) {
+            // the failed execution had written all records already
+            closeStreamingReader();
+            closeRowHashes();
+            saveSummaryStatistics();
+        } else {
+            closeStreamingReader();
+            discardRowHashes();
+            logNoRecordsFound();
+        }
+        // only needs to tell the writer whether there is anything to write at all
+        ec.put("records_to_write_count", annotatedRecordsBuffer.size());
+    }
+
+    /**
+     * Worker step of a partitioned job: annotates the records of one partition into a partial
+     * output. As in streaming mode, the header is derived from the input file header so that all
+     * partial outputs share it. The merge step writes the comment lines and reports the
+     * statistics of all partitions together.
+     */
+    private void openPartition(ExecutionContext ec) {
+        AnnotationPartitions.Partitions partitions = annotationPartitions.get(outputFilename);
+        summaryStatistics = partitions.getSummaryStatistics();
+        inputFileHeaders = partitions.getInputFileHeaders();
+        outputColumns = getOutputColumns(outputFormat);
+        List<MutationRecord> mutationRecords = partitions.getPartitions().get(partitionIndex).takeMutationRecords();
+        LOG.info("Annotating " + String.valueOf(mutationRecords.size()) + " records of partition " + String.valueOf(partitionIndex) + " of: " + filename);
+        bufferAnnotatedRecords(annotateRecords(mutationRecords, isoformOverride, summaryStatistics));
+        resolveHeader(ec, annotator.getAnnotatedRecordHeader(inputFileHeaders, addOriginalGenomicLocation, noteColumn, outputColumns));
+        ec.put("commentLines", new ArrayList<String>());
+        ec.put("records_to_write_count", annotatedRecordsBuffer.size());
+    }
+
+    private void bufferAnnotatedRecords(List<AnnotatedRecord> annotatedRecords) {
+        annotatedRecordsBuffer.addAll(annotatedRecords);
+        metrics.addBufferedRecords(annotatedRecords.size());
+    }
 
-        processComments(ec, genomeNexusVersion);
-        List<MutationRecord> mutationRecords = loadMutationRecordsFromMaf();
+    private void fillAnnotatedRecordsBuffer() {
+        if (pipeline != null) {
+            List<AnnotatedRecord> annotatedRecords = pipeline.nextWindow();
+            if (annotatedRecords != null) {
+                bufferAnnotatedRecords(annotatedRecords);
+            }
+            return;
+        }
+        List<MutationRecord> mutationRecords = readWindow();
         if (!mutationRecords.isEmpty()) {
-            if (postIntervalSize > 1) {
-                allAnnotatedRecords = annotator.getAnnotatedRecordsUsingPOST(summaryStatistics, mutationRecords, isoformOverride, replaceSymbolEntrez, postIntervalSize, true, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn);
-            } else {
-                allAnnotatedRecords = annotator.annotateRecordsUsingGET(summaryStatistics, mutationRecords, isoformOverride, replaceSymbolEntrez, true, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn);
-            }
-            // if output-format option is supplied, we only need to convert its data into header
-            if (outputFormat != null && !outputFormat.equals("")) {
-                if ("extended".equals(outputFormat)) {
-                    header.addAll(ExtendedMafFormat.headers);
-                } else if ("minimal".equals(outputFormat)) {
-                    header.addAll(inputFileHeaders);
-                } else {
-                    header.addAll(Arrays.asList(outputFormat.split(",")));
+            bufferAnnotatedRecords(annotateWindow(mutationRecords));
+        }
+    }
+
+    /**
+     * Annotates a streamed window. Windows are annotated one after the other, so the failures
+     * counted at the end of a window are those of the records read so far.
+     */
+    private List<AnnotatedRecord> annotateWindow(List<MutationRecord> mutationRecords) {
+        List<AnnotatedRecord> annotatedRecords = annotateRecords(mutationRecords);
+        windowFailures.add(new WindowFailures(streamedRecordsCount, summaryStatistics.getFailures()));
+        return annotatedRecords;
+    }
+
+    private void skipCommittedRecords(int committedRecordsCount) {
+        LOG.info("Restarting after the " + String.valueOf(committedRecordsCount) + " records written by the previous execution");
+        int skippedRecordsCount = 0;
+        while (skippedRecordsCount < committedRecordsCount) {
+            List<MutationRecord> mutationRecords = readWindow(Math.min(streamingWindowSize, committedRecordsCount - skippedRecordsCount));
+            if (mutationRecords.isEmpty()) {
+                throw new ItemStreamException("Input " + filename + " has fewer records than the " + String.valueOf(committedRecordsCount) + " written before the restart");
+            }
+            // the row hashes are written from the start again
+            if (rowHashesWriter != null) {
+                writeRowHashes(PreviousOutput.rowHashes(mutationRecords, inputFileHeaders));
+            }
+            skippedRecordsCount += mutationRecords.size();
+        }
+        readRecordsCount = committedRecordsCount;
+    }
+
+    private List<MutationRecord> readWindow() {
+        return readWindow(streamingWindowSize);
+    }
+
+    private List<MutationRecord> readWindow(int windowSize) {
+        List<MutationRecord> mutationRecords = new ArrayList<>(windowSize);
+        try (PhaseProfiler.Timer timer = PhaseProfiler.getInstance().start(PhaseProfiler.Phase.PARSE)) {
+            MutationRecord mutationRecord;
+            while (mutationRecords.size() < windowSize && (mutationRecord = streamingReader.read()) != null) {
+                mutationRecords.add(mutationRecord);
+            }
+            timer.setRecords(mutationRecords.size());
+        }
+        catch (Exception e) {
+            throw new ItemStreamException(e);
+        }
+        if (!mutationRecords.isEmpty()) {
+            metrics.addRecordsParsed(mutationRecords.size());
+            streamedRecordsCount += mutationRecords.size();
+            LOG.info("Loaded " + String.valueOf(streamedRecordsCount) + " records so far from: " + filename);
+        }
+        return mutationRecords;
+    }
+
+    /**
+     * Annotates the records that were not annotated successfully in the previous output, if there
+     * is one, and takes the others from it. The input row hashes are written for the next run if
+     * requested.
+     */
+    private List<AnnotatedRecord> annotateRecords(List<MutationRecord> mutationRecords) {
+        if (rowHashesWriter == null && previousOutput == null) {
+            return annotateRecords(mutationRecords, isoformOverride, summaryStatistics);
+        }
+        String[] rowHashes = PreviousOutput.rowHashes(mutationRecords, inputFileHeaders);
+        writeRowHashes(rowHashes);
+        if (previousOutput == null) {
+            return annotateRecords(mutationRecords, isoformOverride, summaryStatistics);
+        }
+        AnnotatedRecord[] annotatedRecords = new AnnotatedRecord[rowHashes.length];
+        List<MutationRecord> changedRecords = new ArrayList<>();
+        for (int i = 0; i < rowHashes.length; i++) {
+            annotatedRecords[i] = previousOutput.getAnnotatedRecord(rowHashes[i]);
+            if (annotatedRecords[i] == null) {
+                changedRecords.add(mutationRecords.get(i));
+            }
+        }
+        Iterator<AnnotatedRecord> reannotatedRecords = annotateRecords(changedRecords, isoformOverride, summaryStatistics).iterator();
+        for (int i = 0; i < annotatedRecords.length; i++) {
+            if (annotatedRecords[i] == null) {
+                annotatedRecords[i] = reannotatedRecords.next();
+            }
+        }
+        summaryStatistics.addPreviousOutputRecords(rowHashes.length - changedRecords.size(), changedRecords.size());
+        return new ArrayList<>(Arrays.asList(annotatedRecords));
+    }
+
+    /**
+     * Loads the previous output to reuse, if any, before starting the row hashes of this run's
+     * output, which may well replace the previous output. Both depend on the annotation settings,
+     * which include the header the annotator produces for this input and its enrichment fields.
+     */
+    private void openRowHashes(MafFileReader mafReader, String genomeNexusVersion) {
+        String settingsHash = PreviousOutput.settingsHash(Arrays.asList(genomeNexusVersion, isoformOverride,
+            String.valueOf(replaceSymbolEntrez), stripMatchingBases, String.valueOf(ignoreOriginalGenomicLocation),
+            String.valueOf(addOriginalGenomicLocation), String.valueOf(noteColumn), String.valueOf(outputFormat),
+            String.join("\t", annotator.getAnnotatedRecordHeader(inputFileHeaders, addOriginalGenomicLocation, noteColumn, outputColumns))));
+        try {
+            if (!previousOutputFilename.isEmpty()) {
+                previousOutput = PreviousOutput.load(previousOutputFilename, settingsHash);
+                if (previousOutput != null) {
+                    LOG.info("Loaded " + String.valueOf(previousOutput.size()) + " annotated records from previous output: " + previousOutputFilename);
                 }
-                // extra headers should go in the back alphabetically for these options
-                if ("extended".equals(outputFormat) || "minimal".equals(outputFormat)) {
-                    Set<String> sortedAllHeaders = new TreeSet<>();
-                    for (AnnotatedRecord ar : allAnnotatedRecords) {
-                        sortedAllHeaders.addAll(ar.getHeaderWithAdditionalFields());
-                    }
-                    for(String token : sortedAllHeaders) {
-                        if (!header.contains(token)) {
-                            header.add(token);
-                        }
+            }
+            if (writeRowHashes && outputFilename != null) {
+                rowHashesWriter = Files.newBufferedWriter(Paths.get(outputFilename + PreviousOutput.ROW_HASHES_SUFFIX), StandardCharsets.UTF_8);
+                rowHashesWriter.write(PreviousOutput.SETTINGS_PREFIX + settingsHash);
+                rowHashesWriter.newLine();
+            }
+        }
+        catch (IOException e) {
+            closeMafReader(mafReader);
+            throw new ItemStreamException(e);
+        }
+    }
+
+    private void writeRowHashes(String[] rowHashes) {
+        if (rowHashesWriter == null) {
+            return;
+        }
+        try {
+            for (String rowHash : rowHashes) {
+                rowHashesWriter.write(rowHash);
+                rowHashesWriter.newLine();
+            }
+        }
+        catch (IOException e) {
+            throw new ItemStreamException(e);
+        }
+    }
+
+    private void closeRowHashes() {
+        previousOutput = null;
+        if (rowHashesWriter != null) {
+            try {
+                rowHashesWriter.close();
+            }
+            catch (IOException e) {
+                throw new ItemStreamException(e);
+            }
+            finally {
+                rowHashesWriter = null;
+            }
+        }
+    }
+
+    // no output file is written without records, so there is nothing to hash either
+    private void discardRowHashes() {
+        boolean written = rowHashesWriter != null;
+        closeRowHashes();
+        if (written) {
+            try {
+                Files.deleteIfExists(Paths.get(outputFilename + PreviousOutput.ROW_HASHES_SUFFIX));
+            }
+            catch (IOException e) {
+                throw new ItemStreamException(e);
+            }
+        }
+    }
+
+    private List<AnnotatedRecord> annotateRecords(List<MutationRecord> mutationRecords, String isoformOverride, AnnotationSummaryStatistics summaryStatistics) {
+        if (mutationRecords.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (postIntervalSize > 1) {
+            return annotator.getAnnotatedRecordsUsingPOST(summaryStatistics, mutationRecords, isoformOverride, replaceSymbolEntrez, postIntervalSize, true, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, outputColumns);
+        }
+        return annotator.annotateRecordsUsingGET(summaryStatistics, mutationRecords, isoformOverride, replaceSymbolEntrez, true, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, outputColumns);
+    }
+
+    /**
+     * Runs writing one output per isoform override source read the input only in their first job,
+     * which annotates the records for all sources concurrently. Each source annotates its own copy
+     * of the records, since annotated records share the additional properties of their input record.
+     */
+    private List<AnnotatedRecord> getIsoformAnnotatedRecords(MafFileReader mafReader) {
+        IsoformAnnotations.Result result = isoformAnnotations.take(filename, isoformOverride);
+        if (result != null) {
+            closeMafReader(mafReader);
+            LOG.info("Using records of " + filename + " annotated for isoform override source " + isoformOverride);
+        } else {
+            List<MutationRecord> mutationRecords = loadMutationRecordsFromMaf(mafReader);
+            Map<String, Future<IsoformAnnotations.Result>> annotations = new LinkedHashMap<>();
+            try (ExecutorService annotationExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("isoform-annotation-", 0).factory())) {
+                for (String source : isoformOverrides.split(",")) {
+                    LOG.info("Annotating records of " + filename + " for isoform override source " + source);
+                    annotations.put(source, annotationExecutor.submit(() -> {
+                        AnnotationSummaryStatistics sourceSummaryStatistics = new AnnotationSummaryStatistics(annotator);
+                        List<MutationRecord> sourceRecords = new ArrayList<>(mutationRecords.size());
+                        mutationRecords.forEach(record -> sourceRecords.add(record.copy()));
+                        return new IsoformAnnotations.Result(annotateRecords(sourceRecords, source, sourceSummaryStatistics), sourceSummaryStatistics);
+                    }));
+                }
+                for (Map.Entry<String, Future<IsoformAnnotations.Result>> annotation : annotations.entrySet()) {
+                    IsoformAnnotations.Result sourceResult = annotation.getValue().get();
+                    if (annotation.getKey().equals(isoformOverride)) {
+                        result = sourceResult;
+                    } else {
+                        isoformAnnotations.put(filename, annotation.getKey(), sourceResult);
                     }
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ItemStreamException("Interrupted while annotating " + filename, e);
+            } catch (ExecutionException e) {
+                throw new ItemStreamException("Failed to annotate " + filename, e.getCause());
+            }
+        }
+        summaryStatistics = result.getSummaryStatistics();
+        return result.getAnnotatedRecords();
+    }
+
+    /**
+     * Union of the headers of all records, in the order getHeaderWithAdditionalFields() would give
+     * when adding them one record at a time. Records share a few schemas and almost always the same
+     * additional columns, so each schema is added once and a record's additional columns are only
+     * sorted when one of them has not been seen yet.
+     */
+    static Set<String> collectHeader(List<AnnotatedRecord> annotatedRecords) {
+        Set<String> allHeaders = new LinkedHashSet<>();
+        Set<RecordSchema> schemas = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (AnnotatedRecord ar : annotatedRecords) {
+            if (schemas.add(ar.getSchema())) {
+                allHeaders.addAll(ar.getSchema().getColumns());
+            }
+            if (!allHeaders.containsAll(ar.getAdditionalProperties().keySet())) {
+                allHeaders.addAll(ar.getSortedAdditionalPropertiesKeys());
+            }
+        }
+        return allHeaders;
+    }
+
+    private static boolean isCustomOutputFormat(String outputFormat) {
+        return outputFormat != null && !outputFormat.equals("") && !"extended".equals(outputFormat) && !"minimal".equals(outputFormat);
+    }
+
+    /**
+     * @return the columns of a custom output format, or null if all columns are written.
+     * A custom output format writes only its own columns, so enrichment nobody reads is not fetched.
+     */
+    static List<String> getOutputColumns(String outputFormat) {
+        return isCustomOutputFormat(outputFormat) ? Arrays.asList(outputFormat.split(",")) : null;
+    }
+
+    private void resolveHeader(ExecutionContext ec, Collection<String> allHeaders) {
+        // if output-format option is supplied, we only need to convert its data into header
+        if (outputFormat != null && !outputFormat.equals("")) {
+            if ("extended".equals(outputFormat)) {
+                header.addAll(ExtendedMafFormat.headers);
+            } else if ("minimal".equals(outputFormat)) {
+                header.addAll(inputFileHeaders);
             } else {
-                for (AnnotatedRecord ar : allAnnotatedRecords) {
-                    header.addAll(ar.getHeaderWithAdditionalFields());
-                }
+                header.addAll(Arrays.asList(outputFormat.split(",")));
             }
-            // add 'Annotation_Status' to header if not already present
-            if (!header.contains("Annotation_Status")) {
-                header.add("Annotation_Status");
+            // extra headers should go in the back alphabetically for these options
+            if ("extended".equals(outputFormat) || "minimal".equals(outputFormat)) {
+                Set<String> sortedAllHeaders = new TreeSet<>(allHeaders);
+                for(String token : sortedAllHeaders) {
+                    if (!header.contains(token)) {
+                        header.add(token);
+                    }
+                }
             }
-            ec.put("mutation_header", new ArrayList(header));
-            summaryStatistics.printSummaryStatistics();
-            summaryStatistics.saveErrorMessagesToFile(errorReportLocation);
         } else {
-            System.out.println("It seems that the input mutation file does not contain any mutation records. Exiting without writing an output file.");
-            LOG.warn("Did not extract any records from the MAF, nothing to process - ending annotation job...");
+            header.addAll(allHeaders);
         }
-        // always add size of "allAnnotatedRecords" to execution context
-        // this is used to determine whether an output file should be generated or not
-        // to prevent writing a file without any annotated records
-        ec.put("records_to_write_count", allAnnotatedRecords.size());
-    }
-
-    private List<MutationRecord> loadMutationRecordsFromMaf() {
-        List<MutationRecord> mutationRecords = new ArrayList<>();
-        FlatFileItemReader<MutationRecord> reader = new FlatFileItemReader<>();
-        reader.setResource(new FileSystemResource(filename));
-        DefaultLineMapper<MutationRecord> mapper = new DefaultLineMapper<>();
-        final DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
-        tokenizer.setDelimiter("\t");
-        mapper.setLineTokenizer(tokenizer);
-        mapper.setFieldSetMapper(new MutationFieldSetMapper());
-        reader.setLineMapper(mapper);
-        reader.setLinesToSkip(1);
-        reader.setSkippedLinesCallback(new DefaultLineCallbackHandler(tokenizer, inputFileHeaders));
-        reader.open(new ExecutionContext());
-        LOG.info("Loading records from: " + filename);
-        MutationRecord mutationRecord;
+        // add 'Annotation_Status' to header if not already present
+        if (!header.contains("Annotation_Status")) {
+            header.add("Annotation_Status");
+        }
+        ec.put("mutation_header", new ArrayList(header));
+    }
+
+    private void logNoRecordsFound() {
+        System.out.println("It seems that the input mutation file does not contain any mutation records. Exiting without writing an output file.");
+        LOG.warn("Did not extract any records from the MAF, nothing to process - ending annotation job...");
+    }
+
+    /**
+     * Opens the input file, reading its comment lines and header. The header is validated
+     * and kept as the input file headers used for the 'minimal' output format.
+     */
+    private MafFileReader openMafReader() {
+        MafFileReader mafReader = new MafFileReader(filename, streamingWindowSize);
         try {
-            while((mutationRecord = reader.read()) != null) {
-                mutationRecords.add(mutationRecord);
+            mafReader.open();
+            if (!mafReader.getHeader().isEmpty()) {
+                new DefaultLineCallbackHandler(null, inputFileHeaders).handleLine(String.join("\t", mafReader.getHeader()));
             }
         }
-        catch(Exception e) {
+        catch (IOException e) {
+            closeMafReader(mafReader);
+            throw new ItemStreamException(e);
+        }
+        catch (RuntimeException e) {
+            closeMafReader(mafReader);
+            throw e;
+        }
+        return mafReader;
+    }
+
+    private void closeMafReader(MafFileReader mafReader) {
+        try {
+            mafReader.close();
+        }
+        catch (IOException e) {
             throw new ItemStreamException(e);
         }
-        reader.close();
+    }
+
+    private void closeStreamingReader() {
+        // the pipeline reads from the streaming reader, so it has to stop first
+        if (pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+        if (streamingReader != null) {
+            closeMafReader(streamingReader);
+            streamingReader = null;
+        }
+    }
+
+    private List<MutationRecord> loadMutationRecordsFromMaf(MafFileReader mafReader) {
+        LOG.info("Loading records from: " + filename);
+        List<MutationRecord> mutationRecords;
+        try (PhaseProfiler.Timer timer = PhaseProfiler.getInstance().start(PhaseProfiler.Phase.PARSE)) {
+            mutationRecords = mafReader.readAll();
+            timer.setRecords(mutationRecords.size()).setBytes(new File(filename).length());
+        }
+        catch(IOException e) {
+            throw new ItemStreamException(e);
+        }
+        finally {
+            closeMafReader(mafReader);
+        }
+        metrics.addRecordsParsed(mutationRecords.size());
         LOG.info("Loaded " + String.valueOf(mutationRecords.size()) + " records from: " + filename);
         return mutationRecords;
     }
@@ -194,47 +623,67 @@ public class MutationRecordReader implements ItemStreamReader<AnnotatedRecord> {
     }
 
     @Override
-    public void update(ExecutionContext ec) throws ItemStreamException {}
+    public void update(ExecutionContext ec) throws ItemStreamException {
+        ec.putInt(READ_RECORDS_COUNT, readRecordsCount);
+        // a chunk is one window, so the records read have been committed up to the end of a window
+        while (!windowFailures.isEmpty() && windowFailures.peek().recordsCount() <= readRecordsCount) {
+            committedFailures = windowFailures.poll().failures();
+        }
+        if (committedFailures != null) {
+            ec.put(COMMITTED_FAILURES, committedFailures);
+        }
+    }
 
     @Override
-    public void close() throws ItemStreamException {}
+    public void close() throws ItemStreamException {
+        closeStreamingReader();
+        closeRowHashes();
+        // records left after a failure are no longer waiting to be written
+        metrics.addBufferedRecords(-annotatedRecordsBuffer.size());
+        annotatedRecordsBuffer.clear();
+    }
 
     @Override
     public AnnotatedRecord read() throws Exception {
-        if (!allAnnotatedRecords.isEmpty()) {
-            return allAnnotatedRecords.remove(0);
+        if (annotatedRecordsBuffer.isEmpty() && streamingReader != null) {
+            fillAnnotatedRecordsBuffer();
+            if (annotatedRecordsBuffer.isEmpty()) {
+                // input is exhausted, statistics are complete now
+                closeStreamingReader();
+                closeRowHashes();
+                saveSummaryStatistics();
+            }
         }
-        return null;
+        AnnotatedRecord annotatedRecord = annotatedRecordsBuffer.poll();
+        if (annotatedRecord != null) {
+            metrics.addBufferedRecords(-1);
+            readRecordsCount++;
+        }
+        return annotatedRecord;
+    }
+
+    private void saveSummaryStatistics() {
+        summaryStatistics.printSummaryStatistics();
+        summaryStatistics.saveErrorMessagesToFile(errorReportLocation);
+        summaryStatistics.saveSummaryToFile(errorReportLocation);
     }
 
-    private void processComments(ExecutionContext ec, String genomeNexusVersion) {
+    private void processComments(ExecutionContext ec, String genomeNexusVersion, List<String> inputCommentLines) {
+        // Add comments to the config for the writer to access later
+        ec.put("commentLines", getCommentLines(genomeNexusVersion, isoformOverride, inputCommentLines));
+    }
+
+    static List<String> getCommentLines(String genomeNexusVersion, String isoformOverride, List<String> inputCommentLines) {
         List<String> comments = new ArrayList<>();
         comments.add("#genome_nexus_version: " + genomeNexusVersion);
         comments.add("#isoform: " + isoformOverride);
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(new FileReader(filename));
-            String line;
-            while((line = reader.readLine()) != null) {
-                if (line.startsWith("#")) {
-                    // do not duplicate comments in header for version or isoform used
-                    if (!line.startsWith("#genome_nexus_version") && !line.startsWith("#isoform")) {
-                        comments.add(line);
-                    }
-                }
-                else {
-                    // no more comments, go on processing
-                    break;
-                }
+        for (String line : inputCommentLines) {
+            // do not duplicate comments in header for version or isoform used
+            if (!line.startsWith("#genome_nexus_version") && !line.startsWith("#isoform")) {
+                comments.add(line);
             }
-            reader.close();
         }
-        catch (Exception e) {
-            throw new ItemStreamException(e);
-        }
-
-        // Add comments to the config for the writer to access later
-        ec.put("commentLines", comments);
+        return comments;
     }
 
 }
@@ -39,6 +39,8 @@ import org.apache.commons.lang.StringUtils;
 import org.springframework.batch.item.*;
 import org.springframework.batch.item.file.*;
 import org.springframework.batch.item.file.transform.PassThroughLineAggregator;
+import org.cbioportal.annotator.internal.AnnotationMetrics;
+import org.cbioportal.annotator.internal.PhaseProfiler;
 import org.cbioportal.models.AnnotatedRecord;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
@@ -49,7 +51,8 @@ import org.springframework.core.io.FileSystemResource;
  */
 public class MutationRecordWriter implements ItemStreamWriter<String> {
 
-    @Value("#{jobParameters[outputFilename]}")
+    // the worker steps of a partitioned job write a partial output each
+    @Value("#{stepExecutionContext['partitionOutputFilename'] ?: jobParameters[outputFilename]}")
     private String outputFilename;
 
     @Value("#{stepExecutionContext['commentLines']}")
@@ -88,7 +91,12 @@ public class MutationRecordWriter implements ItemStreamWriter<String> {
     }
 
     @Override
-    public void update(ExecutionContext ec) throws ItemStreamException {}
+    public void update(ExecutionContext ec) throws ItemStreamException {
+        // saves the position of the last committed record, a restarted job truncates the output there and appends
+        if (recordsToWriteCount > 0) {
+            flatFileItemWriter.update(ec);
+        }
+    }
 
     @Override
     public void close() throws ItemStreamException {
@@ -100,7 +108,12 @@ public class MutationRecordWriter implements ItemStreamWriter<String> {
     @Override
     public void write(Chunk<? extends String> items) throws Exception {
         if (recordsToWriteCount > 0) {
-            flatFileItemWriter.write(items);
+            try (PhaseProfiler.Timer timer = PhaseProfiler.getInstance().start(PhaseProfiler.Phase.WRITE)) {
+                flatFileItemWriter.write(items);
+                // one character per byte is close enough for MAF rows
+                timer.setRecords(items.size()).setBytes(items.getItems().stream().mapToLong(item -> item.length() + 1L).sum());
+            }
+            AnnotationMetrics.getInstance().addRecordsWritten(items.size());
         }
 
     }
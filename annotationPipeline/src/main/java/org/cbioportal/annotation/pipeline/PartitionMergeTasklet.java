@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation.pipeline;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Last step of a partitioned annotation job: merges the partial outputs of the partitions into
+ * the output file in input order and reports the statistics of all partitions together. Each
+ * partial output holds its records in input order, so a k-way merge on the row numbers of the
+ * partitions restores the order of the whole input.
+ */
+public class PartitionMergeTasklet implements Tasklet {
+
+    @Value("#{jobParameters[outputFilename]}")
+    private String outputFilename;
+
+    @Value("#{jobParameters[errorReportLocation] ?: ''}")
+    private String errorReportLocation;
+
+    @Autowired
+    AnnotationPartitions annotationPartitions;
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionMergeTasklet.class);
+
+    private static class PartialOutput {
+        private final BufferedReader reader;
+        private final int[] rowNumbers;
+        private int position = 0;
+        private String line;
+
+        private PartialOutput(BufferedReader reader, int[] rowNumbers) {
+            this.reader = reader;
+            this.rowNumbers = rowNumbers;
+        }
+
+        private boolean next() throws IOException {
+            line = position < rowNumbers.length ? reader.readLine() : null;
+            return line != null;
+        }
+
+        private int getRowNumber() {
+            return rowNumbers[position];
+        }
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        AnnotationPartitions.Partitions partitions = annotationPartitions.remove(outputFilename);
+        List<PartialOutput> partialOutputs = new ArrayList<>();
+        try {
+            String header = null;
+            for (AnnotationPartitions.Partition partition : partitions.getPartitions()) {
+                Path partialOutput = Paths.get(partition.getOutputFilename());
+                if (Files.exists(partialOutput)) {
+                    BufferedReader reader = Files.newBufferedReader(partialOutput, StandardCharsets.UTF_8);
+                    partialOutputs.add(new PartialOutput(reader, partition.getRowNumbers()));
+                    // every partition writes the same header, derived from the input header
+                    header = reader.readLine();
+                }
+            }
+            if (header == null) {
+                System.out.println("It seems that the input mutation file does not contain any mutation records. Exiting without writing an output file.");
+                LOG.warn("Did not extract any records from the MAF, nothing to process - ending annotation job...");
+                return RepeatStatus.FINISHED;
+            }
+            mergePartialOutputs(partialOutputs, partitions.getCommentLines(), header);
+        }
+        finally {
+            for (PartialOutput partialOutput : partialOutputs) {
+                partialOutput.reader.close();
+            }
+            for (AnnotationPartitions.Partition partition : partitions.getPartitions()) {
+                Files.deleteIfExists(Paths.get(partition.getOutputFilename()));
+            }
+        }
+        partitions.getSummaryStatistics().printSummaryStatistics();
+        partitions.getSummaryStatistics().saveErrorMessagesToFile(errorReportLocation);
+        partitions.getSummaryStatistics().saveSummaryToFile(errorReportLocation);
+        return RepeatStatus.FINISHED;
+    }
+
+    private void mergePartialOutputs(List<PartialOutput> partialOutputs, List<String> commentLines, String header) throws IOException {
+        PriorityQueue<PartialOutput> nextRows = new PriorityQueue<>((a, b) -> Integer.compare(a.getRowNumber(), b.getRowNumber()));
+        for (PartialOutput partialOutput : partialOutputs) {
+            if (partialOutput.next()) {
+                nextRows.add(partialOutput);
+            }
+        }
+        int rowCount = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFilename), StandardCharsets.UTF_8)) {
+            for (String comment : commentLines) {
+                writer.write(comment + "\n");
+            }
+            writer.write(header);
+            while (!nextRows.isEmpty()) {
+                PartialOutput partialOutput = nextRows.poll();
+                writer.write("\n");
+                writer.write(partialOutput.line);
+                rowCount++;
+                partialOutput.position++;
+                if (partialOutput.next()) {
+                    nextRows.add(partialOutput);
+                }
+            }
+            writer.write("\n");
+        }
+        LOG.info("Merged " + String.valueOf(rowCount) + " records of " + String.valueOf(partialOutputs.size()) + " partitions into: " + outputFilename);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import org.cbioportal.annotator.internal.AnnotationMetrics;
+import org.cbioportal.models.AnnotatedRecord;
+import org.cbioportal.models.MutationRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ItemStreamException;
+
+/**
+ * Reads and annotates windows of records on a background thread while the step processes and
+ * writes the previous windows.
+ *
+ * At most {@code depth} annotated windows are queued; once the queue is full the background
+ * thread waits for the step to catch up, so a slow writer throttles reading and annotation
+ * instead of letting annotated records pile up on the heap. Windows are handed out in the order
+ * they were read.
+ */
+class PipelinedWindowAnnotator implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelinedWindowAnnotator.class);
+
+    // marks the end of the input, compared by identity
+    private final List<AnnotatedRecord> endOfInput = new ArrayList<>(0);
+    private final BlockingQueue<List<AnnotatedRecord>> annotatedWindows;
+    private final Callable<List<MutationRecord>> windowReader;
+    private final Function<List<MutationRecord>, List<AnnotatedRecord>> windowAnnotator;
+    private final Thread producer;
+    private final AnnotationMetrics metrics = AnnotationMetrics.getInstance();
+    private volatile Throwable failure;
+    private boolean finished = false;
+
+    /**
+     * @param windowReader returns the next window of records, empty once the input is exhausted
+     * @param windowAnnotator annotates a window of records
+     * @param depth number of annotated windows that can be queued ahead of the step
+     */
+    PipelinedWindowAnnotator(Callable<List<MutationRecord>> windowReader,
+            Function<List<MutationRecord>, List<AnnotatedRecord>> windowAnnotator, int depth) {
+        this.annotatedWindows = new ArrayBlockingQueue<>(Math.max(1, depth));
+        this.windowReader = windowReader;
+        this.windowAnnotator = windowAnnotator;
+        this.producer = Thread.ofPlatform().name("annotation-pipeline").daemon().start(this::produce);
+    }
+
+    /**
+     * @return the next annotated window, or null once all windows have been returned
+     */
+    List<AnnotatedRecord> nextWindow() {
+        if (finished) {
+            return null;
+        }
+        List<AnnotatedRecord> window;
+        try {
+            window = annotatedWindows.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ItemStreamException("Interrupted while waiting for annotated records", e);
+        }
+        if (window == endOfInput) {
+            finished = true;
+            if (failure != null) {
+                throw new ItemStreamException("Reading or annotating records failed", failure);
+            }
+            return null;
+        }
+        metrics.addQueuedWindows(-1);
+        return window;
+    }
+
+    @Override
+    public void close() {
+        producer.interrupt();
+        try {
+            producer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // windows left after a failure are no longer waiting for the step
+        int abandonedWindows = (int) annotatedWindows.stream().filter(window -> window != endOfInput).count();
+        metrics.addQueuedWindows(-abandonedWindows);
+    }
+
+    private void produce() {
+        try {
+            List<MutationRecord> mutationRecords;
+            while (!Thread.currentThread().isInterrupted() && !(mutationRecords = windowReader.call()).isEmpty()) {
+                List<AnnotatedRecord> window = windowAnnotator.apply(mutationRecords);
+                // counted before it is queued so the step can never take an uncounted window
+                metrics.addQueuedWindows(1);
+                try {
+                    annotatedWindows.put(window);
+                }
+                catch (InterruptedException e) {
+                    metrics.addQueuedWindows(-1);
+                    throw e;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            // closed before the input was exhausted
+            return;
+        }
+        catch (Throwable t) {
+            LOG.error("Reading or annotating records failed", t);
+            failure = t;
+        }
+        try {
+            annotatedWindows.put(endOfInput);
+        }
+        catch (InterruptedException e) {
+            // closed, nobody is waiting for the end of the input
+        }
+    }
+}
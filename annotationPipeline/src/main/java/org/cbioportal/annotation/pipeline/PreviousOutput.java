@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotation.pipeline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.cbioportal.models.AnnotatedRecord;
+import org.cbioportal.models.MutationRecord;
+import org.cbioportal.models.RecordAccessors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Successfully annotated rows of an earlier output, indexed by the hash of the input row they
+ * were annotated from, so a run over a mostly unchanged input only has to annotate the new and
+ * changed rows.
+ *
+ * The input row hashes are not part of the output itself; every run writes them next to its
+ * output, one line per output row, after a first line with the hash of the annotation settings.
+ * An earlier output annotated with other settings is not reused at all.
+ */
+public class PreviousOutput {
+
+    public static final String ROW_HASHES_SUFFIX = ".row_hashes";
+    public static final String SETTINGS_PREFIX = "#settings: ";
+
+    private static final Logger LOG = LoggerFactory.getLogger(PreviousOutput.class);
+
+    private final String[] header;
+    private final Map<String, String[]> rowsByHash;
+    private final List<BiConsumer<AnnotatedRecord, String>> setters = new ArrayList<>();
+    private final boolean hasGnomadColumns;
+
+    private PreviousOutput(String[] header, Map<String, String[]> rowsByHash) {
+        this.header = header;
+        this.rowsByHash = rowsByHash;
+        for (String column : header) {
+            setters.add(RecordAccessors.getSetter(AnnotatedRecord.class, column));
+        }
+        this.hasGnomadColumns = Arrays.asList(header).contains(AnnotatedRecord.GNOMAD_COLUMNS.getFirst());
+    }
+
+    /**
+     * @return the previous output, or null if it has no row hashes or was annotated with other settings
+     */
+    public static PreviousOutput load(String filename, String settingsHash) throws IOException {
+        Path rowHashes = Paths.get(filename + ROW_HASHES_SUFFIX);
+        if (!Files.exists(rowHashes)) {
+            LOG.warn("No row hashes found for previous output " + filename + ", annotating all records");
+            return null;
+        }
+        try (BufferedReader outputReader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8);
+                BufferedReader rowHashesReader = Files.newBufferedReader(rowHashes, StandardCharsets.UTF_8)) {
+            if (!(SETTINGS_PREFIX + settingsHash).equals(rowHashesReader.readLine())) {
+                LOG.warn("Previous output " + filename + " was annotated with other settings, annotating all records");
+                return null;
+            }
+            String line;
+            while ((line = outputReader.readLine()) != null && line.startsWith("#")) {
+                // comment lines are written again by this run
+            }
+            if (line == null) {
+                return new PreviousOutput(new String[0], Map.of());
+            }
+            String[] header = line.split("\t", -1);
+            int annotationStatusIndex = Arrays.asList(header).indexOf("Annotation_Status");
+            Map<String, String[]> rowsByHash = new HashMap<>();
+            String rowHash;
+            while ((line = outputReader.readLine()) != null && (rowHash = rowHashesReader.readLine()) != null) {
+                String[] values = Arrays.copyOf(line.split("\t", -1), header.length);
+                // failed annotations are tried again
+                if (annotationStatusIndex >= 0 && "SUCCESS".equals(values[annotationStatusIndex])) {
+                    rowsByHash.putIfAbsent(rowHash, values);
+                }
+            }
+            return new PreviousOutput(header, rowsByHash);
+        }
+    }
+
+    /**
+     * @return a record with the previously annotated values of the row with this input row hash, or null
+     */
+    public AnnotatedRecord getAnnotatedRecord(String rowHash) {
+        String[] values = rowsByHash.get(rowHash);
+        if (values == null) {
+            return null;
+        }
+        AnnotatedRecord annotatedRecord = new AnnotatedRecord();
+        for (int i = 0; i < header.length; i++) {
+            String value = values[i] != null ? values[i] : "";
+            BiConsumer<AnnotatedRecord, String> setter = setters.get(i);
+            if (setter != null) {
+                setter.accept(annotatedRecord, value);
+            } else {
+                annotatedRecord.addAdditionalProperty(header[i], value);
+            }
+        }
+        if (hasGnomadColumns) {
+            // same schema as a record that was given its gnomAD fields by the annotator
+            annotatedRecord.setSchema(annotatedRecord.getSchema().withColumns(AnnotatedRecord.GNOMAD_COLUMNS));
+        }
+        return annotatedRecord;
+    }
+
+    public int size() {
+        return rowsByHash.size();
+    }
+
+    /**
+     * Hashes the values of the input columns of each record. Must be called before the records are
+     * annotated, since annotation adds to the additional properties of the input records.
+     */
+    public static String[] rowHashes(List<MutationRecord> mutationRecords, List<String> inputHeaders) {
+        Function<MutationRecord, Object>[] getters = getters(inputHeaders);
+        MessageDigest digest = newDigest();
+        String[] rowHashes = new String[mutationRecords.size()];
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < rowHashes.length; i++) {
+            MutationRecord mutationRecord = mutationRecords.get(i);
+            row.setLength(0);
+            for (int j = 0; j < getters.length; j++) {
+                Object value = getters[j] != null ? getters[j].apply(mutationRecord) : mutationRecord.getAdditionalProperties().get(inputHeaders.get(j));
+                row.append(value != null ? value : "").append('\t');
+            }
+            rowHashes[i] = hash(digest, row.toString());
+        }
+        return rowHashes;
+    }
+
+    public static String settingsHash(List<String> settings) {
+        return hash(newDigest(), String.join("\n", settings));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<MutationRecord, Object>[] getters(List<String> inputHeaders) {
+        Function<MutationRecord, Object>[] getters = new Function[inputHeaders.size()];
+        for (int i = 0; i < getters.length; i++) {
+            getters[i] = RecordAccessors.getGetter(MutationRecord.class, inputHeaders.get(i));
+        }
+        return getters;
+    }
+
+    private static String hash(MessageDigest digest, String value) {
+        return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)), 0, 16);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.cbioportal.annotation;
 
 
+import org.cbioportal.annotation.cli.AnnotateSubcommand;
 import org.cbioportal.annotation.cli.AnnotationFailedException;
 import org.cbioportal.annotation.cli.MergeFailedException;
 import org.cbioportal.annotation.cli.NoSubcommandFoundException;
@@ -249,4 +250,60 @@ class AnnotationPipelineTest {
         }
         fail("Test didn't produced a AnnotationFailedException");
     }
-}
\ No newline at end of file
+
+    /**
+     * serve job reading an output format file on the server, should produce AnnotationFailedException
+     */
+    @Test
+    void serve_test_1() throws Exception {
+        String[] args = {"annotate", "--filename", "a", "--output-filename", "b", "-t", "src/test/resources/input/invalid_format.txt"};
+        try {
+            AnnotationPipeline.validateServedAnnotateOptions(new AnnotateSubcommand(args));
+        } catch (AnnotationFailedException e) {
+            assertEquals("output-format of the serve subcommand is 'minimal', 'extended' or the output columns separated by commas. Supplied outputFormat value: src/test/resources/input/invalid_format.txt", e.getMessage());
+            return;
+        }
+        fail("Test didn't produced a AnnotationFailedException");
+    }
+
+    /**
+     * serve job with a previous output on the server, should produce AnnotationFailedException
+     */
+    @Test
+    void serve_test_2() throws Exception {
+        String[] args = {"annotate", "--filename", "a", "--output-filename", "b", "--previous-output", "c"};
+        try {
+            AnnotationPipeline.validateServedAnnotateOptions(new AnnotateSubcommand(args));
+        } catch (AnnotationFailedException e) {
+            assertEquals("previous-output can not be used with the serve subcommand.", e.getMessage());
+            return;
+        }
+        fail("Test didn't produced a AnnotationFailedException");
+    }
+
+    /**
+     * serve job with the output columns or a predefined output format, should be accepted
+     */
+    @Test
+    void serve_test_3() throws Exception {
+        AnnotationPipeline.validateServedAnnotateOptions(new AnnotateSubcommand(new String[] {"annotate", "--filename", "a", "--output-filename", "b",
+            "--output-format", "Hugo_Symbol,HGVSp_Short"}));
+        AnnotationPipeline.validateServedAnnotateOptions(new AnnotateSubcommand(new String[] {"annotate", "--filename", "a", "--output-filename", "b",
+            "--output-format", "minimal"}));
+    }
+
+    /**
+     * serve job with an input file given before the one set by the server, should produce AnnotationFailedException
+     */
+    @Test
+    void serve_test_4() throws Exception {
+        String[] args = {"annotate", "--f=/some/path", "--filename", "a", "--output-filename", "b"};
+        try {
+            AnnotationPipeline.validateServedAnnotateOptions(new AnnotateSubcommand(args));
+        } catch (AnnotationFailedException e) {
+            assertEquals("filename is set by the serve subcommand.", e.getMessage());
+            return;
+        }
+        fail("Test didn't produced a AnnotationFailedException");
+    }
+}
@@ -0,0 +1,71 @@
+package org.cbioportal.annotation;
+
+import org.cbioportal.annotation.cli.AnnotationFailedException;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotationServerTest {
+
+    @Test
+    void getAnnotateArgs_convertsQueryParametersToOptions() {
+        assertEquals(Arrays.asList("--isoform-override", "mskcc", "--note-column", "--output-format", "a b"),
+            AnnotationServer.getAnnotateArgs("isoform-override=mskcc&note-column&output-format=a%20b"));
+        assertTrue(AnnotationServer.getAnnotateArgs(null).isEmpty());
+    }
+
+    @Test
+    void getAnnotateArgs_rejectsFilesSetByServer() {
+        assertThrows(IllegalArgumentException.class, () -> AnnotationServer.getAnnotateArgs("filename=/tmp/a.maf"));
+        assertThrows(IllegalArgumentException.class, () -> AnnotationServer.getAnnotateArgs("--isoform-override=mskcc"));
+        assertThrows(IllegalArgumentException.class, () -> AnnotationServer.getAnnotateArgs("f=/tmp/a.maf"));
+        assertThrows(IllegalArgumentException.class, () -> AnnotationServer.getAnnotateArgs("o=/tmp/b.maf"));
+        // an encoded '=' would make the option a short option with an attached value
+        assertThrows(IllegalArgumentException.class, () -> AnnotationServer.getAnnotateArgs("f%3D%2Fsome%2Fpath"));
+        assertThrows(IllegalArgumentException.class, () -> AnnotationServer.getAnnotateArgs("o%3D%2Fsome%2Fpath"));
+        assertThrows(IllegalArgumentException.class, () -> AnnotationServer.getAnnotateArgs("output-filename%3D%2Fsome%2Fpath"));
+        assertThrows(IllegalArgumentException.class, () -> AnnotationServer.getAnnotateArgs("unknown-option=x"));
+    }
+
+    @Test
+    void annotate_returnsAnnotatedFile() throws Exception {
+        AnnotationServer server = new AnnotationServer(new InetSocketAddress("127.0.0.1", 0), 2, args -> {
+            List<String> argList = Arrays.asList(args);
+            if (argList.contains("--isoform-override")) {
+                throw new AnnotationFailedException("Isoform override not valid.");
+            }
+            String input = Files.readString(Paths.get(argList.get(argList.indexOf("--filename") + 1)));
+            Files.writeString(Paths.get(argList.get(argList.indexOf("--output-filename") + 1)), input + "annotated\n");
+            return true;
+        });
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + AnnotationServer.ANNOTATE_PATH);
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofString("Hugo_Symbol\n")).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals("Hugo_Symbol\nannotated\n", response.body());
+
+            HttpResponse<String> invalid = client.send(HttpRequest.newBuilder(URI.create(uri + "?isoform-override=x"))
+                .POST(HttpRequest.BodyPublishers.ofString("Hugo_Symbol\n")).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, invalid.statusCode());
+            assertTrue(invalid.body().contains("Isoform override not valid."));
+
+            HttpResponse<String> get = client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(405, get.statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+}
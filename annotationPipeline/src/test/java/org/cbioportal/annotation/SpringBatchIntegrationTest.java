@@ -1,7 +1,12 @@
 package org.cbioportal.annotation;
 
 import org.cbioportal.annotation.pipeline.BatchConfiguration;
+import org.cbioportal.annotation.pipeline.DirectAnnotationRunner;
 import org.cbioportal.annotator.internal.GenomeNexusImpl;
+import org.genome_nexus.ApiException;
+import org.genome_nexus.client.AnnotationControllerApi;
+import org.genome_nexus.client.GenomicLocation;
+import org.genome_nexus.client.VariantAnnotation;
 import org.junit.Test;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
@@ -22,6 +27,10 @@ import org.springframework.test.context.support.DependencyInjectionTestExecution
 import org.springframework.test.context.support.DirtiesContextTestExecutionListener;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.*;
 
 /**
@@ -53,6 +62,9 @@ public class SpringBatchIntegrationTest {
     @Autowired
     private JobRepositoryTestUtils jobRepositoryTestUtils;
 
+    @Autowired
+    private DirectAnnotationRunner directAnnotationRunner;
+
     @AfterEach
     public void afterEach() {
         jobRepositoryTestUtils.removeJobExecutions();
@@ -90,6 +102,109 @@ public class SpringBatchIntegrationTest {
         testWith(jobParameters, expectedFile, actualFile);
     }
 
+    @Test
+    @DisplayName("Check if maf file still the same when annotating with concurrent POST requests")
+    public void check_if_maf_file_still_the_same_when_annotating_with_concurrent_post_requests() throws Exception {
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", "annotation_summary");
+        ReflectionTestUtils.setField(annotator, "maxConcurrentRequests", 4);
+        String inputFile = IN + "data_mutations_extended_100.txt";
+        String expectedFile = EXPECTED + "data_mutations_extended_100.mskcc.txt";
+        String actualFile = ACTUAL + "data_mutations_extended_100.concurrent.mskcc.txt";
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("filename", inputFile)
+                .addString("outputFilename", actualFile)
+                .addString("replaceSymbolEntrez", String.valueOf(true))
+                .addString("isoformOverride", "mskcc")
+                .addString("postIntervalSize", "10")
+                .toJobParameters();
+        try {
+            testWith(jobParameters, expectedFile, actualFile);
+        } finally {
+            ReflectionTestUtils.setField(annotator, "maxConcurrentRequests", 1);
+        }
+    }
+
+    @Test
+    @DisplayName("Check if maf file still the same when annotating in streaming windows")
+    public void check_if_maf_file_still_the_same_when_annotating_in_streaming_windows() throws Exception {
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", "annotation_summary");
+        String inputFile = IN + "data_mutations_extended_100.txt";
+        String expectedFile = EXPECTED + "data_mutations_extended_100.mskcc.txt";
+        String actualFile = ACTUAL + "data_mutations_extended_100.streaming.mskcc.txt";
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("filename", inputFile)
+                .addString("outputFilename", actualFile)
+                .addString("replaceSymbolEntrez", String.valueOf(true))
+                .addString("isoformOverride", "mskcc")
+                .addString("streamingWindowSize", "7")
+                .toJobParameters();
+        testWith(jobParameters, expectedFile, actualFile);
+    }
+
+    @Test
+    @DisplayName("Check if maf file still the same when annotating streaming windows ahead of the writer")
+    public void check_if_maf_file_still_the_same_when_annotating_streaming_windows_ahead_of_the_writer() throws Exception {
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", "annotation_summary");
+        String inputFile = IN + "data_mutations_extended_100.txt";
+        String expectedFile = EXPECTED + "data_mutations_extended_100.mskcc.txt";
+        String actualFile = ACTUAL + "data_mutations_extended_100.pipelined.mskcc.txt";
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("filename", inputFile)
+                .addString("outputFilename", actualFile)
+                .addString("replaceSymbolEntrez", String.valueOf(true))
+                .addString("isoformOverride", "mskcc")
+                .addString("streamingWindowSize", "7")
+                .addString("pipelineDepth", "2")
+                .toJobParameters();
+        testWith(jobParameters, expectedFile, actualFile);
+    }
+
+    @Test
+    @DisplayName("Check if maf file still the same when annotating in partitions")
+    public void check_if_maf_file_still_the_same_when_annotating_in_partitions() throws Exception {
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", "annotation_summary");
+        String inputFile = IN + "data_mutations_extended_100.txt";
+        String expectedFile = EXPECTED + "data_mutations_extended_100.mskcc.txt";
+        String actualFile = ACTUAL + "data_mutations_extended_100.partitioned.mskcc.txt";
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("filename", inputFile)
+                .addString("outputFilename", actualFile)
+                .addString("replaceSymbolEntrez", String.valueOf(true))
+                .addString("isoformOverride", "mskcc")
+                .addString("partitions", "3")
+                .toJobParameters();
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+        assertEquals("COMPLETED", jobExecution.getExitStatus().getExitCode());
+        // the decider routes the job to the partitioned step and the merge step instead of the single step
+        java.util.Set<String> stepNames = new java.util.HashSet<>();
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            stepNames.add(stepExecution.getStepName());
+        }
+        assertTrue(stepNames.toString(), stepNames.contains("partitionedStep"));
+        assertTrue(stepNames.toString(), stepNames.contains("mergePartitionsStep"));
+        assertFalse(stepNames.toString(), stepNames.contains("step"));
+        assertFiles(new FileSystemResource(expectedFile), new FileSystemResource(actualFile));
+    }
+
+    @Test
+    @DisplayName("Check if maf files still the same when annotating with mskcc and uniprot transcripts in one run")
+    public void check_if_maf_files_still_the_same_when_annotating_with_mskcc_and_uniprot_transcripts_in_one_run() throws Exception {
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", "annotation_summary");
+        String inputFile = IN + "data_mutations_extended_100.txt";
+        for (String isoformOverride : new String[] { "mskcc", "uniprot" }) {
+            String expectedFile = EXPECTED + "data_mutations_extended_100." + isoformOverride + ".txt";
+            String actualFile = ACTUAL + "data_mutations_extended_100.multi_isoform." + isoformOverride + ".txt";
+            JobParameters jobParameters = new JobParametersBuilder()
+                    .addString("filename", inputFile)
+                    .addString("outputFilename", actualFile)
+                    .addString("replaceSymbolEntrez", String.valueOf(true))
+                    .addString("isoformOverride", isoformOverride)
+                    .addString("isoformOverrides", "mskcc,uniprot")
+                    .toJobParameters();
+            testWith(jobParameters, expectedFile, actualFile);
+        }
+    }
+
     @Test
     @DisplayName("Check if minimal example maf file still the same when annotating with uniprot transcripts")
     public void check_if_minimal_example_maf_file_still_the_same_when_annotating_with_uniprot_transcripts() throws Exception {
@@ -375,6 +490,124 @@ public class SpringBatchIntegrationTest {
         testWith(jobParameters, expectedFile, actualFile);
     }
 
+    @Test
+    @DisplayName("Test reusing the records of a previous output")
+    public void test_previous_output() throws Exception {
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", "annotation_summary");
+        String inputFile = IN + "minimal_example_with_matching_bases.txt";
+        String expectedFile = EXPECTED + "minimal_example_strip_off_first_matching_bases.expected.txt";
+        String previousFile = ACTUAL + "minimal_example_previous_output.previous.txt";
+        String actualFile = ACTUAL + "minimal_example_previous_output.actual.txt";
+        JobParametersBuilder jobParametersBuilder = new JobParametersBuilder()
+                .addString("filename", inputFile)
+                .addString("replaceSymbolEntrez", String.valueOf(true))
+                .addString("isoformOverride", "mskcc")
+                .addString("postIntervalSize", String.valueOf(-1))
+                .addString("stripMatchingBases", "first")
+                .addString("writeRowHashes", String.valueOf(true));
+        testWith(jobParametersBuilder.addString("outputFilename", previousFile).toJobParameters(), expectedFile, previousFile);
+        // rows copied from the previous output are written the same way as freshly annotated ones
+        JobParameters jobParameters = jobParametersBuilder
+                .addString("outputFilename", actualFile)
+                .addString("previousOutput", previousFile)
+                .toJobParameters();
+        testWith(jobParameters, expectedFile, actualFile);
+    }
+
+    @Test
+    @DisplayName("Test annotating without the job launcher")
+    public void test_direct_annotation_runner() throws Exception {
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", "annotation_summary");
+        String inputFile = IN + "data_mutations_extended_100.txt";
+        String expectedFile = EXPECTED + "data_mutations_extended_100.mskcc.txt";
+        String actualFile = ACTUAL + "data_mutations_extended_100.direct.mskcc.txt";
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("filename", inputFile)
+                .addString("outputFilename", actualFile)
+                .addString("replaceSymbolEntrez", String.valueOf(true))
+                .addString("isoformOverride", "mskcc")
+                .toJobParameters();
+        assertEquals(ExitStatus.COMPLETED, directAnnotationRunner.run(jobParameters));
+        assertFiles(new FileSystemResource(expectedFile), new FileSystemResource(actualFile));
+    }
+
+    @Test
+    @DisplayName("Test restarting a failed streaming job")
+    public void test_restart_failed_streaming_job() throws Exception {
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", "annotation_summary");
+        AnnotationControllerApi apiClient = (AnnotationControllerApi) ReflectionTestUtils.getField(annotator, "apiClient");
+        Long memoryCacheMaxEntries = (Long) ReflectionTestUtils.getField(annotator, "memoryCacheMaxEntries");
+        Object inMemoryAnnotationCache = ReflectionTestUtils.getField(annotator, "inMemoryAnnotationCache");
+        // every fetched variant is recorded, so the cache must not answer for the server
+        ReflectionTestUtils.setField(annotator, "memoryCacheMaxEntries", 0L);
+        ReflectionTestUtils.setField(annotator, "inMemoryAnnotationCache", null);
+        String inputFile = IN + "data_mutations_extended_100.txt";
+        String expectedFile = EXPECTED + "data_mutations_extended_100.mskcc.txt";
+        String actualFile = ACTUAL + "data_mutations_extended_100.restarted.mskcc.txt";
+        String uninterruptedFile = ACTUAL + "data_mutations_extended_100.uninterrupted.mskcc.txt";
+        try {
+            List<String> uninterruptedFetches = new ArrayList<>();
+            ReflectionTestUtils.setField(annotator, "apiClient", makeRecordingApiClient(apiClient, uninterruptedFetches, 0));
+            JobExecution jobExecution = jobLauncherTestUtils.launchJob(makeStreamingJobParameters(inputFile, uninterruptedFile, "7"));
+            assertEquals("COMPLETED", jobExecution.getExitStatus().getExitCode());
+
+            // the third window fails after the first two windows were committed
+            List<String> fetches = new ArrayList<>();
+            ReflectionTestUtils.setField(annotator, "apiClient", makeRecordingApiClient(apiClient, fetches, 3));
+            JobParameters jobParameters = makeStreamingJobParameters(inputFile, actualFile, "7");
+            jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+            assertEquals("FAILED", jobExecution.getExitStatus().getExitCode());
+            ReflectionTestUtils.setField(annotator, "apiClient", makeRecordingApiClient(apiClient, fetches, 0));
+            jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+            assertEquals("COMPLETED", jobExecution.getExitStatus().getExitCode());
+
+            assertFiles(new FileSystemResource(expectedFile), new FileSystemResource(actualFile));
+            // no variant is fetched twice, and the error report still covers the records of the failed execution
+            assertEquals(uninterruptedFetches, fetches);
+            assertFiles(new FileSystemResource(uninterruptedFile + ".errors"), new FileSystemResource(actualFile + ".errors"));
+        } finally {
+            ReflectionTestUtils.setField(annotator, "apiClient", apiClient);
+            ReflectionTestUtils.setField(annotator, "memoryCacheMaxEntries", memoryCacheMaxEntries);
+            ReflectionTestUtils.setField(annotator, "inMemoryAnnotationCache", inMemoryAnnotationCache);
+        }
+    }
+
+    private static JobParameters makeStreamingJobParameters(String inputFile, String actualFile, String streamingWindowSize) {
+        return new JobParametersBuilder()
+                .addString("filename", inputFile)
+                .addString("outputFilename", actualFile)
+                .addString("replaceSymbolEntrez", String.valueOf(true))
+                .addString("isoformOverride", "mskcc")
+                .addString("errorReportLocation", actualFile + ".errors")
+                .addString("streamingWindowSize", streamingWindowSize)
+                .toJobParameters();
+    }
+
+    /**
+     * Wraps the Genome Nexus client to record the fetched variants, and to fail the
+     * failingRequest-th request (counting from 1) with an error the annotator does not retry.
+     */
+    private static AnnotationControllerApi makeRecordingApiClient(AnnotationControllerApi apiClient, List<String> fetches, int failingRequest) {
+        AtomicInteger requests = new AtomicInteger();
+        return new AnnotationControllerApi(apiClient.getApiClient()) {
+            @Override
+            public List<VariantAnnotation> fetchVariantAnnotationByGenomicLocationPOST(List<GenomicLocation> genomicLocations,
+                String isoformOverrideSource, String token, List<String> fields) throws ApiException {
+                if (requests.incrementAndGet() == failingRequest) {
+                    throw new AssertionError("Failing request " + String.valueOf(failingRequest));
+                }
+                List<VariantAnnotation> annotations = super.fetchVariantAnnotationByGenomicLocationPOST(genomicLocations,
+                    isoformOverrideSource, token, fields);
+                synchronized (fetches) {
+                    for (GenomicLocation genomicLocation : genomicLocations) {
+                        fetches.add(genomicLocation.toString());
+                    }
+                }
+                return annotations;
+            }
+        };
+    }
+
     private void testWith(JobParameters jobParameters, String expectedPath, String actualPath) throws Exception {
         FileSystemResource expectedResult = new FileSystemResource(expectedPath);
         FileSystemResource actualResult = new FileSystemResource(actualPath);
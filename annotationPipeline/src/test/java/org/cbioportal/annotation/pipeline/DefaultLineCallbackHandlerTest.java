@@ -4,6 +4,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -43,6 +45,19 @@ class DefaultLineCallbackHandlerTest {
         DefaultLineCallbackHandler.checkHeader(testLine, null);
     }
 
+    @Test
+    void handleLine_keeps_headers_per_handler() {
+        List<String> firstHeaders = new ArrayList<>();
+        List<String> secondHeaders = new ArrayList<>();
+        DefaultLineCallbackHandler firstHandler = new DefaultLineCallbackHandler(null, firstHeaders);
+        DefaultLineCallbackHandler secondHandler = new DefaultLineCallbackHandler(null, secondHeaders);
+        secondHandler.handleLine("Chromosome\tStart_Position\tEnd_Position\tReference_Allele\tTumor_Seq_Allele2\tSecond_Column");
+        firstHandler.handleLine("Chromosome\tStart_Position\tEnd_Position\tReference_Allele\tTumor_Seq_Allele1");
+        DefaultLineCallbackHandler.checkHeader("Chromosome\tStart_Position\tEnd_Position\tReference_Allele\tTumor_Seq_Allele1\tMerged_Column", null);
+        assertEquals(Arrays.asList("Chromosome", "Start_Position", "End_Position", "Reference_Allele", "Tumor_Seq_Allele1"), firstHeaders);
+        assertEquals(Arrays.asList("Chromosome", "Start_Position", "End_Position", "Reference_Allele", "Tumor_Seq_Allele2", "Second_Column"), secondHeaders);
+    }
+
     @Test
     void handleLine_success_Allele2() {
         String testLine = "Chromosome\tStart_Position\tEnd_Position\tReference_Allele\tTumor_Seq_Allele2";
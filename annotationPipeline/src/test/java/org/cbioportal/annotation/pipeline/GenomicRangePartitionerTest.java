@@ -0,0 +1,58 @@
+package org.cbioportal.annotation.pipeline;
+
+import org.cbioportal.models.MutationRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenomicRangePartitionerTest {
+
+    @Test
+    void splitsIntoBalancedRangesInInputOrder() {
+        List<MutationRecord> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            records.add(record(String.valueOf(i % 4 + 1), String.valueOf(1000 - i)));
+        }
+        List<int[]> ranges = GenomicRangePartitioner.splitByGenomicRange(records, 4);
+        assertEquals(4, ranges.size());
+        for (int[] rowNumbers : ranges) {
+            assertEquals(25, rowNumbers.length);
+            for (int i = 1; i < rowNumbers.length; i++) {
+                assertTrue(rowNumbers[i - 1] < rowNumbers[i]);
+            }
+            // 25 records per chromosome, so each range holds exactly one chromosome
+            String chromosome = records.get(rowNumbers[0]).getCHROMOSOME();
+            for (int rowNumber : rowNumbers) {
+                assertEquals(chromosome, records.get(rowNumber).getCHROMOSOME());
+            }
+        }
+    }
+
+    @Test
+    void keepsRecordsAtTheSamePositionTogether() {
+        List<MutationRecord> records = Arrays.asList(record("chr7", "140453136"), record("7", "140453136"),
+            record("7", "140453136"), record("12", "25398284"), record("X", "100"));
+        // one record per range is asked for, but the three records of BRAF V600 stay in one
+        List<int[]> ranges = GenomicRangePartitioner.splitByGenomicRange(records, 5);
+        assertEquals(3, ranges.size());
+        assertArrayEquals(new int[]{3}, ranges.get(0));
+        assertArrayEquals(new int[]{0, 1, 2}, ranges.get(1));
+        assertArrayEquals(new int[]{4}, ranges.get(2));
+    }
+
+    @Test
+    void noRangesWithoutRecords() {
+        assertTrue(GenomicRangePartitioner.splitByGenomicRange(new ArrayList<>(), 8).isEmpty());
+    }
+
+    private MutationRecord record(String chromosome, String startPosition) {
+        MutationRecord record = new MutationRecord();
+        record.setCHROMOSOME(chromosome);
+        record.setSTART_POSITION(startPosition);
+        return record;
+    }
+}
@@ -0,0 +1,118 @@
+package org.cbioportal.annotation.pipeline;
+
+import org.cbioportal.models.MutationRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MafFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsCommentsHeaderAndRecordsInFileOrder() throws IOException {
+        StringBuilder maf = new StringBuilder("#version 2.4\r\n#isoform: uniprot\nHugo_Symbol\tChromosome\tCustom_Column\n");
+        for (int i = 0; i < 1000; i++) {
+            maf.append("GENE").append(i).append("\t").append(i % 22 + 1).append("\tvalue ").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+            if (i % 100 == 0) {
+                maf.append("#comment inside the body\n\n");
+            }
+        }
+        Path file = Files.writeString(tempDir.resolve("input.maf"), maf.toString());
+
+        // chunk sizes smaller than a line make sure lines spanning several chunks are read once
+        for (int chunkSize : new int[]{3, 64, 4096, 1 << 20}) {
+            try (MafFileReader reader = new MafFileReader(file.toString(), chunkSize, 4, 0)) {
+                reader.open();
+                assertEquals(Arrays.asList("#version 2.4", "#isoform: uniprot"), reader.getCommentLines());
+                assertEquals(Arrays.asList("Hugo_Symbol", "Chromosome", "Custom_Column"), reader.getHeader());
+                List<MutationRecord> records = reader.readAll();
+                assertEquals(1000, records.size());
+                for (int i = 0; i < records.size(); i++) {
+                    assertEquals("GENE" + i, records.get(i).getHUGO_SYMBOL());
+                    assertEquals(String.valueOf(i % 22 + 1), records.get(i).getCHROMOSOME());
+                    assertEquals("value " + i, records.get(i).getAdditionalProperties().get("Custom_Column"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void keepsQuotesAndEmptyValues() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("input.maf"), "Hugo_Symbol\tCenter\tChromosome\n\"BRAF\"\t\t7\n");
+        try (MafFileReader reader = new MafFileReader(file.toString())) {
+            reader.open();
+            MutationRecord record = reader.read();
+            assertEquals("\"BRAF\"", record.getHUGO_SYMBOL());
+            assertEquals("", record.getCENTER());
+            assertEquals("7", record.getCHROMOSOME());
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    void keepsEmptyTrailingColumnsOfTheHeader() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("input.maf"), "Hugo_Symbol\tChromosome\t\nBRAF\t7\t\n");
+        try (MafFileReader reader = new MafFileReader(file.toString())) {
+            reader.open();
+            assertEquals(Arrays.asList("Hugo_Symbol", "Chromosome", ""), reader.getHeader());
+            assertEquals("BRAF", reader.read().getHUGO_SYMBOL());
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    void readsLinesLongerThanTheMappedOverrun() throws IOException {
+        String longValue = "x".repeat(300 * 1024);
+        StringBuilder maf = new StringBuilder("Hugo_Symbol\tCustom_Column\n");
+        for (int i = 0; i < 20; i++) {
+            maf.append("GENE").append(i).append("\t").append(i % 5 == 0 ? longValue : "value").append("\n");
+        }
+        Path file = Files.writeString(tempDir.resolve("input.maf"), maf.toString());
+        // a record limit of one chunk keeps a single chunk parsed ahead of the caller
+        try (MafFileReader reader = new MafFileReader(file.toString(), 1024, 4, 1)) {
+            reader.open();
+            List<MutationRecord> records = reader.readAll();
+            assertEquals(20, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals("GENE" + i, records.get(i).getHUGO_SYMBOL());
+                assertEquals(i % 5 == 0 ? longValue : "value", records.get(i).getAdditionalProperties().get("Custom_Column"));
+            }
+        }
+    }
+
+    @Test
+    void fileWithoutHeaderHasNoRecords() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("input.maf"), "#only a comment");
+        try (MafFileReader reader = new MafFileReader(file.toString())) {
+            reader.open();
+            assertTrue(reader.getHeader().isEmpty());
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    void lineWithWrongNumberOfColumnsFails() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("input.maf"), "Hugo_Symbol\tChromosome\nBRAF\t7\textra\n");
+        try (MafFileReader reader = new MafFileReader(file.toString())) {
+            reader.open();
+            assertThrows(IOException.class, reader::read);
+        }
+    }
+
+    @Test
+    void findsBytesBeforeAndAfterTheLastFullWord() {
+        byte[] bytes = "abcdefghij\tk".getBytes();
+        assertEquals(10, MafFileReader.indexOf(bytes, 0, bytes.length, 0x0909090909090909L));
+        assertEquals(-1, MafFileReader.indexOf(bytes, 0, 10, 0x0909090909090909L));
+        assertEquals(3, MafFileReader.indexOf("abc\t".getBytes(), 0, 4, 0x0909090909090909L));
+    }
+}
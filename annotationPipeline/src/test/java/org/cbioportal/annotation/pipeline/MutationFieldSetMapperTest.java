@@ -5,6 +5,7 @@ import org.cbioportal.models.MutationRecord;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
+import org.springframework.batch.item.file.transform.DefaultFieldSet;
 import org.springframework.batch.item.file.transform.FieldSet;
 import org.springframework.validation.BindException;
 
@@ -42,4 +43,23 @@ class MutationFieldSetMapperTest {
             assertEquals("NON_EXISTING_FIELD_VALUE", additionalProperties.get("NON_EXISTING_FIELD"));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void mapFieldSet_reusesSettersForRowsWithTheSameColumns() throws BindException {
+        String[] names = {"Hugo_Symbol", "Chromosome", "NON_EXISTING_FIELD"};
+        MutationFieldSetMapper mutationFieldSetMapper = new MutationFieldSetMapper();
+        MutationRecord first = mutationFieldSetMapper.mapFieldSet(new DefaultFieldSet(new String[]{"BRAF", "7", "a"}, names));
+        MutationRecord second = mutationFieldSetMapper.mapFieldSet(new DefaultFieldSet(new String[]{"KRAS", "12", "b"}, names));
+        assertEquals("BRAF", first.getHUGO_SYMBOL());
+        assertEquals("7", first.getCHROMOSOME());
+        assertEquals("a", first.getAdditionalProperties().get("NON_EXISTING_FIELD"));
+        assertEquals("KRAS", second.getHUGO_SYMBOL());
+        assertEquals("12", second.getCHROMOSOME());
+        assertEquals("b", second.getAdditionalProperties().get("NON_EXISTING_FIELD"));
+
+        MutationRecord otherColumns = mutationFieldSetMapper.mapFieldSet(
+                new DefaultFieldSet(new String[]{"TP53", "17"}, new String[]{"NON_EXISTING_FIELD", "Chromosome"}));
+        assertEquals("TP53", otherColumns.getAdditionalProperties().get("NON_EXISTING_FIELD"));
+        assertEquals("17", otherColumns.getCHROMOSOME());
+    }
+}
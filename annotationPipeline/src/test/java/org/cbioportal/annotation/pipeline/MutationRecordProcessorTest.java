@@ -52,4 +52,23 @@ class MutationRecordProcessorTest {
         Assert.assertEquals(expected, actual);
     }
 
-}
\ No newline at end of file
+    /**
+     * Values are trimmed, and fields whose getter returns null fall back to the additional properties
+     * @throws Exception
+     */
+    @Test
+    void process_trimsValuesAndFallsBackToAdditionalProperties() throws Exception {
+        List<String> header = Arrays.asList("Hugo_Symbol", "Center", "NON_EXISTENT_FIELD_1");
+        MutationRecordProcessor processor = new MutationRecordProcessor(header);
+        AnnotatedRecord record = new AnnotatedRecord();
+        record.setHUGO_SYMBOL(" BRAF\t");
+        record.setCENTER(null);
+        record.getAdditionalProperties().put("Center", "Center_VALUE ");
+        record.getAdditionalProperties().put("NON_EXISTENT_FIELD_1", " NON_EXISTENT_FIELD_1_VALUE");
+
+        Assert.assertEquals("BRAF\tCenter_VALUE\tNON_EXISTENT_FIELD_1_VALUE", processor.process(record));
+        record.setHUGO_SYMBOL("KRAS");
+        Assert.assertEquals("KRAS\tCenter_VALUE\tNON_EXISTENT_FIELD_1_VALUE", processor.process(record));
+    }
+
+}
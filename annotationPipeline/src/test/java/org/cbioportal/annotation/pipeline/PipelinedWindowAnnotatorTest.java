@@ -0,0 +1,88 @@
+package org.cbioportal.annotation.pipeline;
+
+import org.cbioportal.models.AnnotatedRecord;
+import org.cbioportal.models.MutationRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ItemStreamException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinedWindowAnnotatorTest {
+
+    private static final Function<List<MutationRecord>, List<AnnotatedRecord>> ANNOTATE = mutationRecords -> {
+        List<AnnotatedRecord> annotatedRecords = new ArrayList<>();
+        for (MutationRecord mutationRecord : mutationRecords) {
+            annotatedRecords.add(new AnnotatedRecord(mutationRecord));
+        }
+        return annotatedRecords;
+    };
+
+    @Test
+    void windowsAreReturnedInInputOrder() {
+        AtomicInteger windowsRead = new AtomicInteger();
+        try (PipelinedWindowAnnotator pipeline = new PipelinedWindowAnnotator(windows(windowsRead, 50, 3), ANNOTATE, 2)) {
+            for (int window = 0; window < 50; window++) {
+                List<AnnotatedRecord> annotatedRecords = pipeline.nextWindow();
+                assertEquals(3, annotatedRecords.size());
+                for (int i = 0; i < 3; i++) {
+                    assertEquals(String.valueOf(window * 3 + i), annotatedRecords.get(i).getSTART_POSITION());
+                }
+            }
+            assertNull(pipeline.nextWindow());
+            assertNull(pipeline.nextWindow());
+        }
+    }
+
+    @Test
+    void readingStopsWhenTheQueueIsFull() throws InterruptedException {
+        AtomicInteger windowsRead = new AtomicInteger();
+        try (PipelinedWindowAnnotator pipeline = new PipelinedWindowAnnotator(windows(windowsRead, 100, 1), ANNOTATE, 2)) {
+            Thread.sleep(200);
+            // two queued windows plus the one waiting to be queued
+            assertTrue(windowsRead.get() <= 3, "read " + windowsRead.get() + " windows ahead");
+            assertNotNull(pipeline.nextWindow());
+        }
+    }
+
+    @Test
+    void failuresAreRethrownAfterTheWindowsReadBefore() {
+        AtomicInteger windowsRead = new AtomicInteger();
+        Callable<List<MutationRecord>> windowReader = windows(windowsRead, 10, 1);
+        Callable<List<MutationRecord>> failingWindowReader = () -> {
+            if (windowsRead.get() == 2) {
+                throw new IllegalStateException("broken input");
+            }
+            return windowReader.call();
+        };
+        try (PipelinedWindowAnnotator pipeline = new PipelinedWindowAnnotator(failingWindowReader, ANNOTATE, 4)) {
+            assertNotNull(pipeline.nextWindow());
+            assertNotNull(pipeline.nextWindow());
+            ItemStreamException e = assertThrows(ItemStreamException.class, pipeline::nextWindow);
+            assertEquals("broken input", e.getCause().getMessage());
+        }
+    }
+
+    private Callable<List<MutationRecord>> windows(AtomicInteger windowsRead, int windowCount, int windowSize) {
+        return () -> {
+            int window = windowsRead.get();
+            if (window == windowCount) {
+                return Collections.emptyList();
+            }
+            windowsRead.incrementAndGet();
+            List<MutationRecord> mutationRecords = new ArrayList<>();
+            for (int i = 0; i < windowSize; i++) {
+                MutationRecord mutationRecord = new MutationRecord();
+                mutationRecord.setSTART_POSITION(String.valueOf(window * windowSize + i));
+                mutationRecords.add(mutationRecord);
+            }
+            return mutationRecords;
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package org.cbioportal.annotation.pipeline;
+
+import org.cbioportal.models.AnnotatedRecord;
+import org.cbioportal.models.MutationRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreviousOutputTest {
+
+    private static final List<String> INPUT_HEADER = Arrays.asList("Hugo_Symbol", "Chromosome", "Custom_Column");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rowHashesDependOnInputColumnsOnly() {
+        MutationRecord record = record("BRAF", "7", "a");
+        MutationRecord sameRecord = record("BRAF", "7", "a");
+        MutationRecord changedRecord = record("BRAF", "7", "b");
+        String[] rowHashes = PreviousOutput.rowHashes(Arrays.asList(record, sameRecord, changedRecord), INPUT_HEADER);
+        assertEquals(rowHashes[0], rowHashes[1]);
+        assertNotEquals(rowHashes[0], rowHashes[2]);
+
+        // annotated columns added to the record later do not change its hash
+        sameRecord.addAdditionalProperty("Polyphen_Score", "0.9");
+        assertEquals(rowHashes[0], PreviousOutput.rowHashes(Arrays.asList(sameRecord), INPUT_HEADER)[0]);
+    }
+
+    @Test
+    void reusesSuccessfullyAnnotatedRowsOnly() throws IOException {
+        String[] rowHashes = PreviousOutput.rowHashes(Arrays.asList(record("BRAF", "7", "a"), record("KRAS", "12", "b")), INPUT_HEADER);
+        String settingsHash = PreviousOutput.settingsHash(Arrays.asList("mskcc"));
+        Path output = writePreviousOutput(settingsHash, rowHashes);
+
+        PreviousOutput previousOutput = PreviousOutput.load(output.toString(), settingsHash);
+        assertEquals(1, previousOutput.size());
+        AnnotatedRecord annotatedRecord = previousOutput.getAnnotatedRecord(rowHashes[0]);
+        assertEquals("BRAF", annotatedRecord.getHUGO_SYMBOL());
+        assertEquals("p.V600E", annotatedRecord.getHGVSP_SHORT());
+        assertEquals("0.001", annotatedRecord.getGNOMAD_AF());
+        assertTrue(annotatedRecord.getSchema().contains("gnomAD_AF"));
+        assertEquals("a", annotatedRecord.getAdditionalProperties().get("Custom_Column"));
+        assertEquals("SUCCESS", annotatedRecord.getANNOTATION_STATUS());
+        assertNull(previousOutput.getAnnotatedRecord(rowHashes[1]));
+    }
+
+    @Test
+    void ignoresOutputAnnotatedWithOtherSettings() throws IOException {
+        String[] rowHashes = PreviousOutput.rowHashes(Arrays.asList(record("BRAF", "7", "a")), INPUT_HEADER);
+        Path output = writePreviousOutput(PreviousOutput.settingsHash(Arrays.asList("uniprot")), rowHashes);
+        assertNull(PreviousOutput.load(output.toString(), PreviousOutput.settingsHash(Arrays.asList("mskcc"))));
+    }
+
+    private Path writePreviousOutput(String settingsHash, String[] rowHashes) throws IOException {
+        Path output = Files.writeString(tempDir.resolve("output.maf"), "#isoform: mskcc\n"
+            + "Hugo_Symbol\tChromosome\tHGVSp_Short\tgnomAD_AF\tCustom_Column\tAnnotation_Status\n"
+            + "BRAF\t7\tp.V600E\t0.001\ta\tSUCCESS\n"
+            + "KRAS\t12\t\t\tb\tFAILED\n");
+        Files.writeString(tempDir.resolve("output.maf" + PreviousOutput.ROW_HASHES_SUFFIX),
+            PreviousOutput.SETTINGS_PREFIX + settingsHash + "\n" + String.join("\n", rowHashes) + "\n");
+        return output;
+    }
+
+    private MutationRecord record(String hugoSymbol, String chromosome, String customColumn) {
+        MutationRecord record = new MutationRecord();
+        record.setHUGO_SYMBOL(hugoSymbol);
+        record.setCHROMOSOME(chromosome);
+        record.addAdditionalProperty("Custom_Column", customColumn);
+        return record;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotator.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chooses the number of variants sent in each POST request from the responses seen so far.
+ *
+ * Each response is turned into the batch size that would have hit the target latency and stayed
+ * under the request and response size limits. The batch size moves towards that size, growing by
+ * at most a quarter per response and shrinking by at most half, and is halved when a request
+ * needed retries or failed. The batch size always stays within the configured bounds.
+ *
+ * Thread safe, so annotation runs for several isoform override sources can share one batch size.
+ */
+public class AdaptiveBatchSizer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveBatchSizer.class);
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetLatencyMillis;
+    private final long maxRequestBytes;
+    private final long maxResponseBytes;
+    private int batchSize;
+
+    public AdaptiveBatchSizer(int initialBatchSize, int minBatchSize, int maxBatchSize, long targetLatencyMillis,
+        long maxRequestBytes, long maxResponseBytes) {
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.targetLatencyMillis = Math.max(1, targetLatencyMillis);
+        this.maxRequestBytes = maxRequestBytes;
+        this.maxResponseBytes = maxResponseBytes;
+        this.batchSize = clamp(initialBatchSize);
+    }
+
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param variants Number of variants sent in the request
+     * @param latencyMillis Time taken by the request
+     * @param requestBytes Size of the request body
+     * @param responseBytes Size of the response body
+     * @param failed Whether the request had to be retried or did not annotate all variants
+     * @return The batch size to use for the next request
+     */
+    public synchronized int recordResponse(int variants, long latencyMillis, long requestBytes, long responseBytes, boolean failed) {
+        if (variants <= 0) {
+            return batchSize;
+        }
+        int previousBatchSize = batchSize;
+        if (failed) {
+            batchSize = clamp(batchSize / 2);
+        } else {
+            long optimalBatchSize = variants * targetLatencyMillis / Math.max(1, latencyMillis);
+            if (maxRequestBytes > 0 && requestBytes > 0) {
+                optimalBatchSize = Math.min(optimalBatchSize, variants * maxRequestBytes / requestBytes);
+            }
+            if (maxResponseBytes > 0 && responseBytes > 0) {
+                optimalBatchSize = Math.min(optimalBatchSize, variants * maxResponseBytes / responseBytes);
+            }
+            if (optimalBatchSize < batchSize) {
+                batchSize = clamp((int) Math.max(optimalBatchSize, batchSize / 2));
+            } else {
+                batchSize = clamp((int) Math.min(optimalBatchSize, batchSize + Math.max(1, batchSize / 4)));
+            }
+        }
+        if (batchSize != previousBatchSize) {
+            LOG.info("POST batch size changed from " + previousBatchSize + " to " + batchSize + " variants (last request: "
+                + variants + " variants, " + latencyMillis + " ms, " + requestBytes + " bytes sent, " + responseBytes + " bytes received"
+                + (failed ? ", failed" : "") + ")");
+        }
+        return batchSize;
+    }
+
+    private int clamp(int size) {
+        return Math.min(maxBatchSize, Math.max(minBatchSize, size));
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotator.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counters of all annotations running in this process, for watching long jobs while they run.
+ * There is one instance per process since it is registered with the platform MBean server, the
+ * annotator and the pipeline update it as records move through the stages.
+ */
+public class AnnotationMetrics implements AnnotationMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.cbioportal.annotator:type=AnnotationMetrics";
+    private static final String PROMETHEUS_PREFIX = "genome_nexus_annotation_";
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationMetrics.class);
+    private static final AnnotationMetrics INSTANCE = register(new AnnotationMetrics());
+
+    private final LongAdder recordsParsed = new LongAdder();
+    private final LongAdder recordsWritten = new LongAdder();
+    private final LongAdder uniqueVariants = new LongAdder();
+    private final AtomicLong requestsInFlight = new AtomicLong();
+    private final LongAdder requestsCompleted = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder serverFailures = new LongAdder();
+    private final LongAdder ambiguousAlleleFailures = new LongAdder();
+    private final LongAdder nullVariantClassificationFailures = new LongAdder();
+    private final LongAdder otherFailures = new LongAdder();
+    private final AtomicLong queuedWindows = new AtomicLong();
+    private final AtomicLong bufferedRecords = new AtomicLong();
+
+    AnnotationMetrics() {
+    }
+
+    public static AnnotationMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private static AnnotationMetrics register(AnnotationMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            LOG.warn("Annotation metrics are not published over JMX: " + e.getMessage());
+        }
+        return metrics;
+    }
+
+    public void addRecordsParsed(int records) {
+        recordsParsed.add(records);
+    }
+
+    public void addRecordsWritten(int records) {
+        recordsWritten.add(records);
+    }
+
+    public void addUniqueVariants(int variants) {
+        uniqueVariants.add(variants);
+    }
+
+    public void requestStarted() {
+        requestsInFlight.incrementAndGet();
+    }
+
+    public void requestCompleted() {
+        requestsInFlight.decrementAndGet();
+        requestsCompleted.increment();
+    }
+
+    public void addCacheLookups(int hits, int misses) {
+        cacheHits.add(hits);
+        cacheMisses.add(misses);
+    }
+
+    public void addServerFailure() {
+        serverFailures.increment();
+    }
+
+    public void addAmbiguousAlleleFailure() {
+        ambiguousAlleleFailures.increment();
+    }
+
+    public void addNullVariantClassificationFailure() {
+        nullVariantClassificationFailures.increment();
+    }
+
+    public void addOtherFailure() {
+        otherFailures.increment();
+    }
+
+    /**
+     * @param windows Change in the number of annotated windows waiting for the step, negative when taken
+     */
+    public void addQueuedWindows(int windows) {
+        queuedWindows.addAndGet(windows);
+    }
+
+    /**
+     * @param records Change in the number of annotated records waiting to be written, negative when read
+     */
+    public void addBufferedRecords(int records) {
+        bufferedRecords.addAndGet(records);
+    }
+
+    @Override
+    public long getRecordsParsedTotal() {
+        return recordsParsed.sum();
+    }
+
+    @Override
+    public long getRecordsWrittenTotal() {
+        return recordsWritten.sum();
+    }
+
+    @Override
+    public long getUniqueVariantsTotal() {
+        return uniqueVariants.sum();
+    }
+
+    @Override
+    public long getRequestsInFlight() {
+        return requestsInFlight.get();
+    }
+
+    @Override
+    public long getRequestsCompletedTotal() {
+        return requestsCompleted.sum();
+    }
+
+    @Override
+    public long getCacheHitsTotal() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMissesTotal() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public long getServerFailuresTotal() {
+        return serverFailures.sum();
+    }
+
+    @Override
+    public long getAmbiguousAlleleFailuresTotal() {
+        return ambiguousAlleleFailures.sum();
+    }
+
+    @Override
+    public long getNullVariantClassificationFailuresTotal() {
+        return nullVariantClassificationFailures.sum();
+    }
+
+    @Override
+    public long getOtherFailuresTotal() {
+        return otherFailures.sum();
+    }
+
+    @Override
+    public long getQueuedWindows() {
+        return queuedWindows.get();
+    }
+
+    @Override
+    public long getBufferedRecords() {
+        return bufferedRecords.get();
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return The current values in the Prometheus text format, one line per metric
+     */
+    public String toPrometheusText() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("records_parsed_total", getRecordsParsedTotal());
+        values.put("records_written_total", getRecordsWrittenTotal());
+        values.put("unique_variants_total", getUniqueVariantsTotal());
+        values.put("requests_in_flight", getRequestsInFlight());
+        values.put("requests_completed_total", getRequestsCompletedTotal());
+        values.put("cache_hits_total", getCacheHitsTotal());
+        values.put("cache_misses_total", getCacheMissesTotal());
+        values.put("server_failures_total", getServerFailuresTotal());
+        values.put("ambiguous_allele_failures_total", getAmbiguousAlleleFailuresTotal());
+        values.put("null_variant_classification_failures_total", getNullVariantClassificationFailuresTotal());
+        values.put("other_failures_total", getOtherFailuresTotal());
+        values.put("queued_windows", getQueuedWindows());
+        values.put("buffered_records", getBufferedRecords());
+        values.put("heap_used_bytes", getHeapUsedBytes());
+        values.put("timestamp_seconds", System.currentTimeMillis() / 1000L);
+        StringBuilder builder = new StringBuilder();
+        values.forEach((name, value) -> builder.append(PROMETHEUS_PREFIX).append(name).append(' ').append(value).append('\n'));
+        return builder.toString();
+    }
+}
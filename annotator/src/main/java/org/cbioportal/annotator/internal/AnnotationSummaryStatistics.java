@@ -34,10 +34,14 @@ package org.cbioportal.annotator.internal;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.google.gson.GsonBuilder;
 import org.apache.commons.lang.StringUtils;
 import org.cbioportal.annotator.Annotator;
 import org.cbioportal.models.AnnotatedRecord;
@@ -47,6 +51,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Statistics are added under the lock of this object, since the partitions of a partitioned
+ * annotation job annotate concurrently and share one instance.
  *
  * @author ochoaa
  */
@@ -65,9 +71,32 @@ private final List<String> ERROR_FILE_HEADER = Arrays.asList("SAMPLE_ID", "CHR",
     private Integer otherFailedAnnotatedRecords;
     private List<MutationRecord> failedAnnotatedRecords;
     private List<String> failedAnnotatedRecordsErrorMessages;
-    private final List<Long> durations = new ArrayList<>();
+    private final AnnotationMetrics metrics = AnnotationMetrics.getInstance();
+    private final LatencyHistogram responseTimes = new LatencyHistogram();
+    private Long responseVariants = 0L;
+    private Long responseBytes = 0L;
+    // System.nanoTime() of the start of the first and the end of the last request
+    private Long firstRequestStartNanos;
+    private Long lastResponseEndNanos;
+    private Integer memoryCacheHits = 0;
+    private Integer persistentCacheHits = 0;
+    private Integer annotationCacheMisses = 0;
+    private Long memoryCacheEntries = 0L;
+    private Long memoryCacheSizeInBytes = 0L;
+    private Long memoryCacheEvictions = 0L;
+    private Integer postRetries = 0;
+    private Integer splitPostRequests = 0;
+    private Integer maxPostSplitDepth = 0;
+    private Long postRetryTimeInMillis = 0L;
+    private Integer tieredEnrichmentVariants = 0;
+    private Integer enrichedVariants = 0;
+    private Integer failedEnrichmentVariants = 0;
+    private Integer reusedRecords = 0;
+    private Integer reannotatedRecords = 0;
 
     private static final Logger LOG = LoggerFactory.getLogger(AnnotationSummaryStatistics.class);
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    public static final String SUMMARY_FILE_SUFFIX = ".summary.json";
 
     public AnnotationSummaryStatistics(Annotator annotator) {
         this.annotator = annotator;
@@ -83,33 +112,169 @@ private final List<String> ERROR_FILE_HEADER = Arrays.asList("SAMPLE_ID", "CHR",
      * POST and GET are not used together... if this changes, you might want to change this method too
      * @param duration Duration of the POST/GET operation in seconds
      */
-    public void addDuration(Long duration) {
-        durations.add(duration);
+    public synchronized void addDuration(Long duration) {
+        addResponse(duration * NANOS_PER_SECOND, 0, 0L);
+    }
+
+    /**
+     * Records one POST/GET operation that has just completed
+     * @param latencyNanos Duration of the operation in nanoseconds
+     * @param variants Number of variants annotated by the operation
+     * @param bytes Number of bytes sent and received, or 0 when unknown
+     */
+    public synchronized void addResponse(long latencyNanos, int variants, long bytes) {
+        responseTimes.record(latencyNanos);
+        responseVariants += variants;
+        responseBytes += bytes;
+        long endNanos = System.nanoTime();
+        if (firstRequestStartNanos == null || endNanos - latencyNanos < firstRequestStartNanos) {
+            firstRequestStartNanos = endNanos - latencyNanos;
+        }
+        lastResponseEndNanos = endNanos;
     }
 
     /**
      *
      * @return The average response time with 3 digits precision
      */
-    public String averageResponseTime() {
-        if(durations.size() == 0) {
-            return "0.000";
+    public synchronized String averageResponseTime() {
+        return String.format("%.3f", responseTimes.getMeanNanos() / NANOS_PER_SECOND);
+    }
+
+    /**
+     *
+     * @return The total response time in whole seconds
+     */
+    public synchronized String totalResponseTime() {
+        return String.valueOf(responseTimes.getTotalNanos() / NANOS_PER_SECOND);
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100
+     * @return The response time at the percentile in seconds
+     */
+    public synchronized double responseTimePercentile(double percentile) {
+        return (double) responseTimes.getPercentileNanos(percentile) / NANOS_PER_SECOND;
+    }
+
+    public synchronized long getResponseCount() {
+        return responseTimes.getCount();
+    }
+
+    /**
+     * @return Seconds from the start of the first request to the end of the last response, so
+     * requests sent concurrently are not counted more than once
+     */
+    public synchronized double requestWallTimeSeconds() {
+        if (firstRequestStartNanos == null) {
+            return 0.0;
         }
-        return String.format("%.3f", durations.stream().mapToLong(Long::longValue).average().getAsDouble());
+        return (double) (lastResponseEndNanos - firstRequestStartNanos) / NANOS_PER_SECOND;
+    }
+
+    private double perSecond(long amount) {
+        double seconds = requestWallTimeSeconds();
+        return seconds > 0 ? amount / seconds : 0.0;
+    }
+
+    /**
+     * @param memoryCacheHits Number of variants resolved from the in-memory annotation cache
+     * @param persistentCacheHits Number of variants resolved from the persistent annotation cache
+     * @param misses Number of variants not found in any annotation cache
+     */
+    public synchronized void addAnnotationCacheLookups(int memoryCacheHits, int persistentCacheHits, int misses) {
+        this.memoryCacheHits += memoryCacheHits;
+        this.persistentCacheHits += persistentCacheHits;
+        this.annotationCacheMisses += misses;
+        metrics.addCacheLookups(memoryCacheHits + persistentCacheHits, misses);
+    }
+
+    /**
+     * The in-memory cache outlives a single run, so this is a snapshot of its current usage
+     */
+    public synchronized void setInMemoryAnnotationCacheUsage(long entries, long sizeInBytes, long evictions) {
+        this.memoryCacheEntries = entries;
+        this.memoryCacheSizeInBytes = sizeInBytes;
+        this.memoryCacheEvictions = evictions;
+    }
+
+    public Integer getAnnotationCacheHits() {
+        return memoryCacheHits + persistentCacheHits;
+    }
+
+    public Integer getAnnotationCacheMisses() {
+        return annotationCacheMisses;
     }
 
     /**
      *
-     * @return The total response time
+     * @return The percentage of cache lookups that were hits with 1 digit precision
      */
-    public String totalResponseTime() {
-        if(durations.size() == 0) {
-            return "0";
+    public String annotationCacheHitRate() {
+        int lookups = getAnnotationCacheHits() + annotationCacheMisses;
+        if (lookups == 0) {
+            return "0.0";
         }
-        return String.valueOf(durations.stream().mapToLong(Long::longValue).sum());
+        return String.format("%.1f", getAnnotationCacheHits() * 100.0 / lookups);
+    }
+
+    /**
+     * @param retries Number of times a failed POST request was repeated
+     * @param splitRequests Number of smaller POST requests sent after splitting a failed partition
+     * @param splitDepth Deepest level a failed partition had to be split to isolate failing variants
+     * @param retryTimeInMillis Time spent on failed attempts, backoff and split requests
+     */
+    public synchronized void addPostRetries(int retries, int splitRequests, int splitDepth, long retryTimeInMillis) {
+        this.postRetries += retries;
+        this.splitPostRequests += splitRequests;
+        this.maxPostSplitDepth = Math.max(this.maxPostSplitDepth, splitDepth);
+        this.postRetryTimeInMillis += retryTimeInMillis;
     }
 
-    public void addFailedAnnotatedRecordDueToServer(MutationRecord record, String serverErrorMessage, String isoformOverride) {
+    public Integer getPostRetries() {
+        return postRetries;
+    }
+
+    public Integer getSplitPostRequests() {
+        return splitPostRequests;
+    }
+
+    public Integer getMaxPostSplitDepth() {
+        return maxPostSplitDepth;
+    }
+
+    public synchronized void addTieredEnrichment(int variants, int enrichedVariants, int failedEnrichmentVariants) {
+        this.tieredEnrichmentVariants += variants;
+        this.enrichedVariants += enrichedVariants;
+        this.failedEnrichmentVariants += failedEnrichmentVariants;
+    }
+
+    public Integer getTieredEnrichmentVariants() {
+        return tieredEnrichmentVariants;
+    }
+
+    public Integer getEnrichedVariants() {
+        return enrichedVariants;
+    }
+
+    public Integer getFailedEnrichmentVariants() {
+        return failedEnrichmentVariants;
+    }
+
+    public synchronized void addPreviousOutputRecords(int reusedRecords, int reannotatedRecords) {
+        this.reusedRecords += reusedRecords;
+        this.reannotatedRecords += reannotatedRecords;
+    }
+
+    public Integer getReusedRecords() {
+        return reusedRecords;
+    }
+
+    public Integer getReannotatedRecords() {
+        return reannotatedRecords;
+    }
+
+    public synchronized void addFailedAnnotatedRecordDueToServer(MutationRecord record, String serverErrorMessage, String isoformOverride) {
         failedAnnotatedRecords.add(record);
         failedAnnotatedRecordsErrorMessages.add(constructErrorMessageFromRecord(record,
                 record.getVARIANT_CLASSIFICATION(),
@@ -118,13 +283,36 @@ private final List<String> ERROR_FILE_HEADER = Arrays.asList("SAMPLE_ID", "CHR",
         );
         this.totalFailedAnnotatedRecords++;
         this.otherFailedAnnotatedRecords++;
+        metrics.addServerFailure();
+    }
+
+    /**
+     * Failed annotations counted so far and their error report lines. A restarted job does not
+     * annotate the records committed before the restart again, so it adds their failures back.
+     */
+    public record Failures(int total, int ambiguousTumorSeqAllele, int nullVariantClassification, int other,
+        List<String> errorMessages) implements Serializable {
+    }
+
+    public synchronized Failures getFailures() {
+        return new Failures(totalFailedAnnotatedRecords, ambiguousTumorSeqAlleleRecords, nullVariantClassificationRecords,
+            otherFailedAnnotatedRecords, new ArrayList<>(failedAnnotatedRecordsErrorMessages));
+    }
+
+    public synchronized void addFailures(Failures failures) {
+        this.totalFailedAnnotatedRecords += failures.total();
+        this.ambiguousTumorSeqAlleleRecords += failures.ambiguousTumorSeqAllele();
+        this.nullVariantClassificationRecords += failures.nullVariantClassification();
+        this.otherFailedAnnotatedRecords += failures.other();
+        this.failedAnnotatedRecordsErrorMessages.addAll(failures.errorMessages());
     }
 
-    public Boolean isFailedAnnotatedRecord(AnnotatedRecord annotatedRecord, MutationRecord record, String isoformOverride) {
+    public synchronized Boolean isFailedAnnotatedRecord(AnnotatedRecord annotatedRecord, MutationRecord record, String isoformOverride) {
         Boolean failedAnnotation = Boolean.FALSE;
         if (MafUtil.variantContainsAmbiguousTumorSeqAllele(record.getREFERENCE_ALLELE(),
                 record.getTUMOR_SEQ_ALLELE1(), record.getTUMOR_SEQ_ALLELE2())) {
             this.ambiguousTumorSeqAlleleRecords++;
+            metrics.addAmbiguousAlleleFailure();
             this.failedAnnotatedRecordsErrorMessages.add(
                     constructErrorMessageFromRecord(record,
                             annotatedRecord.getVARIANT_CLASSIFICATION(),
@@ -137,6 +325,7 @@ private final List<String> ERROR_FILE_HEADER = Arrays.asList("SAMPLE_ID", "CHR",
         if (annotatedRecord.getHGVSC().isEmpty() && annotatedRecord.getHGVSP().isEmpty()) {
             if (annotator.isHgvspNullClassifications(annotatedRecord.getVARIANT_CLASSIFICATION())) {
                 this.nullVariantClassificationRecords++;
+                metrics.addNullVariantClassificationFailure();
                 this.failedAnnotatedRecordsErrorMessages.add(
                         constructErrorMessageFromRecord(record,
                                 annotatedRecord.getVARIANT_CLASSIFICATION(),
@@ -146,6 +335,7 @@ private final List<String> ERROR_FILE_HEADER = Arrays.asList("SAMPLE_ID", "CHR",
                 failedAnnotation = Boolean.TRUE;
             } else {
                 this.otherFailedAnnotatedRecords++;
+                metrics.addOtherFailure();
                 this.failedAnnotatedRecordsErrorMessages.add(
                         constructErrorMessageFromRecord(record,
                                 record.getVARIANT_CLASSIFICATION(),
@@ -162,7 +352,7 @@ private final List<String> ERROR_FILE_HEADER = Arrays.asList("SAMPLE_ID", "CHR",
         return failedAnnotation;
     }
 
-    public void printSummaryStatistics() {
+    public synchronized void printSummaryStatistics() {
         StringBuilder builder = new StringBuilder();
         builder.append("\nAnnotation Summary:")
                 .append("\n\tRecords with ambiguous SNP and INDEL allele changes:  ").append(ambiguousTumorSeqAlleleRecords);
@@ -175,6 +365,40 @@ private final List<String> ERROR_FILE_HEADER = Arrays.asList("SAMPLE_ID", "CHR",
         }
         builder.append("\n\n\tAverage Response Time:  ").append(averageResponseTime()).append(" sec.");
         builder.append("\n\t  Total Response Time:  ").append(totalResponseTime()).append(" sec.");
+        if (responseTimes.getCount() > 0) {
+            builder.append("\n\t       Response Times:  ")
+                    .append(String.format("p50 %.3f, p90 %.3f, p99 %.3f, max %.3f sec.", responseTimePercentile(50),
+                        responseTimePercentile(90), responseTimePercentile(99), (double) responseTimes.getMaxNanos() / NANOS_PER_SECOND))
+                    .append("\n\t           Throughput:  ")
+                    .append(String.format("%.1f variants/sec., %.1f requests/sec.", perSecond(responseVariants), perSecond(responseTimes.getCount())));
+            if (responseBytes > 0) {
+                builder.append(String.format(", %.1f KB/sec.", perSecond(responseBytes) / 1024));
+            }
+        }
+        if (getAnnotationCacheHits() + annotationCacheMisses > 0) {
+            builder.append("\n\n\tAnnotation cache:  ").append(getAnnotationCacheHits()).append(" hits (")
+                    .append(memoryCacheHits).append(" in memory, ").append(persistentCacheHits).append(" on disk), ")
+                    .append(annotationCacheMisses).append(" misses, ").append(annotationCacheHitRate()).append("% hit rate")
+                    .append("\n\t  In-memory cache:  ").append(memoryCacheEntries).append(" entries, ")
+                    .append(memoryCacheSizeInBytes / 1024).append(" KB, ").append(memoryCacheEvictions).append(" evictions");
+        }
+        if (postRetries + splitPostRequests > 0) {
+            builder.append("\n\n\tPOST retries:  ").append(postRetries).append(" retries, ")
+                    .append(splitPostRequests).append(" split requests, max split depth ").append(maxPostSplitDepth)
+                    .append("\n\t  Time spent retrying:  ").append(String.format("%.3f", postRetryTimeInMillis / 1000.0)).append(" sec.");
+        }
+        if (tieredEnrichmentVariants > 0) {
+            builder.append("\n\n\tTiered enrichment:  ").append(enrichedVariants).append(" of ").append(tieredEnrichmentVariants)
+                    .append(" variants enriched");
+            if (failedEnrichmentVariants > 0) {
+                builder.append("\n\t  Enrichment failed:  ").append(failedEnrichmentVariants)
+                        .append(" variants written with summary annotations only");
+            }
+        }
+        if (reusedRecords + reannotatedRecords > 0) {
+            builder.append("\n\n\tPrevious output:  ").append(reusedRecords).append(" records reused, ")
+                    .append(reannotatedRecords).append(" records re-annotated");
+        }
         builder.append("\n\n");
         System.out.print(builder.toString());
     }
@@ -187,6 +411,71 @@ private final List<String> ERROR_FILE_HEADER = Arrays.asList("SAMPLE_ID", "CHR",
         return StringUtils.join(msg, "\t");
     }
 
+    /**
+     * Saves the summary as JSON next to the error report, so that runs can be compared
+     * @param errorReportLocation Error report filename, no summary is saved when it is empty
+     */
+    public synchronized void saveSummaryToFile(String errorReportLocation) {
+        if (errorReportLocation == null || errorReportLocation.isEmpty()) return;
+        String filename = errorReportLocation + SUMMARY_FILE_SUFFIX;
+        try (FileWriter writer = new FileWriter(filename)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(getSummary(), writer);
+        } catch (IOException e) {
+            LOG.error("Unable to save annotation summary to file: " + filename, e);
+        }
+    }
+
+    synchronized Map<String, Object> getSummary() {
+        Map<String, Object> failures = new LinkedHashMap<>();
+        failures.put("total", totalFailedAnnotatedRecords);
+        failures.put("ambiguousTumorSeqAllele", ambiguousTumorSeqAlleleRecords);
+        failures.put("nullVariantClassification", nullVariantClassificationRecords);
+        failures.put("other", otherFailedAnnotatedRecords);
+        Map<String, Object> responses = new LinkedHashMap<>();
+        responses.put("requests", responseTimes.getCount());
+        responses.put("variants", responseVariants);
+        responses.put("bytes", responseBytes);
+        responses.put("totalSeconds", (double) responseTimes.getTotalNanos() / NANOS_PER_SECOND);
+        responses.put("wallTimeSeconds", requestWallTimeSeconds());
+        responses.put("meanSeconds", responseTimes.getMeanNanos() / NANOS_PER_SECOND);
+        responses.put("p50Seconds", responseTimePercentile(50));
+        responses.put("p90Seconds", responseTimePercentile(90));
+        responses.put("p99Seconds", responseTimePercentile(99));
+        responses.put("maxSeconds", (double) responseTimes.getMaxNanos() / NANOS_PER_SECOND);
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("variantsPerSecond", perSecond(responseVariants));
+        throughput.put("requestsPerSecond", perSecond(responseTimes.getCount()));
+        throughput.put("bytesPerSecond", perSecond(responseBytes));
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("memoryHits", memoryCacheHits);
+        cache.put("persistentHits", persistentCacheHits);
+        cache.put("misses", annotationCacheMisses);
+        cache.put("memoryEntries", memoryCacheEntries);
+        cache.put("memorySizeInBytes", memoryCacheSizeInBytes);
+        cache.put("memoryEvictions", memoryCacheEvictions);
+        Map<String, Object> postRetries = new LinkedHashMap<>();
+        postRetries.put("retries", this.postRetries);
+        postRetries.put("splitRequests", splitPostRequests);
+        postRetries.put("maxSplitDepth", maxPostSplitDepth);
+        postRetries.put("retrySeconds", postRetryTimeInMillis / 1000.0);
+        Map<String, Object> tieredEnrichment = new LinkedHashMap<>();
+        tieredEnrichment.put("variants", tieredEnrichmentVariants);
+        tieredEnrichment.put("enrichedVariants", enrichedVariants);
+        tieredEnrichment.put("failedEnrichmentVariants", failedEnrichmentVariants);
+        Map<String, Object> previousOutput = new LinkedHashMap<>();
+        previousOutput.put("reusedRecords", reusedRecords);
+        previousOutput.put("reannotatedRecords", reannotatedRecords);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("failedAnnotations", failures);
+        summary.put("responses", responses);
+        summary.put("throughput", throughput);
+        summary.put("annotationCache", cache);
+        summary.put("postRetries", postRetries);
+        summary.put("tieredEnrichment", tieredEnrichment);
+        summary.put("previousOutput", previousOutput);
+        return summary;
+    }
+
     public void saveErrorMessagesToFile(String filename) {
         if(filename == null || filename.isEmpty()) return;
         if (this.failedAnnotatedRecordsErrorMessages.isEmpty()) {
@@ -32,10 +32,20 @@
 
 package org.cbioportal.annotator.internal;
 
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.Temporal;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 import org.mskcc.cbio.maf.MafUtil;
@@ -46,6 +56,7 @@ import org.cbioportal.annotator.Annotator;
 import org.cbioportal.annotator.GenomeNexusAnnotationFailureException;
 import org.cbioportal.models.AnnotatedRecord;
 import org.cbioportal.models.MutationRecord;
+import org.cbioportal.models.MutationRecordBinder;
 import org.genome_nexus.ApiClient;
 import org.genome_nexus.ApiException;
 import org.genome_nexus.client.*;
@@ -59,6 +70,8 @@ import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 
+import jakarta.annotation.PreDestroy;
+
 import com.google.common.base.Strings;
 import com.google.gson.Gson;
 
@@ -83,15 +96,73 @@ public class GenomeNexusImpl implements Annotator {
     private String enrichmentFields;
     @Value("${oncokb.token:null}")
     private String oncokbToken;
+    @Value("${genomenexus.max_concurrent_requests:1}")
+    private Integer maxConcurrentRequests;
+    @Value("${genomenexus.max_total_concurrent_requests:0}")
+    private Integer maxTotalConcurrentRequests;
+    @Value("${genomenexus.post_max_retries:2}")
+    private Integer postMaxRetries;
+    @Value("${genomenexus.post_retry_backoff_ms:1000}")
+    private Long postRetryBackoffMillis;
+    @Value("${genomenexus.post_split_failed_partitions:false}")
+    private Boolean postSplitFailedPartitions;
+    @Value("${genomenexus.post_max_split_requests:32}")
+    private Integer postMaxSplitRequests;
+    @Value("${genomenexus.adaptive_batch.enabled:false}")
+    private Boolean adaptiveBatchEnabled;
+    @Value("${genomenexus.adaptive_batch.min_size:10}")
+    private Integer adaptiveBatchMinSize;
+    @Value("${genomenexus.adaptive_batch.max_size:1000}")
+    private Integer adaptiveBatchMaxSize;
+    @Value("${genomenexus.adaptive_batch.target_latency_ms:10000}")
+    private Long adaptiveBatchTargetLatencyMillis;
+    @Value("${genomenexus.adaptive_batch.max_request_bytes:1048576}")
+    private Long adaptiveBatchMaxRequestBytes;
+    @Value("${genomenexus.adaptive_batch.max_response_bytes:33554432}")
+    private Long adaptiveBatchMaxResponseBytes;
+    @Value("${genomenexus.streaming_post_responses:false}")
+    private Boolean streamingPostResponses;
+    @Value("${genomenexus.tiered_enrichment.enabled:false}")
+    private Boolean tieredEnrichmentEnabled;
+    @Value("${genomenexus.tiered_enrichment.variant_classifications:Missense_Mutation,Nonsense_Mutation,Nonstop_Mutation,Frame_Shift_Del,Frame_Shift_Ins,In_Frame_Del,In_Frame_Ins,Splice_Site,Splice_Region,Translation_Start_Site}")
+    private String tieredEnrichmentVariantClassifications;
+    @Value("${genomenexus.cache.path:}")
+    private String annotationCachePath;
+    @Value("${genomenexus.memory_cache.max_entries:100000}")
+    private Long memoryCacheMaxEntries;
+    @Value("${genomenexus.memory_cache.max_bytes:268435456}")
+    private Long memoryCacheMaxBytes;
     
     private String tokens;
 
     private AnnotationControllerApi apiClient;
+    private String serverVersion;
+    private PersistentAnnotationCache persistentAnnotationCache;
+    private boolean persistentAnnotationCacheInitialized = false;
+    private InMemoryAnnotationCache inMemoryAnnotationCache;
+    private AdaptiveBatchSizer adaptiveBatchSizer;
+    private StreamingAnnotationClient streamingAnnotationClient;
+    private Semaphore requestPermits;
+    private final AnnotationMetrics metrics = AnnotationMetrics.getInstance();
+    private final PhaseProfiler profiler = PhaseProfiler.getInstance();
     private static final String UKNOWN_GENOME_NEXUS_VERSION = "unknown";
     private final Logger LOG = LoggerFactory.getLogger(GenomeNexusImpl.class);
 
     private static List<String> hgvspNullClassifications = initNullClassifications();
+    // enrichment fields only requested for variants passing the tiered enrichment filter
+    private static final Set<String> TIERED_ENRICHMENT_FIELDS = Set.of("my_variant_info", "mutation_assessor", "oncokb");
+    private static final Map<String, List<String>> ENRICHMENT_FIELD_COLUMNS = Map.of(
+        "my_variant_info", AnnotatedRecord.GNOMAD_COLUMNS,
+        "polyphen", AnnotatedRecord.POLYPHEN_COLUMNS,
+        "sift", AnnotatedRecord.SIFT_COLUMNS,
+        "mutation_assessor", AnnotatedRecord.MUTATION_ASSESSOR_COLUMNS,
+        "nucleotide_context", AnnotatedRecord.NUCLEOTIDE_CONTEXT_COLUMNS,
+        "oncokb", AnnotatedRecord.ONCOKB_COLUMNS);
     private final Integer READ_TIMEOUT_OVERRIDE = 300000; // built-in default of 5 seconds is not enough time to read responses
+    private final Long MAX_POST_RETRY_BACKOFF_MILLIS = 30000L;
+    private final Integer RESPONSE_SIZE_SAMPLE_COUNT = 5;
+    // Gson instances are thread-safe, payload sizes of concurrent partitions are estimated with the same one
+    private static final Gson GSON = new Gson();
 
     @Autowired
     private AnnotationUtil annotationUtil;
@@ -123,20 +194,65 @@ public class GenomeNexusImpl implements Annotator {
         return (new Gson()).toJson(tokens);
     }
 
-    private List<String> queryFields() {
+    /**
+     * Genome Nexus fields requested for the output columns of one annotate call. It is passed along
+     * with the call instead of being kept on the annotator, which is shared by jobs writing different
+     * columns at the same time.
+     *
+     * @param outputColumns columns written to the output file, or null when all annotated columns are written
+     */
+    private record AnnotationFields(Set<String> outputColumns, List<String> queryFields, List<String> summaryQueryFields,
+                                    boolean tieredEnrichment, String cacheFields) {
+    }
+
+    private AnnotationFields getAnnotationFields(Collection<String> outputColumns) {
+        Set<String> outputColumnSet = (outputColumns != null) ? new HashSet<>(outputColumns) : null;
+        List<String> queryFields = queryFields(outputColumnSet);
+        List<String> summaryQueryFields = queryFields.stream().filter(field -> !TIERED_ENRICHMENT_FIELDS.contains(field)).collect(Collectors.toList());
+        // tiered enrichment only pays off when some of the requested fields are left for the second pass
+        boolean tieredEnrichment = tieredEnrichmentEnabled && summaryQueryFields.size() < queryFields.size();
+        // annotations of variants left out of tiered enrichment lack some of the requested fields,
+        // so they are cached apart from fully enriched annotations
+        String cacheFields = String.join(",", queryFields);
+        if (tieredEnrichment) {
+            cacheFields += ";tiered:" + tieredEnrichmentVariantClassifications;
+        }
+        return new AnnotationFields(outputColumnSet, queryFields, summaryQueryFields, tieredEnrichment, cacheFields);
+    }
+
+    /**
+     * An enrichment field is resolved when it is listed in enrichmentFields and, if the output
+     * columns are known, at least one of its columns is written. Fields with no columns of their
+     * own (annotation_summary) are always resolved.
+     */
+    private boolean isEnrichmentFieldResolved(String field, Set<String> outputColumns) {
+        if (!enrichmentFields.contains(field)) {
+            return false;
+        }
+        List<String> columns = ENRICHMENT_FIELD_COLUMNS.get(field);
+        return outputColumns == null || columns == null || columns.stream().anyMatch(outputColumns::contains);
+    }
+
+    private List<String> queryFields(Set<String> outputColumns) {
         // Only need to send a few resources field name in the query to Genome Nexus server
         // Other annotation enrichment (e.g. sift) can be resolved by vep response
         List<String> validFields = Arrays.asList("annotation_summary", "my_variant_info", "mutation_assessor", "nucleotide_context", "oncokb");
         List<String> enrichmentFieldsList = Arrays.asList(this.enrichmentFields.split(","));
         List<String> fetchFieldList = new ArrayList<>();
         for (String field : enrichmentFieldsList) {
-            if (validFields.contains(field)) {
+            if (validFields.contains(field) && isEnrichmentFieldResolved(field, outputColumns)) {
                 fetchFieldList.add(field);
             }
         }
         return fetchFieldList;
     }
 
+    private boolean isEnrichmentNeeded(VariantAnnotation gnResponse) {
+        TranscriptConsequenceSummary canonicalTranscript = getCanonicalTranscript(gnResponse);
+        return canonicalTranscript != null && canonicalTranscript.getVariantClassification() != null &&
+            Arrays.asList(tieredEnrichmentVariantClassifications.split(",")).contains(canonicalTranscript.getVariantClassification());
+    }
+
     private boolean annotationNeeded(MutationRecord record) {
         Map<String, String> additionalProperties = record.getAdditionalProperties();
         if (!additionalProperties.containsKey("HGVSp_Short")) {
@@ -149,23 +265,40 @@ public class GenomeNexusImpl implements Annotator {
     public AnnotatedRecord annotateRecord(MutationRecord mRecord, boolean replace, String isoformOverridesSource, boolean reannotate, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn)
             throws GenomeNexusAnnotationFailureException
     {
-        AnnotatedRecord annotatedRecord = new AnnotatedRecord(mRecord);
+        return annotateRecord(mRecord, replace, isoformOverridesSource, reannotate, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, null, getAnnotationFields(null));
+    }
+
+    private AnnotatedRecord annotateRecord(MutationRecord mRecord, boolean replace, String isoformOverridesSource, boolean reannotate, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn, AnnotationSummaryStatistics summaryStatistics, AnnotationFields fields)
+            throws GenomeNexusAnnotationFailureException
+    {
         //check if record already is annotated
         if(!reannotate && !annotationNeeded(mRecord)) {
-            return annotatedRecord;
+            return new AnnotatedRecord(mRecord);
         }
         String genomicLocation = parseGenomicLocationString(mRecord, ignoreOriginalGenomicLocation);
-        VariantAnnotation gnResponse = null;
-        try {
-            gnResponse = this.apiClient.fetchVariantAnnotationByGenomicLocationGET(genomicLocation,
-                    isoformOverridesSource,
-                    tokens,
-                    queryFields());
-        } catch (ApiException e) {
-            // catch case where Genome Nexus Server is down
-            // not logging here because if GN is down you could write out an arbitarily large logfile of "failures"
-            throw new GenomeNexusAnnotationFailureException("Server error from Genome Nexus: " + genomicLocation);
+        VariantAnnotation gnResponse = getCachedAnnotations(Collections.singletonList(genomicLocation), isoformOverridesSource, summaryStatistics, fields).get(genomicLocation);
+        if (gnResponse == null) {
+            try {
+                gnResponse = this.apiClient.fetchVariantAnnotationByGenomicLocationGET(genomicLocation,
+                        isoformOverridesSource,
+                        tokens,
+                        fields.queryFields());
+            } catch (ApiException e) {
+                // catch case where Genome Nexus Server is down
+                // not logging here because if GN is down you could write out an arbitarily large logfile of "failures"
+                throw new GenomeNexusAnnotationFailureException("Server error from Genome Nexus: " + genomicLocation);
+            }
+            if (gnResponse != null && gnResponse.isSuccessfullyAnnotated()) {
+                cacheAnnotations(Collections.singletonMap(genomicLocation, gnResponse), isoformOverridesSource, summaryStatistics, fields);
+            }
         }
+        return convertGETResponseToAnnotatedRecord(gnResponse, mRecord, replace, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, fields);
+    }
+
+    private AnnotatedRecord convertGETResponseToAnnotatedRecord(VariantAnnotation gnResponse, MutationRecord mRecord, boolean replace, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn, AnnotationFields fields)
+            throws GenomeNexusAnnotationFailureException
+    {
+        AnnotatedRecord annotatedRecord = new AnnotatedRecord(mRecord);
         // catch case where annotation fails (server will return default "failed" variant)
         if (gnResponse == null || !gnResponse.isSuccessfullyAnnotated()) {
             // only logs cases which can't be annotated due to a problem with input
@@ -173,24 +306,41 @@ public class GenomeNexusImpl implements Annotator {
             annotatedRecord.setErrorMessage(gnResponse != null && gnResponse.getErrorMessage() != null ? gnResponse.getErrorMessage() : "");
             throw new GenomeNexusAnnotationFailureException("Genome Nexus failed to annotate: " + gnResponse.getVariant() + ". " + (gnResponse.getErrorMessage() != null ? gnResponse.getErrorMessage() : ""));
         }
-        return convertResponseToAnnotatedRecord(gnResponse, mRecord, replace, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn);
+        return convertResponseToAnnotatedRecord(gnResponse, mRecord, replace, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, fields);
     }
 
-    public List<AnnotatedRecord> annotateRecordsUsingGET(AnnotationSummaryStatistics summaryStatistics, List<MutationRecord> mutationRecords, String isoformOverridesSource, Boolean replace, boolean reannotate, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn) {
+    public List<AnnotatedRecord> annotateRecordsUsingGET(AnnotationSummaryStatistics summaryStatistics, List<MutationRecord> mutationRecords, String isoformOverridesSource, Boolean replace, boolean reannotate, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn, Collection<String> outputColumns) {
+        AnnotationFields fields = getAnnotationFields(outputColumns);
         List<AnnotatedRecord> annotatedRecordsList = new ArrayList<>();
         int totalVariantsToAnnotateCount = mutationRecords.size();
         int annotatedVariantsCount = 0;
         LOG.info(String.valueOf(totalVariantsToAnnotateCount) + " records to annotate");
 
+        // each distinct genomic location is fetched once and the response is shared by all records at that location
+        PhaseProfiler.Timer deduplicateTimer = profiler.start(PhaseProfiler.Phase.DEDUPLICATE).setRecords(mutationRecords.size());
+        List<String> recordLocations = new ArrayList<>(mutationRecords.size());
         for (MutationRecord record : mutationRecords) {
+            recordLocations.add(reannotate || annotationNeeded(record) ? parseGenomicLocationString(record, ignoreOriginalGenomicLocation) : null);
+        }
+        Set<String> genomicLocations = new LinkedHashSet<>(recordLocations);
+        genomicLocations.remove(null);
+        deduplicateTimer.close();
+        metrics.addUniqueVariants(genomicLocations.size());
+        Map<String, GetResponse> getResponses = fetchAnnotationsUsingGET(genomicLocations, isoformOverridesSource, summaryStatistics, fields);
+
+        PhaseProfiler.Timer convertTimer = profiler.start(PhaseProfiler.Phase.CONVERT).setRecords(mutationRecords.size());
+        for (int i = 0; i < mutationRecords.size(); i++) {
+            MutationRecord record = mutationRecords.get(i);
             logAnnotationProgress(++annotatedVariantsCount, totalVariantsToAnnotateCount, 2000);
             // init annotated record w/o genome nexus in case server error occurs
             // if no error then annotated record will get overwritten anyway with genome nexus response
             String serverErrorMessage = "";
             AnnotatedRecord annotatedRecord = new AnnotatedRecord(record);
-            Instant startTime = Instant.now();
             try {
-                annotatedRecord = annotateRecord(record, replace, isoformOverridesSource, reannotate, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn);
+                if (recordLocations.get(i) != null) {
+                    annotatedRecord = convertGETResponseToAnnotatedRecord(getResponses.get(recordLocations.get(i)).getAnnotation(), record, replace,
+                        stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, fields);
+                }
                 annotatedRecord.setANNOTATION_STATUS("SUCCESS");
             }
             catch (HttpServerErrorException ex) {
@@ -205,7 +355,6 @@ public class GenomeNexusImpl implements Annotator {
             catch (GenomeNexusAnnotationFailureException ex) {
                 serverErrorMessage = "Failed to annotate variant due to Genome Nexus : " + ex.getMessage();
             }
-            summaryStatistics.addDuration(Duration.between(startTime, Instant.now()).getSeconds());
             annotatedRecordsList.add(annotatedRecord);
 
             // log server failure message if applicable
@@ -217,12 +366,14 @@ public class GenomeNexusImpl implements Annotator {
             // dont need to do anything with output, just need to call method
             summaryStatistics.isFailedAnnotatedRecord(annotatedRecord, record, isoformOverridesSource);
         }
+        convertTimer.close();
         return annotatedRecordsList;
     }
 
     @Override
     public String getVersion() {
-        InfoControllerApi infoApiClient = new InfoControllerApi();
+        // ask the server the annotations are requested from, not the default one
+        InfoControllerApi infoApiClient = new InfoControllerApi(apiClient.getApiClient());
         try {
             AggregateSourceInfo result = infoApiClient.fetchVersionGET();
             return result.getGenomeNexus().getServer().getVersion();
@@ -232,6 +383,207 @@ public class GenomeNexusImpl implements Annotator {
         return UKNOWN_GENOME_NEXUS_VERSION;
     }
 
+    private synchronized String getServerVersion() {
+        if (serverVersion == null) {
+            serverVersion = getVersion();
+        }
+        return serverVersion;
+    }
+
+    /**
+     * Annotations are cached per server as well as per version, servers of the same version
+     * can serve different reference genomes
+     */
+    private String getAnnotationCacheNamespace(String isoformOverridesSource, AnnotationFields fields) {
+        return String.join("|", String.valueOf(isoformOverridesSource), fields.cacheFields(), getBaseUrl(), getServerVersion());
+    }
+
+    private String getBaseUrl() {
+        return !Strings.isNullOrEmpty(genomeNexusBaseUrl) ? genomeNexusBaseUrl : apiClient.getApiClient().getBasePath();
+    }
+
+    private synchronized PersistentAnnotationCache getPersistentAnnotationCache() {
+        if (!persistentAnnotationCacheInitialized) {
+            persistentAnnotationCacheInitialized = true;
+            if (!Strings.isNullOrEmpty(annotationCachePath)) {
+                // cached annotations can only be trusted for the server version they were fetched from
+                if (UKNOWN_GENOME_NEXUS_VERSION.equals(getServerVersion())) {
+                    LOG.warn("Genome Nexus version is unknown, annotation cache will not be used: " + annotationCachePath);
+                } else {
+                    try {
+                        persistentAnnotationCache = new PersistentAnnotationCache(annotationCachePath);
+                    } catch (SQLException e) {
+                        LOG.warn("Unable to open annotation cache, annotation cache will not be used: " + annotationCachePath + ". " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return persistentAnnotationCache;
+    }
+
+    private synchronized InMemoryAnnotationCache getInMemoryAnnotationCache() {
+        // kept for the lifetime of the annotator so annotations are reused by every job run in this JVM
+        if (inMemoryAnnotationCache == null && memoryCacheMaxEntries > 0 && memoryCacheMaxBytes > 0) {
+            inMemoryAnnotationCache = new InMemoryAnnotationCache(memoryCacheMaxEntries, memoryCacheMaxBytes);
+        }
+        return inMemoryAnnotationCache;
+    }
+
+    private synchronized AdaptiveBatchSizer getAdaptiveBatchSizer(Integer postIntervalSize) {
+        // kept for the lifetime of the annotator so later windows and files start from the size learned so far
+        if (adaptiveBatchSizer == null) {
+            adaptiveBatchSizer = new AdaptiveBatchSizer(postIntervalSize, adaptiveBatchMinSize, adaptiveBatchMaxSize,
+                adaptiveBatchTargetLatencyMillis, adaptiveBatchMaxRequestBytes, adaptiveBatchMaxResponseBytes);
+            LOG.info("Adaptive POST batch size enabled, starting at " + adaptiveBatchSizer.getBatchSize() + " variants");
+        }
+        return adaptiveBatchSizer;
+    }
+
+    private synchronized StreamingAnnotationClient getStreamingAnnotationClient() {
+        if (streamingAnnotationClient == null) {
+            streamingAnnotationClient = new StreamingAnnotationClient(getBaseUrl(), READ_TIMEOUT_OVERRIDE);
+        }
+        return streamingAnnotationClient;
+    }
+
+    /**
+     * Permits for the requests in flight across all annotation calls of this annotator, such as the
+     * files of a batch run annotated concurrently, or null when only each call limits its requests
+     */
+    private synchronized Semaphore getRequestPermits() {
+        if (requestPermits == null && maxTotalConcurrentRequests > 0) {
+            requestPermits = new Semaphore(maxTotalConcurrentRequests, true);
+        }
+        return requestPermits;
+    }
+
+    private Semaphore acquireRequestPermit() {
+        Semaphore permits = getRequestPermits();
+        if (permits != null) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to send a request to Genome Nexus", e);
+            }
+        }
+        return permits;
+    }
+
+    private void releaseRequestPermit(Semaphore permits) {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    /**
+     * Fetches the annotations of a partition, either through the generated API client or, when
+     * streaming responses are enabled, decoding the response one annotation at a time
+     */
+    private List<VariantAnnotation> fetchVariantAnnotationsUsingPOST(List<GenomicLocation> locationBatch, String isoformOverridesSource,
+        List<String> fields, PostResponse postResponse) throws ApiException {
+        long waitStartNanos = System.nanoTime();
+        Semaphore permits = acquireRequestPermit();
+        long startNanos = System.nanoTime();
+        postResponse.permitWaitNanos += startNanos - waitStartNanos;
+        metrics.requestStarted();
+        PhaseProfiler.Timer networkTimer = profiler.start(PhaseProfiler.Phase.NETWORK).setRecords(locationBatch.size());
+        boolean failed = true;
+        try {
+            List<VariantAnnotation> gnResponseList;
+            if (!streamingPostResponses) {
+                gnResponseList = apiClient.fetchVariantAnnotationByGenomicLocationPOST(locationBatch, isoformOverridesSource, tokens, fields);
+            } else {
+                gnResponseList = new ArrayList<>(locationBatch.size());
+                getStreamingAnnotationClient().fetchVariantAnnotationByGenomicLocationPOST(locationBatch, isoformOverridesSource, tokens,
+                    fields, gnResponseList::add);
+            }
+            failed = false;
+            return gnResponseList;
+        } finally {
+            networkTimer.close();
+            postResponse.requests.add(new PostRequest(locationBatch.size(), System.nanoTime() - startNanos, failed));
+            metrics.requestCompleted();
+            releaseRequestPermit(permits);
+        }
+    }
+
+    private String getInMemoryAnnotationCacheKey(String locationKey, String isoformOverridesSource, AnnotationFields fields) {
+        return String.join("|", String.valueOf(isoformOverridesSource), fields.cacheFields(), locationKey);
+    }
+
+    /**
+     * Looks up annotations in the in-memory cache first and then in the persistent cache.
+     * @return cached annotations keyed by genomic location string
+     */
+    private Map<String, VariantAnnotation> getCachedAnnotations(Collection<String> locationKeys, String isoformOverridesSource, AnnotationSummaryStatistics summaryStatistics,
+        AnnotationFields fields) {
+        Map<String, VariantAnnotation> cachedAnnotations = new HashMap<>();
+        InMemoryAnnotationCache memoryCache = getInMemoryAnnotationCache();
+        PersistentAnnotationCache persistentCache = getPersistentAnnotationCache();
+        if (memoryCache == null && persistentCache == null) {
+            return cachedAnnotations;
+        }
+        List<String> memoryCacheMisses = new ArrayList<>();
+        for (String locationKey : locationKeys) {
+            VariantAnnotation cachedAnnotation = memoryCache != null ? memoryCache.get(getInMemoryAnnotationCacheKey(locationKey, isoformOverridesSource, fields)) : null;
+            if (cachedAnnotation != null) {
+                cachedAnnotations.put(locationKey, cachedAnnotation);
+            } else {
+                memoryCacheMisses.add(locationKey);
+            }
+        }
+        int memoryCacheHits = cachedAnnotations.size();
+        if (persistentCache != null && !memoryCacheMisses.isEmpty()) {
+            Map<String, VariantAnnotation> persistedAnnotations = persistentCache.getAll(getAnnotationCacheNamespace(isoformOverridesSource, fields), memoryCacheMisses);
+            cachedAnnotations.putAll(persistedAnnotations);
+            if (memoryCache != null) {
+                persistedAnnotations.forEach((locationKey, annotation) -> memoryCache.put(getInMemoryAnnotationCacheKey(locationKey, isoformOverridesSource, fields), annotation));
+            }
+        }
+        if (summaryStatistics != null) {
+            summaryStatistics.addAnnotationCacheLookups(memoryCacheHits, cachedAnnotations.size() - memoryCacheHits, locationKeys.size() - cachedAnnotations.size());
+            updateInMemoryAnnotationCacheUsage(memoryCache, summaryStatistics);
+        }
+        return cachedAnnotations;
+    }
+
+    /**
+     * Stores successful annotations in the in-memory and persistent caches.
+     * @param annotations annotations keyed by genomic location string
+     */
+    private void cacheAnnotations(Map<String, VariantAnnotation> annotations, String isoformOverridesSource, AnnotationSummaryStatistics summaryStatistics,
+        AnnotationFields fields) {
+        if (annotations.isEmpty()) {
+            return;
+        }
+        InMemoryAnnotationCache memoryCache = getInMemoryAnnotationCache();
+        if (memoryCache != null) {
+            annotations.forEach((locationKey, annotation) -> memoryCache.put(getInMemoryAnnotationCacheKey(locationKey, isoformOverridesSource, fields), annotation));
+            if (summaryStatistics != null) {
+                updateInMemoryAnnotationCacheUsage(memoryCache, summaryStatistics);
+            }
+        }
+        PersistentAnnotationCache persistentCache = getPersistentAnnotationCache();
+        if (persistentCache != null) {
+            persistentCache.putAll(getAnnotationCacheNamespace(isoformOverridesSource, fields), annotations);
+        }
+    }
+
+    private void updateInMemoryAnnotationCacheUsage(InMemoryAnnotationCache memoryCache, AnnotationSummaryStatistics summaryStatistics) {
+        if (memoryCache != null) {
+            summaryStatistics.setInMemoryAnnotationCacheUsage(memoryCache.size(), memoryCache.getSizeInBytes(), memoryCache.getEvictionCount());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void closeAnnotationCache() {
+        if (persistentAnnotationCache != null) {
+            persistentAnnotationCache.close();
+            persistentAnnotationCache = null;
+        }
+    }
+
     private AnnotationControllerApi initApiClient() {
         AnnotationControllerApi apiClient;
 
@@ -248,6 +600,17 @@ public class GenomeNexusImpl implements Annotator {
     }
 
     public AnnotatedRecord convertResponseToAnnotatedRecord(VariantAnnotation gnResponse, MutationRecord mRecord, boolean replace, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn) {
+        return convertResponseToAnnotatedRecord(gnResponse, mRecord, replace, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, (Collection<String>) null);
+    }
+
+    /**
+     * @param outputColumns columns written to the output file, or null when all annotated columns are written
+     */
+    public AnnotatedRecord convertResponseToAnnotatedRecord(VariantAnnotation gnResponse, MutationRecord mRecord, boolean replace, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn, Collection<String> outputColumns) {
+        return convertResponseToAnnotatedRecord(gnResponse, mRecord, replace, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, getAnnotationFields(outputColumns));
+    }
+
+    private AnnotatedRecord convertResponseToAnnotatedRecord(VariantAnnotation gnResponse, MutationRecord mRecord, boolean replace, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn, AnnotationFields fields) {
         String genomeNexusOriginalChromosome = annotationUtil.getGenomeNexusOriginalChromosome(mRecord);
         String genomeNexusOriginalStartPosition = annotationUtil.getGenomeNexusOriginalStartPosition(mRecord);
         String genomeNexusOriginalEndPosition = annotationUtil.getGenomeNexusOriginalEndPosition(mRecord);
@@ -422,7 +785,7 @@ public class GenomeNexusImpl implements Annotator {
             annotatedRecord.setGenomicLocationExplanation(gnResponse.getGenomicLocationExplanation() != null ? gnResponse.getGenomicLocationExplanation() : "");
         }
 
-        if (enrichmentFields.contains("my_variant_info")) {
+        if (isEnrichmentFieldResolved("my_variant_info", fields.outputColumns())) {
             // get the gnomad allele frequency
             AlleleFrequency alleleFrequency = getGnomadAlleleFrequency(gnResponse);
             annotatedRecord.setGnomadFields(annotationUtil.resolveGnomadAlleleFrequency(alleleFrequency),
@@ -435,19 +798,19 @@ public class GenomeNexusImpl implements Annotator {
                 annotationUtil.resolveGnomadAlleleFrequencyOTH(alleleFrequency),
                 annotationUtil.resolveGnomadAlleleFrequencySAS(alleleFrequency));
         }
-        if (enrichmentFields.contains("polyphen")) {
+        if (isEnrichmentFieldResolved("polyphen", fields.outputColumns())) {
             annotatedRecord.setPolyphenFields(
                     annotationUtil.resolvePolyphenPrediction(canonicalTranscript),
                     annotationUtil.resolvePolyphenScore(canonicalTranscript)
             );
         }
-        if (enrichmentFields.contains("sift")) {
+        if (isEnrichmentFieldResolved("sift", fields.outputColumns())) {
             annotatedRecord.setSiftFields(
                     annotationUtil.resolveSiftPrediction(canonicalTranscript),
                     annotationUtil.resolveSiftScore(canonicalTranscript)
             );
         }
-        if (enrichmentFields.contains("mutation_assessor")) {
+        if (isEnrichmentFieldResolved("mutation_assessor", fields.outputColumns())) {
             annotatedRecord.setMutationAssessorFields(
                     annotationUtil.resolveMaFunctionalImpact(gnResponse),
                     annotationUtil.resolveMaFunctionalImpactScore(gnResponse),
@@ -455,12 +818,12 @@ public class GenomeNexusImpl implements Annotator {
                     annotationUtil.resolveMaMAV(gnResponse),
                     annotationUtil.resolveMaSV(gnResponse));
         }
-        if (enrichmentFields.contains("nucleotide_context")) {
+        if (isEnrichmentFieldResolved("nucleotide_context", fields.outputColumns())) {
             annotatedRecord.setNucleotideContextFields(
                     annotationUtil.resolveRefTri(gnResponse),
                     annotationUtil.resolveVarTri(gnResponse));
         }
-        if (enrichmentFields.contains("oncokb")) {
+        if (isEnrichmentFieldResolved("oncokb", fields.outputColumns())) {
         	if (gnResponse.getOncokb() != null) { 
         	    annotatedRecord.setOncoKBContextFields(
         			annotationUtil.getOncogenicOncoKB(gnResponse),
@@ -481,14 +844,7 @@ public class GenomeNexusImpl implements Annotator {
 
     @Override
     public MutationRecord createRecord(Map<String, String> mafLine) throws Exception {
-        MutationRecord record = new MutationRecord();
-        for (String header : record.getHeader()) {
-            if(mafLine.keySet().contains(header)) {
-                record.getClass().getMethod("set" + header.toUpperCase(), String.class).invoke(record, mafLine.remove(header));
-            }
-        }
-        record.setAdditionalProperties(mafLine);
-        return record;
+        return MutationRecordBinder.bind(mafLine);
     }
 
      @Override
@@ -501,7 +857,47 @@ public class GenomeNexusImpl implements Annotator {
         String genomicLocation = parseGenomicLocationString(record, false);
         // TODO this is now handled by the API client, we don't really need this (keeping for logging purposes only)
         return genomeNexusBaseUrl + "annotation/genomic/" + genomicLocation + "?" +
-                isoformQueryParameter + "=" + isoformOverridesSource + "&fields=" + String.join(",", queryFields());
+                isoformQueryParameter + "=" + isoformOverridesSource + "&fields=" + String.join(",", queryFields(null));
+    }
+
+    @Override
+    public List<String> getAnnotatedRecordHeader(Collection<String> inputFileHeaders, Boolean addOriginalGenomicLocation, Boolean noteColumn, Collection<String> outputColumns) {
+        Set<String> outputColumnSet = (outputColumns != null) ? new HashSet<>(outputColumns) : null;
+        // mirrors the columns convertResponseToAnnotatedRecord() can add so that the
+        // header is known before any record has been annotated
+        AnnotatedRecord annotatedRecord = new AnnotatedRecord();
+        for (String column : inputFileHeaders) {
+            if (!MutationRecordBinder.hasSetter(column)) {
+                annotatedRecord.addAdditionalProperty(column, "");
+            }
+        }
+        if (addOriginalGenomicLocation) {
+            AnnotatedRecord.ORIGINAL_GENOMIC_LOCATION_COLUMNS.forEach(column -> annotatedRecord.addAdditionalProperty(column, ""));
+        }
+        if (noteColumn) {
+            annotatedRecord.addAdditionalProperty(AnnotatedRecord.GENOMIC_LOCATION_EXPLANATION_COLUMN, "");
+        }
+        if (isEnrichmentFieldResolved("my_variant_info", outputColumnSet)) {
+            annotatedRecord.setSchema(annotatedRecord.getSchema().withColumns(AnnotatedRecord.GNOMAD_COLUMNS));
+        }
+        List<String> enrichmentColumns = new ArrayList<>();
+        if (isEnrichmentFieldResolved("polyphen", outputColumnSet)) {
+            enrichmentColumns.addAll(AnnotatedRecord.POLYPHEN_COLUMNS);
+        }
+        if (isEnrichmentFieldResolved("sift", outputColumnSet)) {
+            enrichmentColumns.addAll(AnnotatedRecord.SIFT_COLUMNS);
+        }
+        if (isEnrichmentFieldResolved("mutation_assessor", outputColumnSet)) {
+            enrichmentColumns.addAll(AnnotatedRecord.MUTATION_ASSESSOR_COLUMNS);
+        }
+        if (isEnrichmentFieldResolved("nucleotide_context", outputColumnSet)) {
+            enrichmentColumns.addAll(AnnotatedRecord.NUCLEOTIDE_CONTEXT_COLUMNS);
+        }
+        if (isEnrichmentFieldResolved("oncokb", outputColumnSet)) {
+            enrichmentColumns.addAll(AnnotatedRecord.ONCOKB_COLUMNS);
+        }
+        enrichmentColumns.forEach(column -> annotatedRecord.addAdditionalProperty(column, ""));
+        return annotatedRecord.getHeaderWithAdditionalFields();
     }
 
     private AlleleFrequency getGnomadAlleleFrequency(VariantAnnotation gnResponse) {
@@ -600,9 +996,9 @@ public class GenomeNexusImpl implements Annotator {
     }
 
     @Override
-    public List<AnnotatedRecord> getAnnotatedRecordsUsingPOST(AnnotationSummaryStatistics summaryStatistics, List<MutationRecord> mutationRecords, String isoformOverridesSource, Boolean replace, boolean reannotate, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn) {
+    public List<AnnotatedRecord> getAnnotatedRecordsUsingPOST(AnnotationSummaryStatistics summaryStatistics, List<MutationRecord> mutationRecords, String isoformOverridesSource, Boolean replace, boolean reannotate, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn, Collection<String> outputColumns) {
         // this will send everything at once
-        return getAnnotatedRecordsUsingPOST(summaryStatistics, mutationRecords, isoformOverridesSource, replace, mutationRecords.size(), reannotate, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn);
+        return getAnnotatedRecordsUsingPOST(summaryStatistics, mutationRecords, isoformOverridesSource, replace, mutationRecords.size(), reannotate, stripMatchingBases, ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, outputColumns);
     }
 
    @Override
@@ -616,95 +1012,122 @@ public class GenomeNexusImpl implements Annotator {
         String stripMatchingBases,
         Boolean ignoreOriginalGenomicLocation,
         Boolean addOriginalGenomicLocation,
-        Boolean noteColumn
+        Boolean noteColumn,
+        Collection<String> outputColumns
     ) {
+        AnnotationFields fields = getAnnotationFields(outputColumns);
         // Create mapping for records that need annotation
-        List<MutationRecord> recordsToAnnotate = new ArrayList<>();
         Map<String, List<Integer>> genomicLocationToRecordIndices = new HashMap<>();
+        // one genomic location per distinct variant, records sharing a location are resolved from the same response
+        List<GenomicLocation> genomicLocations = new ArrayList<>();
         
+        PhaseProfiler.Timer deduplicateTimer = profiler.start(PhaseProfiler.Phase.DEDUPLICATE).setRecords(mutationRecords.size());
         for (int i = 0; i < mutationRecords.size(); i++) {
             MutationRecord record = mutationRecords.get(i);
             if (reannotate || annotationNeeded(record)) {
-                recordsToAnnotate.add(record);
                 GenomicLocation location = parseGenomicLocationFromRecord(record, ignoreOriginalGenomicLocation);
                 String locationKey = getGenomicLocationString(location);
                 
-                genomicLocationToRecordIndices.computeIfAbsent(locationKey, k -> new ArrayList<>()).add(i);
+                List<Integer> recordIndices = genomicLocationToRecordIndices.computeIfAbsent(locationKey, k -> new ArrayList<>());
+                if (recordIndices.isEmpty()) {
+                    genomicLocations.add(location);
+                }
+                recordIndices.add(i);
             }
         }
+        deduplicateTimer.close();
         
-        int totalVariantsToAnnotateCount = recordsToAnnotate.size();
-        int annotatedVariantsCount = 0;
+        metrics.addUniqueVariants(genomicLocationToRecordIndices.size());
         List<AnnotatedRecord> annotatedRecords = new ArrayList<>(Collections.nCopies(mutationRecords.size(), null));
-        
-        // Extract genomic locations and sort
-        List<GenomicLocation> genomicLocations = recordsToAnnotate.stream()
-            .map(r -> parseGenomicLocationFromRecord(r, ignoreOriginalGenomicLocation))
-            .collect(Collectors.toList());
-        
-        List<List<GenomicLocation>> partitionedLocations = sortAndPartitionGenomicLocations(
-            genomicLocations, postIntervalSize);
-        
-        // Process each partition
-        for (List<GenomicLocation> locationBatch : partitionedLocations) {
-            List<VariantAnnotation> gnResponseList = null;
-            Instant startTime = Instant.now();
-            
-            try {
-                gnResponseList = apiClient.fetchVariantAnnotationByGenomicLocationPOST(
-                    locationBatch, isoformOverridesSource, tokens, queryFields());
-            } catch (Exception e) {
-                LOG.error("Annotation failed for ALL variants in this partition. " + e.getMessage());
+
+        // Resolve variants found in the annotation cache, only the remaining ones are sent to Genome Nexus
+        if (!genomicLocations.isEmpty()) {
+            Map<String, VariantAnnotation> cachedAnnotations = getCachedAnnotations(genomicLocationToRecordIndices.keySet(), isoformOverridesSource, summaryStatistics, fields);
+            PhaseProfiler.Timer convertTimer = profiler.start(PhaseProfiler.Phase.CONVERT).setRecords(cachedAnnotations.size());
+            Iterator<GenomicLocation> locations = genomicLocations.iterator();
+            while (locations.hasNext()) {
+                String locationKey = getGenomicLocationString(locations.next());
+                VariantAnnotation cachedAnnotation = cachedAnnotations.get(locationKey);
+                if (cachedAnnotation != null) {
+                    resolveAnnotatedRecords(cachedAnnotation, genomicLocationToRecordIndices.get(locationKey), mutationRecords, annotatedRecords,
+                        summaryStatistics, isoformOverridesSource, replace, reannotate, stripMatchingBases,
+                        ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, fields);
+                    locations.remove();
+                }
             }
-            summaryStatistics.addDuration(Duration.between(startTime, Instant.now()).getSeconds());
-            
-            if (gnResponseList != null) {
+            convertTimer.close();
+        }
+
+        int totalVariantsToAnnotateCount = genomicLocations.size();
+        int annotatedVariantsCount = 0;
+
+        // Sort genomic locations, partitions are cut from the sorted list when they are submitted
+        // so that the adaptive batch size can follow the responses received so far
+        List<GenomicLocation> sortedLocations;
+        try (PhaseProfiler.Timer timer = profiler.start(PhaseProfiler.Phase.DEDUPLICATE).setRecords(genomicLocations.size())) {
+            sortedLocations = sortGenomicLocations(genomicLocations);
+        }
+        AdaptiveBatchSizer batchSizer = adaptiveBatchEnabled ? getAdaptiveBatchSizer(postIntervalSize) : null;
+        int nextPartitionStart = 0;
+        
+        // Process each partition, keeping up to maxConcurrentRequests POST requests in flight.
+        // Responses are handled here in partition order so results and error reporting are
+        // the same as when the partitions are fetched one after the other
+        Deque<Future<PostResponse>> inFlightRequests = new ArrayDeque<>();
+        try (ExecutorService requestExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("genome-nexus-post-", 0).factory())) {
+            while (nextPartitionStart < sortedLocations.size() || !inFlightRequests.isEmpty()) {
+                while (nextPartitionStart < sortedLocations.size() && inFlightRequests.size() < Math.max(1, maxConcurrentRequests)) {
+                    int partitionSize = batchSizer != null ? batchSizer.getBatchSize() : postIntervalSize;
+                    int partitionEnd = Math.min(nextPartitionStart + partitionSize, sortedLocations.size());
+                    List<GenomicLocation> partition = sortedLocations.subList(nextPartitionStart, partitionEnd);
+                    nextPartitionStart = partitionEnd;
+                    inFlightRequests.add(requestExecutor.submit(() -> fetchAnnotationsUsingPOST(partition, isoformOverridesSource, fields)));
+                }
+                PostResponse postResponse = awaitResponse(inFlightRequests.poll());
+                List<VariantAnnotation> gnResponseList = postResponse.gnResponseList;
+                addPostRequests(summaryStatistics, postResponse);
+                summaryStatistics.addPostRetries(postResponse.retries, postResponse.splitRequests,
+                    postResponse.maxSplitDepth, postResponse.retryTimeInMillis);
+                if (fields.tieredEnrichment()) {
+                    summaryStatistics.addTieredEnrichment(postResponse.locationCount, postResponse.enrichedLocationCount,
+                        postResponse.failedEnrichmentKeys.size());
+                }
+                if (batchSizer != null && !postResponse.requests.isEmpty()) {
+                    // the batch size is sized from the first request of the partition, which posts all of its variants
+                    PostRequest firstRequest = postResponse.requests.getFirst();
+                    batchSizer.recordResponse(firstRequest.locationCount(), firstRequest.latencyNanos() / 1_000_000L, postResponse.requestBytes,
+                        postResponse.responseBytes, postResponse.retries > 0 || !postResponse.failedLocations.isEmpty());
+                }
+
+                Map<String, VariantAnnotation> annotationsToCache = new HashMap<>();
+                PhaseProfiler.Timer convertTimer = profiler.start(PhaseProfiler.Phase.CONVERT).setRecords(gnResponseList.size());
                 for (VariantAnnotation gnResponse : gnResponseList) {
                     logAnnotationProgress(++annotatedVariantsCount, totalVariantsToAnnotateCount, postIntervalSize);
                     if (!gnResponse.isSuccessfullyAnnotated()) {
-                        LOG.warn("Annotation failed for variant " + gnResponse.getVariant() + 
+                        LOG.warn("Annotation failed for variant " + gnResponse.getVariant() +
                             (gnResponse.getErrorMessage() != null ? ";" + gnResponse.getErrorMessage() : ""));
                     }
-                    
+
                     String locationKey = gnResponse.getOriginalVariantQuery();
                     List<Integer> recordIndices = genomicLocationToRecordIndices.get(locationKey);
-                    
+
                     if (recordIndices != null && !recordIndices.isEmpty() && annotatedRecords.get(recordIndices.getFirst()) == null) {
-                        for (Integer index : recordIndices) {
-                            MutationRecord record = mutationRecords.get(index);
-                            AnnotatedRecord annotatedRecord = new AnnotatedRecord(record);
-                            
-                            if (!gnResponse.isSuccessfullyAnnotated()) {
-                                if (reannotate || annotationNeeded(record)) {
-                                    // only log if record actually attempted annotation
-                                    annotatedRecord = new AnnotatedRecord(record);
-                                    annotatedRecord.setANNOTATION_STATUS("FAILED");
-                                    annotatedRecord.setErrorMessage(gnResponse.getErrorMessage() != null ?
-                                            gnResponse.getErrorMessage() : "");
-                                    summaryStatistics.addFailedAnnotatedRecordDueToServer(
-                                            record, annotatedRecord.getErrorMessage(), isoformOverridesSource);
-                                }
-                            } else {
-                                annotatedRecord = convertResponseToAnnotatedRecord(
-                                    gnResponse, record, replace, stripMatchingBases,
-                                    ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn);
-                                annotatedRecord.setANNOTATION_STATUS("SUCCESS");
-                                if (summaryStatistics.isFailedAnnotatedRecord(annotatedRecord, record, isoformOverridesSource)) {
-                                    // Log case where annotation comes back from Genome Nexus but still invalid (e.g null variant classification)
-                                    LOG.warn("Annotated record is invalid for variant " + gnResponse.getVariant());
-                                }
-                            }
-                            
-                            annotatedRecords.set(index, annotatedRecord);
+                        resolveAnnotatedRecords(gnResponse, recordIndices, mutationRecords, annotatedRecords, summaryStatistics,
+                            isoformOverridesSource, replace, reannotate, stripMatchingBases,
+                            ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, fields);
+                        if (gnResponse.isSuccessfullyAnnotated() && !postResponse.failedEnrichmentKeys.contains(locationKey)) {
+                            annotationsToCache.put(locationKey, gnResponse);
                         }
                     }
                 }
-            } else {
-                // Handle failed batch
-                for (GenomicLocation location : locationBatch) {
+                convertTimer.close();
+                cacheAnnotations(annotationsToCache, isoformOverridesSource, summaryStatistics, fields);
+
+                // Handle variants that could not be annotated even after retrying and splitting the partition
+                for (GenomicLocation location : postResponse.failedLocations) {
                     String locationKey = getGenomicLocationString(location);
                     List<Integer> recordIndices = genomicLocationToRecordIndices.get(locationKey);
-                    
+
                     if (recordIndices != null && !recordIndices.isEmpty() && annotatedRecords.get(recordIndices.getFirst()) == null) {
                         for (Integer index : recordIndices) {
                             MutationRecord record = mutationRecords.get(index);
@@ -713,15 +1136,13 @@ public class GenomeNexusImpl implements Annotator {
                             annotatedRecord.setErrorMessage("Batch annotation failed");
                             summaryStatistics.addFailedAnnotatedRecordDueToServer(
                                 record, annotatedRecord.getErrorMessage(), isoformOverridesSource);
-                            
+
                             annotatedRecords.set(index, annotatedRecord);
                         }
                     }
                 }
-            }
-            
-            // clearing references no longer needed
-            if (gnResponseList != null) {
+
+                // clearing references no longer needed
                 gnResponseList.clear();
             }
         }
@@ -734,20 +1155,364 @@ public class GenomeNexusImpl implements Annotator {
         return annotatedRecords;
     }
 
-    private List<List<GenomicLocation>> sortAndPartitionGenomicLocations(
-        List<GenomicLocation> genomicLocations, Integer postIntervalSize) {
-        
+    private void resolveAnnotatedRecords(VariantAnnotation gnResponse, List<Integer> recordIndices, List<MutationRecord> mutationRecords,
+        List<AnnotatedRecord> annotatedRecords, AnnotationSummaryStatistics summaryStatistics, String isoformOverridesSource, Boolean replace,
+        boolean reannotate, String stripMatchingBases, Boolean ignoreOriginalGenomicLocation, Boolean addOriginalGenomicLocation, Boolean noteColumn,
+        AnnotationFields fields) {
+        for (Integer index : recordIndices) {
+            MutationRecord record = mutationRecords.get(index);
+            AnnotatedRecord annotatedRecord = new AnnotatedRecord(record);
+
+            if (!gnResponse.isSuccessfullyAnnotated()) {
+                if (reannotate || annotationNeeded(record)) {
+                    // only log if record actually attempted annotation
+                    annotatedRecord = new AnnotatedRecord(record);
+                    annotatedRecord.setANNOTATION_STATUS("FAILED");
+                    annotatedRecord.setErrorMessage(gnResponse.getErrorMessage() != null ?
+                            gnResponse.getErrorMessage() : "");
+                    summaryStatistics.addFailedAnnotatedRecordDueToServer(
+                            record, annotatedRecord.getErrorMessage(), isoformOverridesSource);
+                }
+            } else {
+                annotatedRecord = convertResponseToAnnotatedRecord(
+                    gnResponse, record, replace, stripMatchingBases,
+                    ignoreOriginalGenomicLocation, addOriginalGenomicLocation, noteColumn, fields);
+                annotatedRecord.setANNOTATION_STATUS("SUCCESS");
+                if (summaryStatistics.isFailedAnnotatedRecord(annotatedRecord, record, isoformOverridesSource)) {
+                    // Log case where annotation comes back from Genome Nexus but still invalid (e.g null variant classification)
+                    LOG.warn("Annotated record is invalid for variant " + gnResponse.getVariant());
+                }
+            }
+
+            annotatedRecords.set(index, annotatedRecord);
+        }
+    }
+
+    /**
+     * Response of a GET request for one genomic location, or the failure to fetch it
+     */
+    private record GetResponse(VariantAnnotation annotation, RuntimeException runtimeFailure,
+        GenomeNexusAnnotationFailureException annotationFailure, long latencyNanos) {
+
+        VariantAnnotation getAnnotation() throws GenomeNexusAnnotationFailureException {
+            if (runtimeFailure != null) {
+                throw runtimeFailure;
+            }
+            if (annotationFailure != null) {
+                throw annotationFailure;
+            }
+            return annotation;
+        }
+    }
+
+    /**
+     * Fetches the given genomic locations with GET requests, keeping up to maxConcurrentRequests requests in flight.
+     * Responses are collected in the order of the locations, so results and statistics do not depend on timing.
+     */
+    private Map<String, GetResponse> fetchAnnotationsUsingGET(Collection<String> genomicLocations, String isoformOverridesSource,
+        AnnotationSummaryStatistics summaryStatistics, AnnotationFields fields) {
+        Map<String, GetResponse> getResponses = new HashMap<>();
+        getCachedAnnotations(genomicLocations, isoformOverridesSource, summaryStatistics, fields)
+            .forEach((genomicLocation, gnResponse) -> getResponses.put(genomicLocation, new GetResponse(gnResponse, null, null, 0L)));
+
+        Iterator<String> locationsToFetch = genomicLocations.stream().filter(location -> !getResponses.containsKey(location)).iterator();
+        Deque<Map.Entry<String, Future<GetResponse>>> inFlightRequests = new ArrayDeque<>();
+        Map<String, VariantAnnotation> annotationsToCache = new HashMap<>();
+        try (ExecutorService requestExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("genome-nexus-get-", 0).factory())) {
+            while (locationsToFetch.hasNext() || !inFlightRequests.isEmpty()) {
+                while (locationsToFetch.hasNext() && inFlightRequests.size() < Math.max(1, maxConcurrentRequests)) {
+                    String genomicLocation = locationsToFetch.next();
+                    inFlightRequests.add(Map.entry(genomicLocation,
+                        requestExecutor.submit(() -> fetchAnnotationUsingGET(genomicLocation, isoformOverridesSource, fields))));
+                }
+                Map.Entry<String, Future<GetResponse>> request = inFlightRequests.poll();
+                GetResponse getResponse = awaitResponse(request.getValue());
+                summaryStatistics.addResponse(getResponse.latencyNanos(), 1, 0L);
+                getResponses.put(request.getKey(), getResponse);
+                if (getResponse.annotation() != null && getResponse.annotation().isSuccessfullyAnnotated()) {
+                    annotationsToCache.put(request.getKey(), getResponse.annotation());
+                }
+            }
+        }
+        cacheAnnotations(annotationsToCache, isoformOverridesSource, summaryStatistics, fields);
+        return getResponses;
+    }
+
+    private GetResponse fetchAnnotationUsingGET(String genomicLocation, String isoformOverridesSource, AnnotationFields fields) {
+        // waiting for a permit does not count as response time
+        Semaphore permits = acquireRequestPermit();
+        long startNanos = System.nanoTime();
+        metrics.requestStarted();
+        try (PhaseProfiler.Timer timer = profiler.start(PhaseProfiler.Phase.NETWORK).setRecords(1)) {
+            VariantAnnotation gnResponse = apiClient.fetchVariantAnnotationByGenomicLocationGET(genomicLocation,
+                isoformOverridesSource, tokens, fields.queryFields());
+            return new GetResponse(gnResponse, null, null, System.nanoTime() - startNanos);
+        } catch (ApiException e) {
+            // catch case where Genome Nexus Server is down
+            // not logging here because if GN is down you could write out an arbitarily large logfile of "failures"
+            return new GetResponse(null, null, new GenomeNexusAnnotationFailureException("Server error from Genome Nexus: " + genomicLocation),
+                System.nanoTime() - startNanos);
+        } catch (RuntimeException e) {
+            return new GetResponse(null, e, null, System.nanoTime() - startNanos);
+        } finally {
+            metrics.requestCompleted();
+            releaseRequestPermit(permits);
+        }
+    }
+
+    /**
+     * One POST request sent to Genome Nexus, timed from sending the request to reading the response
+     */
+    private record PostRequest(int locationCount, long latencyNanos, boolean failed) {
+    }
+
+    /**
+     * Result of annotating one partition. Retry and split counts are only written by the thread
+     * fetching the partition and are read after the request future completes.
+     */
+    private static class PostResponse {
+        private final List<VariantAnnotation> gnResponseList = new ArrayList<>();
+        private final List<GenomicLocation> failedLocations = new ArrayList<>();
+        // every request sent for the partition, including retries, split partitions and tiered enrichment
+        private final List<PostRequest> requests = new ArrayList<>();
+        private int locationCount;
+        private long requestBytes = 0L;
+        private long responseBytes = 0L;
+        private int retries = 0;
+        private int splitRequests = 0;
+        private int maxSplitDepth = 0;
+        private long retryTimeInMillis = 0L;
+        private Instant firstFailureTime;
+        private int enrichedLocationCount = 0;
+        // variants written with their summary annotation only because the enrichment request failed
+        private final Set<String> failedEnrichmentKeys = new HashSet<>();
+        private long permitWaitNanos = 0L;
+    }
+
+    private PostResponse fetchAnnotationsUsingPOST(List<GenomicLocation> locationBatch, String isoformOverridesSource, AnnotationFields fields) {
+        PostResponse postResponse = new PostResponse();
+        postResponse.locationCount = locationBatch.size();
+        PostBatchEvent event = new PostBatchEvent();
+        event.begin();
+        List<String> queryFields = fields.tieredEnrichment() ? fields.summaryQueryFields() : fields.queryFields();
+        Exception failure = fetchAnnotationsUsingPOSTWithRetries(locationBatch, isoformOverridesSource, queryFields, postResponse, postResponse.gnResponseList);
+        if (failure != null) {
+            if (postSplitFailedPartitions && locationBatch.size() > 1 && !isServerFailure(failure)) {
+                LOG.warn("Splitting failed partition of " + locationBatch.size() + " variants to isolate the failing variants.");
+                fetchAnnotationsUsingSplitPOST(locationBatch, isoformOverridesSource, queryFields, 1, postResponse);
+            } else {
+                LOG.error("Annotation failed for ALL variants in this partition. " + failure.getMessage());
+                postResponse.failedLocations.addAll(locationBatch);
+            }
+        }
+        if (fields.tieredEnrichment()) {
+            fetchEnrichmentUsingPOST(locationBatch, isoformOverridesSource, fields, postResponse);
+        }
+        if (postResponse.firstFailureTime != null) {
+            postResponse.retryTimeInMillis = Duration.between(postResponse.firstFailureTime, Instant.now()).toMillis();
+        }
+        estimatePayloadSizes(locationBatch, postResponse);
+        if (event.shouldCommit()) {
+            event.locations = postResponse.locationCount;
+            event.failedLocations = postResponse.failedLocations.size();
+            event.requestBytes = postResponse.requestBytes;
+            event.responseBytes = postResponse.responseBytes;
+            event.retries = postResponse.retries;
+            event.splitRequests = postResponse.splitRequests;
+            event.permitWaitNanos = postResponse.permitWaitNanos;
+            event.commit();
+        }
+        return postResponse;
+    }
+
+    /**
+     * Records the response time of each request sent for a partition. The estimated payload size of the
+     * partition is shared by its successful requests, failed requests annotated no variants.
+     */
+    private void addPostRequests(AnnotationSummaryStatistics summaryStatistics, PostResponse postResponse) {
+        long annotatedLocationCount = postResponse.requests.stream().filter(request -> !request.failed()).mapToLong(PostRequest::locationCount).sum();
+        long payloadBytes = postResponse.requestBytes + postResponse.responseBytes;
+        for (PostRequest request : postResponse.requests) {
+            if (request.failed()) {
+                summaryStatistics.addResponse(request.latencyNanos(), 0, 0L);
+            } else {
+                summaryStatistics.addResponse(request.latencyNanos(), request.locationCount(), payloadBytes * request.locationCount() / annotatedLocationCount);
+            }
+        }
+    }
+
+    /**
+     * Posts the locations, retrying with a growing backoff, and adds the annotations to gnResponseList.
+     * Returns the last failure when every attempt failed, null otherwise
+     */
+    private Exception fetchAnnotationsUsingPOSTWithRetries(List<GenomicLocation> locationBatch, String isoformOverridesSource,
+        List<String> fields, PostResponse postResponse, List<VariantAnnotation> gnResponseList) {
+        Exception failure = null;
+        for (int attempt = 0; attempt <= Math.max(0, postMaxRetries); attempt++) {
+            if (attempt > 0) {
+                long backoffMillis = Math.min(postRetryBackoffMillis << Math.min(attempt - 1, 16), MAX_POST_RETRY_BACKOFF_MILLIS);
+                LOG.warn("Retrying POST request for " + locationBatch.size() + " variants in " + backoffMillis + " ms (attempt "
+                    + (attempt + 1) + " of " + (postMaxRetries + 1) + ")");
+                if (!sleepBeforeRetry(backoffMillis)) {
+                    break;
+                }
+                postResponse.retries++;
+            }
+            try {
+                gnResponseList.addAll(fetchVariantAnnotationsUsingPOST(locationBatch, isoformOverridesSource, fields, postResponse));
+                return null;
+            } catch (Exception e) {
+                failure = e;
+                if (postResponse.firstFailureTime == null) {
+                    postResponse.firstFailureTime = Instant.now();
+                }
+                LOG.warn("POST request for " + locationBatch.size() + " variants failed. " + e.getMessage());
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Splits a failed partition in half and fetches each half on its own, recursing into halves
+     * that fail again until the failing variants are isolated. At most postMaxSplitRequests split
+     * requests are sent for a partition, the variants left when the limit is reached, or when the
+     * server itself fails, are reported as failed together
+     */
+    private void fetchAnnotationsUsingSplitPOST(List<GenomicLocation> locationBatch, String isoformOverridesSource, List<String> fields,
+        int splitDepth, PostResponse postResponse) {
+        postResponse.maxSplitDepth = Math.max(postResponse.maxSplitDepth, splitDepth);
+        int middle = locationBatch.size() / 2;
+        for (List<GenomicLocation> half : Arrays.asList(locationBatch.subList(0, middle), locationBatch.subList(middle, locationBatch.size()))) {
+            if (postResponse.splitRequests >= postMaxSplitRequests) {
+                LOG.error("Annotation failed for " + half.size() + " variants, the limit of " + postMaxSplitRequests
+                    + " split requests for the partition was reached.");
+                postResponse.failedLocations.addAll(half);
+                continue;
+            }
+            postResponse.splitRequests++;
+            try {
+                postResponse.gnResponseList.addAll(fetchVariantAnnotationsUsingPOST(half, isoformOverridesSource, fields, postResponse));
+            } catch (Exception e) {
+                if (isServerFailure(e)) {
+                    LOG.error("Annotation failed for " + half.size() + " variants. " + e.getMessage());
+                    postResponse.failedLocations.addAll(half);
+                } else if (half.size() > 1) {
+                    fetchAnnotationsUsingSplitPOST(half, isoformOverridesSource, fields, splitDepth + 1, postResponse);
+                } else {
+                    LOG.error("Annotation failed for variant " + getGenomicLocationString(half.getFirst()) + ". " + e.getMessage());
+                    postResponse.failedLocations.addAll(half);
+                }
+            }
+        }
+    }
+
+    /**
+     * Second pass of tiered enrichment: re-requests the annotations of the variants whose variant
+     * classification calls for enrichment with all enrichment fields, replacing the summary-only
+     * annotations of the first pass. Variants that can not be enriched keep their summary annotation;
+     * they are counted as failed enrichments and are not cached, so a later run requests them again.
+     */
+    private void fetchEnrichmentUsingPOST(List<GenomicLocation> locationBatch, String isoformOverridesSource, AnnotationFields fields,
+        PostResponse postResponse) {
+        Map<String, GenomicLocation> locationsByKey = new HashMap<>();
+        locationBatch.forEach(location -> locationsByKey.put(getGenomicLocationString(location), location));
+        List<GenomicLocation> locationsToEnrich = new ArrayList<>();
+        for (VariantAnnotation gnResponse : postResponse.gnResponseList) {
+            GenomicLocation location = locationsByKey.get(gnResponse.getOriginalVariantQuery());
+            if (location != null && gnResponse.isSuccessfullyAnnotated() && isEnrichmentNeeded(gnResponse)) {
+                locationsToEnrich.add(location);
+            }
+        }
+        postResponse.enrichedLocationCount = locationsToEnrich.size();
+        if (locationsToEnrich.isEmpty()) {
+            return;
+        }
+        List<VariantAnnotation> enrichedResponseList = new ArrayList<>();
+        Exception failure = fetchAnnotationsUsingPOSTWithRetries(locationsToEnrich, isoformOverridesSource, fields.queryFields(), postResponse, enrichedResponseList);
+        Map<String, VariantAnnotation> enrichedResponses = new HashMap<>();
+        for (VariantAnnotation gnResponse : enrichedResponseList) {
+            if (gnResponse.isSuccessfullyAnnotated()) {
+                enrichedResponses.put(gnResponse.getOriginalVariantQuery(), gnResponse);
+            }
+        }
+        if (failure != null) {
+            LOG.error("Enrichment failed for " + locationsToEnrich.size() + " variants in this partition. " + failure.getMessage());
+        }
+        Set<String> keysToEnrich = new HashSet<>();
+        locationsToEnrich.forEach(location -> keysToEnrich.add(getGenomicLocationString(location)));
+        ListIterator<VariantAnnotation> gnResponses = postResponse.gnResponseList.listIterator();
+        while (gnResponses.hasNext()) {
+            String locationKey = gnResponses.next().getOriginalVariantQuery();
+            if (keysToEnrich.contains(locationKey)) {
+                VariantAnnotation enrichedResponse = enrichedResponses.get(locationKey);
+                if (enrichedResponse != null) {
+                    gnResponses.set(enrichedResponse);
+                } else {
+                    postResponse.failedEnrichmentKeys.add(locationKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates request and response body sizes for the adaptive batch size and the throughput statistics. The response size is
+     * extrapolated from a few serialized annotations to avoid serializing every response again
+     */
+    private void estimatePayloadSizes(List<GenomicLocation> locationBatch, PostResponse postResponse) {
+        postResponse.requestBytes = GSON.toJson(locationBatch).length();
+        List<VariantAnnotation> gnResponseList = postResponse.gnResponseList;
+        if (!gnResponseList.isEmpty()) {
+            int sampleCount = Math.min(RESPONSE_SIZE_SAMPLE_COUNT, gnResponseList.size());
+            long sampleBytes = 0L;
+            for (int i = 0; i < sampleCount; i++) {
+                sampleBytes += GSON.toJson(gnResponseList.get(i * gnResponseList.size() / sampleCount)).length();
+            }
+            postResponse.responseBytes = sampleBytes * gnResponseList.size() / sampleCount;
+        }
+    }
+
+    private boolean sleepBeforeRetry(long backoffMillis) {
+        try {
+            Thread.sleep(backoffMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Splitting a partition does not help when the server can not be reached, times out or
+     * fails with a 5xx status, as the failure is not caused by the variants of the partition
+     */
+    private boolean isServerFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException
+                || cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException) {
+                return true;
+            }
+            if (cause instanceof ApiException apiException && apiException.getCode() >= 500) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> T awaitResponse(Future<T> response) {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Genome Nexus response", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unexpected failure while fetching annotations from Genome Nexus", e.getCause());
+        }
+    }
+
+    private List<GenomicLocation> sortGenomicLocations(List<GenomicLocation> genomicLocations) {
         List<GenomicLocation> sortedLocations = new ArrayList<>(genomicLocations);
         Collections.sort(sortedLocations, GENOMIC_LOCATION_COMPARATOR);
-        
-        // Partition into batches
-        List<List<GenomicLocation>> partitionedList = new ArrayList<>();
-        for (int start = 0; start < sortedLocations.size(); start += postIntervalSize) {
-            int end = Math.min(start + postIntervalSize, sortedLocations.size());
-            partitionedList.add(sortedLocations.subList(start, end));
-        }
-        
-        return partitionedList;
+        return sortedLocations;
     }
 
     private void logAnnotationProgress(Integer annotatedVariantsCount, Integer totalVariantsToAnnotateCount, Integer intervalSize) {
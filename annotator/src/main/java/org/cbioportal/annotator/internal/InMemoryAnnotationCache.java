@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotator.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.genome_nexus.client.VariantAnnotation;
+
+import com.google.gson.Gson;
+
+/**
+ * Bounded least-recently-used cache of Genome Nexus variant annotations.
+ *
+ * Annotations are held as the objects returned by Genome Nexus, so a cache hit costs a map
+ * lookup only; callers must not modify them. The memory footprint of an annotation is
+ * estimated once when it is added. Entries are evicted once either the entry count or the
+ * estimated size exceeds its bound.
+ */
+public class InMemoryAnnotationCache {
+
+    // rough per-entry cost of the map entry, the key and the cached entry objects
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+
+    private final long maxEntries;
+    private final long maxSizeInBytes;
+    private final Gson gson = new Gson();
+    private final LinkedHashMap<String, CachedAnnotation> annotations = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeInBytes = 0;
+    private long evictionCount = 0;
+
+    private record CachedAnnotation(VariantAnnotation annotation, long sizeInBytes) {
+    }
+
+    public InMemoryAnnotationCache(long maxEntries, long maxSizeInBytes) {
+        this.maxEntries = maxEntries;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    public synchronized VariantAnnotation get(String key) {
+        CachedAnnotation cachedAnnotation = annotations.get(key);
+        return cachedAnnotation != null ? cachedAnnotation.annotation() : null;
+    }
+
+    public void put(String key, VariantAnnotation variantAnnotation) {
+        long entrySize = estimateSize(key, variantAnnotation);
+        if (entrySize > maxSizeInBytes) {
+            return;
+        }
+        synchronized (this) {
+            CachedAnnotation previous = annotations.put(key, new CachedAnnotation(variantAnnotation, entrySize));
+            if (previous != null) {
+                sizeInBytes -= previous.sizeInBytes();
+            }
+            sizeInBytes += entrySize;
+            Iterator<CachedAnnotation> leastRecentlyUsed = annotations.values().iterator();
+            while (annotations.size() > maxEntries || sizeInBytes > maxSizeInBytes) {
+                sizeInBytes -= leastRecentlyUsed.next().sizeInBytes();
+                leastRecentlyUsed.remove();
+                evictionCount++;
+            }
+        }
+    }
+
+    public synchronized long size() {
+        return annotations.size();
+    }
+
+    /**
+     * @return Estimated memory held by the cached annotations in bytes
+     */
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private long estimateSize(String key, VariantAnnotation variantAnnotation) {
+        // the values of an annotation are about as long as its JSON; counting two bytes per character
+        // covers strings beyond Latin-1 and leaves room for the headers of the objects holding them
+        return 2L * (key.length() + gson.toJson(variantAnnotation).length()) + ENTRY_OVERHEAD_BYTES;
+    }
+}
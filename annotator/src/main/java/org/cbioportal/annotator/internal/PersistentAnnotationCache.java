@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotator.internal;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+import org.genome_nexus.client.VariantAnnotation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+/**
+ * On-disk cache of Genome Nexus variant annotations backed by a SQLite database.
+ *
+ * Annotations are stored as JSON per genomic location within a namespace, where the
+ * namespace captures everything else the response depends on (isoform override,
+ * requested fields and Genome Nexus server version). The database is opened in WAL
+ * mode so several pipeline processes can read the same cache file concurrently.
+ * Cache failures are logged and treated as misses, they never fail the annotation.
+ */
+public class PersistentAnnotationCache implements Closeable {
+
+    // stay well below the SQLite limit on the number of host parameters per statement
+    private static final int MAX_LOOKUP_BATCH_SIZE = 500;
+    private static final int BUSY_TIMEOUT_MILLIS = 30000;
+
+    private final String path;
+    private final Connection connection;
+    private final Gson gson = new Gson();
+
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentAnnotationCache.class);
+
+    public PersistentAnnotationCache(String path) throws SQLException {
+        this.path = path;
+        this.connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MILLIS);
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("CREATE TABLE IF NOT EXISTS variant_annotation (" +
+                    "namespace TEXT NOT NULL, " +
+                    "genomic_location TEXT NOT NULL, " +
+                    "annotation TEXT NOT NULL, " +
+                    "PRIMARY KEY (namespace, genomic_location)) WITHOUT ROWID");
+        }
+        LOG.info("Using annotation cache: " + path);
+    }
+
+    /**
+     * @param namespace cache namespace the genomic locations belong to
+     * @param genomicLocations genomic location keys to look up
+     * @return cached annotations for the genomic locations found in the cache
+     */
+    public synchronized Map<String, VariantAnnotation> getAll(String namespace, Collection<String> genomicLocations) {
+        Map<String, VariantAnnotation> cachedAnnotations = new HashMap<>();
+        List<String> keys = new ArrayList<>(genomicLocations);
+        try {
+            for (int start = 0; start < keys.size(); start += MAX_LOOKUP_BATCH_SIZE) {
+                List<String> batch = keys.subList(start, Math.min(start + MAX_LOOKUP_BATCH_SIZE, keys.size()));
+                String sql = "SELECT genomic_location, annotation FROM variant_annotation WHERE namespace = ? AND genomic_location IN (" +
+                        String.join(",", Collections.nCopies(batch.size(), "?")) + ")";
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, namespace);
+                    for (int i = 0; i < batch.size(); i++) {
+                        statement.setString(i + 2, batch.get(i));
+                    }
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            cachedAnnotations.put(resultSet.getString(1), gson.fromJson(resultSet.getString(2), VariantAnnotation.class));
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOG.warn("Unable to read from annotation cache " + path + ", variants will be annotated by Genome Nexus: " + e.getMessage());
+        }
+        return cachedAnnotations;
+    }
+
+    /**
+     * @param namespace cache namespace the genomic locations belong to
+     * @param annotations annotations to store keyed by genomic location
+     */
+    public synchronized void putAll(String namespace, Map<String, VariantAnnotation> annotations) {
+        if (annotations.isEmpty()) {
+            return;
+        }
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT OR REPLACE INTO variant_annotation (namespace, genomic_location, annotation) VALUES (?, ?, ?)")) {
+                for (Map.Entry<String, VariantAnnotation> entry : annotations.entrySet()) {
+                    statement.setString(1, namespace);
+                    statement.setString(2, entry.getKey());
+                    statement.setString(3, gson.toJson(entry.getValue()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            LOG.warn("Unable to write to annotation cache " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOG.warn("Unable to close annotation cache " + path + ": " + e.getMessage());
+        }
+    }
+}
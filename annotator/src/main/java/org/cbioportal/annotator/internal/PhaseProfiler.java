@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotator.internal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wall, CPU and allocation time spent in each phase of an annotation, summed over all threads of
+ * the process. Every timed phase is also recorded as a flight recorder event, whether or not the
+ * breakdown is enabled, so a recording started with {@code -XX:StartFlightRecording} shows where a
+ * slow job spends its time.
+ */
+public class PhaseProfiler {
+
+    public enum Phase {
+        PARSE("parse", true),
+        DEDUPLICATE("deduplicate and sort", true),
+        NETWORK("network", true),
+        CONVERT("convert responses", true),
+        // timed per record, which is too fine grained for a flight recorder event each
+        ENCODE("encode rows", false),
+        WRITE("write", true);
+
+        private final String label;
+        private final boolean recorded;
+
+        Phase(String label, boolean recorded) {
+            this.label = label;
+            this.recorded = recorded;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final PhaseProfiler INSTANCE = new PhaseProfiler();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final PhaseTotals[] totals = new PhaseTotals[Phase.values().length];
+    private volatile boolean enabled = false;
+
+    PhaseProfiler() {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = new PhaseTotals();
+        }
+    }
+
+    public static PhaseProfiler getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Measuring CPU time and allocations costs a few system calls per phase, so they are only measured
+     * once the breakdown is enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts timing a phase on the current thread, it ends when the timer is closed on the same thread
+     */
+    public Timer start(Phase phase) {
+        return new Timer(this, phase, false);
+    }
+
+    /**
+     * Starts measuring work done for a phase on a helper thread, such as the threads parsing the input
+     * ahead of the caller. Only its CPU time and allocations are added to the phase, the calls, records
+     * and wall time are counted by the timer of the thread waiting for the work.
+     */
+    public Timer startHelper(Phase phase) {
+        return new Timer(this, phase, true);
+    }
+
+    /**
+     * @return A table of the calls, records, bytes, wall time, CPU time and allocations of each phase that was timed
+     */
+    public String getBreakdown() {
+        StringBuilder builder = new StringBuilder("Annotation phases, summed over all threads:\n");
+        builder.append(String.format("  %-22s %10s %12s %14s %12s %12s %14s%n", "PHASE", "CALLS", "RECORDS", "BYTES", "WALL_SECS", "CPU_SECS", "ALLOCATED_MB"));
+        for (Phase phase : Phase.values()) {
+            PhaseTotals phaseTotals = totals[phase.ordinal()];
+            long calls = phaseTotals.calls.sum();
+            if (calls == 0) {
+                continue;
+            }
+            // threads that can not be measured, such as virtual threads, leave CPU time and allocations unknown
+            boolean measured = phaseTotals.unmeasuredCalls.sum() < calls;
+            builder.append(String.format("  %-22s %10d %12d %14d %12.3f %12s %14s%n", phase.getLabel(), calls,
+                phaseTotals.records.sum(), phaseTotals.bytes.sum(), phaseTotals.wallNanos.sum() / 1e9,
+                measured ? String.format("%.3f", phaseTotals.cpuNanos.sum() / 1e9) : "n/a",
+                measured ? String.format("%.1f", phaseTotals.allocatedBytes.sum() / (1024.0 * 1024.0)) : "n/a"));
+        }
+        return builder.toString();
+    }
+
+    long getCalls(Phase phase) {
+        return totals[phase.ordinal()].calls.sum();
+    }
+
+    long getRecords(Phase phase) {
+        return totals[phase.ordinal()].records.sum();
+    }
+
+    long getBytes(Phase phase) {
+        return totals[phase.ordinal()].bytes.sum();
+    }
+
+    long getAllocatedBytes(Phase phase) {
+        return totals[phase.ordinal()].allocatedBytes.sum();
+    }
+
+    private void add(Phase phase, int records, long bytes, long wallNanos, long cpuNanos, long allocatedBytes) {
+        PhaseTotals phaseTotals = totals[phase.ordinal()];
+        phaseTotals.calls.increment();
+        phaseTotals.records.add(records);
+        phaseTotals.bytes.add(bytes);
+        phaseTotals.wallNanos.add(wallNanos);
+        if (cpuNanos < 0 || allocatedBytes < 0) {
+            phaseTotals.unmeasuredCalls.increment();
+        } else {
+            phaseTotals.cpuNanos.add(cpuNanos);
+            phaseTotals.allocatedBytes.add(allocatedBytes);
+        }
+    }
+
+    private void addHelperTime(Phase phase, long cpuNanos, long allocatedBytes) {
+        PhaseTotals phaseTotals = totals[phase.ordinal()];
+        if (cpuNanos >= 0 && allocatedBytes >= 0) {
+            phaseTotals.cpuNanos.add(cpuNanos);
+            phaseTotals.allocatedBytes.add(allocatedBytes);
+        }
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean threads && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return -1L;
+    }
+
+    private static long currentThreadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1L;
+    }
+
+    private static class PhaseTotals {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder unmeasuredCalls = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder wallNanos = new LongAdder();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+    }
+
+    /**
+     * One timed run of a phase. The records and bytes it handled can be set before it is closed.
+     */
+    public static class Timer implements AutoCloseable {
+        private final PhaseProfiler profiler;
+        private final Phase phase;
+        private final AnnotationPhaseEvent event;
+        private final boolean helper;
+        private final boolean measured;
+        private final long startNanos;
+        private final long startCpuNanos;
+        private final long startAllocatedBytes;
+        private int records = 0;
+        private long bytes = 0L;
+
+        private Timer(PhaseProfiler profiler, Phase phase, boolean helper) {
+            this.profiler = profiler;
+            this.phase = phase;
+            this.helper = helper;
+            this.event = phase.recorded && !helper ? new AnnotationPhaseEvent() : null;
+            this.measured = profiler.enabled;
+            if (event != null) {
+                event.begin();
+            }
+            this.startNanos = measured ? System.nanoTime() : 0L;
+            this.startCpuNanos = measured ? currentThreadCpuTime() : 0L;
+            this.startAllocatedBytes = measured ? currentThreadAllocatedBytes() : 0L;
+        }
+
+        public Timer setRecords(int records) {
+            this.records = records;
+            return this;
+        }
+
+        public Timer setBytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (measured) {
+                long wallNanos = System.nanoTime() - startNanos;
+                long cpuNanos = startCpuNanos < 0 ? -1L : currentThreadCpuTime() - startCpuNanos;
+                long allocatedBytes = startAllocatedBytes < 0 ? -1L : currentThreadAllocatedBytes() - startAllocatedBytes;
+                if (helper) {
+                    profiler.addHelperTime(phase, cpuNanos, allocatedBytes);
+                } else {
+                    profiler.add(phase, records, bytes, wallNanos, cpuNanos, allocatedBytes);
+                }
+            }
+            if (event != null && event.shouldCommit()) {
+                event.phase = phase.getLabel();
+                event.records = records;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotator.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("org.cbioportal.annotator.PostBatch")
+@Label("Genome Nexus POST Batch")
+@Category({"Genome Nexus", "Annotation Pipeline"})
+@Description("One partition of variants posted to Genome Nexus, including retries, splits and enrichment")
+@StackTrace(false)
+class PostBatchEvent extends Event {
+
+    @Label("Variants")
+    int locations;
+
+    @Label("Failed Variants")
+    int failedLocations;
+
+    @Label("Estimated Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Estimated Response Size")
+    @DataAmount
+    long responseBytes;
+
+    @Label("Retries")
+    int retries;
+
+    @Label("Split Requests")
+    int splitRequests;
+
+    @Label("Request Permit Wait")
+    @Timespan
+    long permitWaitNanos;
+}
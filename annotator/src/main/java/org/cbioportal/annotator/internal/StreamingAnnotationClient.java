@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.annotator.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.genome_nexus.ApiException;
+import org.genome_nexus.client.GenomicLocation;
+import org.genome_nexus.client.VariantAnnotation;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Fetches variant annotations for a list of genomic locations with a POST request and decodes
+ * the response array one annotation at a time, straight from the response stream.
+ *
+ * Only the variant annotation fields the annotator resolves are bound. All others, most notably
+ * the full list of VEP transcript consequences, are skipped while parsing, so neither the
+ * response body nor the unused parts of the annotations are ever held in memory.
+ */
+public class StreamingAnnotationClient {
+
+    // top level fields of VariantAnnotation read by GenomeNexusImpl and AnnotationUtil
+    private static final Set<String> BOUND_VARIANT_ANNOTATION_FIELDS = Set.of("alleleString", "annotationSummary",
+        "assemblyName", "colocatedVariants", "errorMessage", "genomicLocationExplanation", "mutationAssessor",
+        "myVariantInfo", "nucleotideContext", "oncokb", "originalVariantQuery", "successfullyAnnotated", "variant");
+
+    private final Gson gson = new GsonBuilder()
+        .addDeserializationExclusionStrategy(new ExclusionStrategy() {
+            @Override
+            public boolean shouldSkipField(FieldAttributes field) {
+                return field.getDeclaringClass() == VariantAnnotation.class && !BOUND_VARIANT_ANNOTATION_FIELDS.contains(field.getName());
+            }
+
+            @Override
+            public boolean shouldSkipClass(Class<?> clazz) {
+                return false;
+            }
+        })
+        .create();
+    private final HttpClient httpClient;
+    private final String annotationUrl;
+    private final Duration readTimeout;
+
+    public StreamingAnnotationClient(String genomeNexusBaseUrl, int readTimeoutMillis) {
+        this.annotationUrl = genomeNexusBaseUrl.replaceAll("/+$", "") + "/annotation/genomic";
+        this.readTimeout = Duration.ofMillis(readTimeoutMillis);
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    }
+
+    /**
+     * Posts the genomic locations and hands each annotation of the response to the consumer as soon
+     * as it has been decoded. Takes the same parameters as the generated API client.
+     */
+    public void fetchVariantAnnotationByGenomicLocationPOST(List<GenomicLocation> genomicLocations, String isoformOverrideSource,
+        String token, List<String> fields, Consumer<VariantAnnotation> consumer) throws ApiException {
+        HttpRequest request = HttpRequest.newBuilder(buildUri(isoformOverrideSource, token, fields))
+            .timeout(readTimeout)
+            .header("Content-Type", "application/json")
+            .header("Accept", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(genomicLocations)))
+            .build();
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() / 100 != 2) {
+                    throw new ApiException(response.statusCode(), "POST " + annotationUrl + " returned HTTP "
+                        + response.statusCode() + ": " + new String(body.readAllBytes(), StandardCharsets.UTF_8));
+                }
+                decode(new InputStreamReader(body, StandardCharsets.UTF_8), consumer);
+            }
+        } catch (IOException e) {
+            throw new ApiException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(e);
+        }
+    }
+
+    /**
+     * Decodes a JSON array of variant annotations, handing each one to the consumer before the
+     * next one is read
+     */
+    void decode(Reader json, Consumer<VariantAnnotation> consumer) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            consumer.accept(gson.fromJson(reader, VariantAnnotation.class));
+        }
+        reader.endArray();
+    }
+
+    private URI buildUri(String isoformOverrideSource, String token, List<String> fields) {
+        StringBuilder uri = new StringBuilder(annotationUrl).append('?');
+        appendQueryParameter(uri, "isoformOverrideSource", isoformOverrideSource);
+        appendQueryParameter(uri, "token", token);
+        for (String field : fields) {
+            appendQueryParameter(uri, "fields", field);
+        }
+        uri.setLength(uri.length() - 1);
+        return URI.create(uri.toString());
+    }
+
+    private void appendQueryParameter(StringBuilder uri, String name, String value) {
+        if (value != null) {
+            uri.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8)).append('&');
+        }
+    }
+}
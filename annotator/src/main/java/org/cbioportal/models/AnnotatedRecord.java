@@ -42,6 +42,24 @@ import joptsimple.internal.Strings;
 
 public class AnnotatedRecord extends MutationRecord {
 
+    // columns added by the annotator on top of the base annotated record header
+    public static final List<String> GNOMAD_COLUMNS = Collections.unmodifiableList(Arrays.asList("gnomAD_AF",
+            "gnomAD_AFR_AF", "gnomAD_AMR_AF", "gnomAD_ASJ_AF", "gnomAD_EAS_AF", "gnomAD_FIN_AF",
+            "gnomAD_NFE_AF", "gnomAD_OTH_AF", "gnomAD_SAS_AF"));
+    public static final List<String> POLYPHEN_COLUMNS = Collections.unmodifiableList(Arrays.asList("Polyphen_Prediction", "Polyphen_Score"));
+    public static final List<String> SIFT_COLUMNS = Collections.unmodifiableList(Arrays.asList("SIFT_Prediction", "SIFT_Score"));
+    public static final List<String> MUTATION_ASSESSOR_COLUMNS = Collections.unmodifiableList(Arrays.asList("MutationAssessor_FunctionalImpactPrediction",
+            "MutationAssessor_FunctionalImpactScore", "MutationAssessor_MSA", "MutationAssessor_MAV", "MutationAssessor_SV"));
+    public static final List<String> NUCLEOTIDE_CONTEXT_COLUMNS = Collections.unmodifiableList(Arrays.asList("Ref_Tri", "Var_Tri"));
+    public static final List<String> ONCOKB_COLUMNS = Collections.unmodifiableList(Arrays.asList("oncokb_oncogenic",
+            "oncokb_geneExist", "oncokb_variantExist", "oncokb_mutationEffect", "oncokb_mutationEffectCitations",
+            "oncokb_highestDXLevel", "oncokb_highestPXLevel", "oncokb_highestResistanceLevel", "oncokb_highestSensitiveLevel"));
+    public static final List<String> ORIGINAL_GENOMIC_LOCATION_COLUMNS = Collections.unmodifiableList(Arrays.asList("IGNORE_Genome_Nexus_Original_Chromosome",
+            "IGNORE_Genome_Nexus_Original_Start_Position", "IGNORE_Genome_Nexus_Original_End_Position",
+            "IGNORE_Genome_Nexus_Original_Reference_Allele", "IGNORE_Genome_Nexus_Original_Tumor_Seq_Allele1",
+            "IGNORE_Genome_Nexus_Original_Tumor_Seq_Allele2"));
+    public static final String GENOMIC_LOCATION_EXPLANATION_COLUMN = "genomic_location_explanation";
+
     protected String hgvsc;
     protected String hgvsp;
     protected String hgvspShort;
@@ -266,15 +284,7 @@ public class AnnotatedRecord extends MutationRecord {
         String gnomadAlleleFrequencyNFE,
         String gnomadAlleleFrequencyOTH,
         String gnomadAlleleFrequencySAS) {
-        header.add("gnomAD_AF");
-        header.add("gnomAD_AFR_AF");
-        header.add("gnomAD_AMR_AF");
-        header.add("gnomAD_ASJ_AF");
-        header.add("gnomAD_EAS_AF");
-        header.add("gnomAD_FIN_AF");
-        header.add("gnomAD_NFE_AF");
-        header.add("gnomAD_OTH_AF");
-        header.add("gnomAD_SAS_AF");
+        schema = schema.withColumns(GNOMAD_COLUMNS);
         this.gnomadAlleleFrequency = gnomadAlleleFrequency;
         this.gnomadAlleleFrequencyAFR = gnomadAlleleFrequencyAFR;
         this.gnomadAlleleFrequencyAMR = gnomadAlleleFrequencyAMR;
@@ -326,7 +336,7 @@ public class AnnotatedRecord extends MutationRecord {
     }
 
     public void setGenomicLocationExplanation(String genomicLocationExplanation) {
-        addAdditionalProperty("genomic_location_explanation", genomicLocationExplanation);
+        addAdditionalProperty(GENOMIC_LOCATION_EXPLANATION_COLUMN, genomicLocationExplanation);
     }
 
     public String getHGVSC() {
@@ -498,14 +508,6 @@ public class AnnotatedRecord extends MutationRecord {
     }
 
     private void addAnnotatedFieldsToHeader() {
-        header.add("HGVSc");
-        header.add("HGVSp");
-        header.add("HGVSp_Short");
-        header.add("Transcript_ID");
-        header.add("RefSeq");
-        header.add("Protein_position");
-        header.add("Codons");
-        header.add("Exon_Number");
-        header.add(header.indexOf("Variant_Classification"), "Consequence");
+        schema = RecordSchema.ANNOTATED_RECORD;
     }
 }
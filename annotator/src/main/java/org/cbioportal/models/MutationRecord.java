@@ -78,10 +78,9 @@ public class MutationRecord {
     protected String nRefCount;
     protected String nAltCount;
     protected Map<String, String> additionalProperties = new LinkedHashMap<>();
-    protected List<String> header = new ArrayList<>();
+    protected RecordSchema schema = RecordSchema.MUTATION_RECORD;
 
     public MutationRecord() {
-        initHeader();
     }
 
     public MutationRecord(String hugoSymbol, String entrezGeneId, String center, String ncbiBuild,
@@ -134,7 +133,6 @@ public class MutationRecord {
         this.nRefCount = nRefCount;
         this.nAltCount = nAltCount;
         this.additionalProperties = additionalProperties;
-        initHeader();
     }
 
     public String getHUGO_SYMBOL() {
@@ -441,6 +439,22 @@ public class MutationRecord {
         this.nAltCount = nAltCount;
     }
 
+    /**
+     * Copy of this record with its own additional properties, so that the copy can be annotated
+     * without affecting this record
+     */
+    public MutationRecord copy() {
+        MutationRecord copy = new MutationRecord(hugoSymbol, entrezGeneId, center, ncbiBuild, chromosome, startPosition,
+            endPosition, strand, variantClassification, variantType, referenceAllele, tumorSeqAllele1, tumorSeqAllele2,
+            dbSnpRs, dbSnpValStatus, tumorSampleBarcode, matchedNormSampleBarcode, matchedNormSeqAllele1,
+            matchedNormSeqAllele2, tumorValidationAllele1, tumorValidationAllele2, matchNormValidationAllele1,
+            matchNormValidationAllele2, verificationStatus, validationStatus, mutationStatus, sequencingPhase,
+            sequencingSource, validationMethod, score, bamFile, sequencer, tumorSampleUUID, matchedNormSampleUUID,
+            tRefCount, tAltCount, nRefCount, nAltCount, new LinkedHashMap<>(additionalProperties));
+        copy.schema = schema;
+        return copy;
+    }
+
     public void addAdditionalProperty(String property, String value) {
         this.additionalProperties.put(property, value);
     }
@@ -465,7 +479,7 @@ public class MutationRecord {
         Arrays.sort(additionalPropertiesKeys);
         // filter out possibility of a column being both in additional properties and as predefined header field
         for (String additionalPropertiesKey : additionalPropertiesKeys) {
-            if (!getHeader().contains(additionalPropertiesKey)) {
+            if (!schema.contains(additionalPropertiesKey)) {
                 sortedAdditionalPropertiesKeys.add(additionalPropertiesKey);
             }
         }
@@ -475,7 +489,7 @@ public class MutationRecord {
     public List<String> getSortedAdditionalPropertiesValues() {
         List<String> sortedValues = new ArrayList<>();
         for (String additionalPropertiesKey : getSortedAdditionalPropertiesKeys()) {
-            if (!getHeader().contains(additionalPropertiesKey)) {
+            if (!schema.contains(additionalPropertiesKey)) {
                 sortedValues.add(getAdditionalProperties().getOrDefault(additionalPropertiesKey,""));
             }
         }
@@ -483,46 +497,18 @@ public class MutationRecord {
     }
  
     public List<String> getHeader() {
-        return header;
+        return schema.getColumns();
     }
 
-    public void initHeader() {
-        header.add("Hugo_Symbol");
-        header.add("Entrez_Gene_Id");
-        header.add("Center");
-        header.add("NCBI_Build");
-        header.add("Chromosome");
-        header.add("Start_Position");
-        header.add("End_Position");
-        header.add("Strand");
-        header.add("Variant_Classification");
-        header.add("Variant_Type");
-        header.add("Reference_Allele");
-        header.add("Tumor_Seq_Allele1");
-        header.add("Tumor_Seq_Allele2");
-        header.add("dbSNP_RS");
-        header.add("dbSNP_Val_Status");
-        header.add("Tumor_Sample_Barcode");
-        header.add("Matched_Norm_Sample_Barcode");
-        header.add("Match_Norm_Seq_Allele1");
-        header.add("Match_Norm_Seq_Allele2");
-        header.add("Tumor_Validation_Allele1");
-        header.add("Tumor_Validation_Allele2");
-        header.add("Match_Norm_Validation_Allele1");
-        header.add("Match_Norm_Validation_Allele2");
-        header.add("Verification_Status");
-        header.add("Validation_Status");
-        header.add("Mutation_Status");
-        header.add("Sequencing_Phase");
-        header.add("Sequence_Source");
-        header.add("Validation_Method");
-        header.add("Score");
-        header.add("BAM_File");
-        header.add("Sequencer");
-        header.add("t_ref_count");
-        header.add("t_alt_count");
-        header.add("n_ref_count");
-        header.add("n_alt_count");
+    public RecordSchema getSchema() {
+        return schema;
+    }
 
+    public void setSchema(RecordSchema schema) {
+        this.schema = schema;
+    }
+
+    public void initHeader() {
+        schema = RecordSchema.MUTATION_RECORD;
     }
 }
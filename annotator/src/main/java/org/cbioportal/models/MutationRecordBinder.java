@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Binds the columns of a MAF header to a {@link MutationRecord}.
+ *
+ * The header is resolved once into a setter per column index, with the columns that have no
+ * setter marked as additional properties, so rows can be bound without reflection.
+ */
+public class MutationRecordBinder {
+
+    private static final List<String> DEFAULT_HEADER = RecordSchema.MUTATION_RECORD.getColumns();
+    private static final List<BiConsumer<MutationRecord, String>> DEFAULT_HEADER_SETTERS = resolveSetters(DEFAULT_HEADER);
+
+    private final String[] columns;
+    private final List<BiConsumer<MutationRecord, String>> setters;
+
+    public MutationRecordBinder(String[] columns) {
+        this.columns = columns.clone();
+        this.setters = resolveSetters(Arrays.asList(columns));
+    }
+
+    /**
+     * @return true if this binder was created for exactly these columns
+     */
+    public boolean isBinderFor(String[] columns) {
+        return Arrays.equals(this.columns, columns);
+    }
+
+    /**
+     * @param values the row values, in the same order as the columns this binder was created for
+     */
+    public MutationRecord bind(String[] values) {
+        MutationRecord record = new MutationRecord();
+        for (int i = 0; i < columns.length; i++) {
+            BiConsumer<MutationRecord, String> setter = setters.get(i);
+            if (setter != null) {
+                setter.accept(record, values[i]);
+            } else {
+                record.addAdditionalProperty(columns[i], values[i]);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Sets the standard MAF columns found in the given map and keeps the remaining entries
+     * as additional properties. The map is modified and becomes the record's additional properties.
+     */
+    public static MutationRecord bind(Map<String, String> mafLine) {
+        MutationRecord record = new MutationRecord();
+        for (int i = 0; i < DEFAULT_HEADER.size(); i++) {
+            String column = DEFAULT_HEADER.get(i);
+            if (mafLine.containsKey(column)) {
+                DEFAULT_HEADER_SETTERS.get(i).accept(record, mafLine.remove(column));
+            }
+        }
+        record.setAdditionalProperties(mafLine);
+        return record;
+    }
+
+    public static boolean hasSetter(String column) {
+        return RecordAccessors.hasSetter(MutationRecord.class, column);
+    }
+
+    private static List<BiConsumer<MutationRecord, String>> resolveSetters(List<String> columns) {
+        List<BiConsumer<MutationRecord, String>> setters = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            setters.add(RecordAccessors.getSetter(MutationRecord.class, column));
+        }
+        return setters;
+    }
+}
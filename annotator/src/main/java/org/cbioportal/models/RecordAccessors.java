@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.models;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Column accessors for the record classes, compiled once per class into lambdas.
+ *
+ * Columns are resolved the same way as the reflective "set" + column.toUpperCase() and
+ * "get" + column.toUpperCase() lookups they replace, so the map keys are the upper-cased column names.
+ */
+public final class RecordAccessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Map<Class<?>, Map<String, BiConsumer<?, String>>> SETTERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, Function<?, Object>>> GETTERS = new ConcurrentHashMap<>();
+
+    private RecordAccessors() {}
+
+    /**
+     * @return the String setter for the given column, or null if the record class has no such setter
+     */
+    public static <T extends MutationRecord> BiConsumer<T, String> getSetter(Class<T> recordClass, String column) {
+        return getSetters(recordClass).get(column.toUpperCase());
+    }
+
+    public static boolean hasSetter(Class<? extends MutationRecord> recordClass, String column) {
+        return getSetters(recordClass).containsKey(column.toUpperCase());
+    }
+
+    /**
+     * @return the getter for the given column, or null if the record class has no such getter
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends MutationRecord> Function<T, Object> getGetter(Class<? extends T> recordClass, String column) {
+        return (Function<T, Object>) GETTERS.computeIfAbsent(recordClass, RecordAccessors::compileGetters).get(column.toUpperCase());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends MutationRecord> Map<String, BiConsumer<T, String>> getSetters(Class<T> recordClass) {
+        return (Map<String, BiConsumer<T, String>>) (Map<String, ?>) SETTERS.computeIfAbsent(recordClass, RecordAccessors::compileSetters);
+    }
+
+    private static Map<String, BiConsumer<?, String>> compileSetters(Class<?> recordClass) {
+        Map<String, BiConsumer<?, String>> setters = new HashMap<>();
+        for (Method method : recordClass.getMethods()) {
+            String column = method.getName().substring(Math.min(3, method.getName().length()));
+            if (method.getName().startsWith("set") && method.getReturnType() == void.class && method.getParameterCount() == 1
+                    && method.getParameterTypes()[0] == String.class && column.equals(column.toUpperCase())) {
+                setters.put(column, compileSetter(recordClass, method));
+            }
+        }
+        return Collections.unmodifiableMap(setters);
+    }
+
+    private static Map<String, Function<?, Object>> compileGetters(Class<?> recordClass) {
+        Map<String, Function<?, Object>> getters = new HashMap<>();
+        for (Method method : recordClass.getMethods()) {
+            String column = method.getName().substring(Math.min(3, method.getName().length()));
+            if (method.getName().startsWith("get") && method.getReturnType() != void.class && method.getParameterCount() == 0
+                    && !column.isEmpty() && column.equals(column.toUpperCase())) {
+                getters.put(column, compileGetter(recordClass, method));
+            }
+        }
+        return Collections.unmodifiableMap(getters);
+    }
+
+    private static Function<?, Object> compileGetter(Class<?> recordClass, Method method) {
+        try {
+            MethodHandle getter = LOOKUP.unreflect(method);
+            CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "apply",
+                MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class),
+                getter,
+                MethodType.methodType(method.getReturnType().isPrimitive() ? Object.class : method.getReturnType(), recordClass));
+            return (Function<?, Object>) callSite.getTarget().invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create getter for " + recordClass.getSimpleName() + "." + method.getName(), e);
+        }
+    }
+
+    private static BiConsumer<?, String> compileSetter(Class<?> recordClass, Method method) {
+        try {
+            MethodHandle setter = LOOKUP.unreflect(method);
+            CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                MethodType.methodType(BiConsumer.class),
+                MethodType.methodType(void.class, Object.class, Object.class),
+                setter,
+                MethodType.methodType(void.class, recordClass, String.class));
+            return (BiConsumer<?, String>) callSite.getTarget().invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create setter for " + recordClass.getSimpleName() + "." + method.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2026 Memorial Sloan-Kettering Cancer Center.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY, WITHOUT EVEN THE IMPLIED WARRANTY OF MERCHANTABILITY OR FITNESS
+ * FOR A PARTICULAR PURPOSE. The software and documentation provided hereunder
+ * is on an "as is" basis, and Memorial Sloan-Kettering Cancer Center has no
+ * obligations to provide maintenance, support, updates, enhancements or
+ * modifications. In no event shall Memorial Sloan-Kettering Cancer Center be
+ * liable to any party for direct, indirect, special, incidental or
+ * consequential damages, including lost profits, arising out of the use of this
+ * software and its documentation, even if Memorial Sloan-Kettering Cancer
+ * Center has been advised of the possibility of such damage.
+ */
+
+/*
+ * This file is part of cBioPortal CMO-Pipelines.
+ *
+ * cBioPortal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.cbioportal.models;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable list of the predefined columns of a record, shared by all records with the same columns.
+ *
+ * Records used to build their own header list; a schema is built once and column lookups are
+ * hashed. Schemas with extra columns are derived with {@link #withColumns(List)} and cached,
+ * so records adding the same columns also end up sharing one schema.
+ */
+public final class RecordSchema {
+
+    public static final RecordSchema MUTATION_RECORD = new RecordSchema(Arrays.asList("Hugo_Symbol", "Entrez_Gene_Id",
+            "Center", "NCBI_Build", "Chromosome", "Start_Position", "End_Position", "Strand", "Variant_Classification",
+            "Variant_Type", "Reference_Allele", "Tumor_Seq_Allele1", "Tumor_Seq_Allele2", "dbSNP_RS", "dbSNP_Val_Status",
+            "Tumor_Sample_Barcode", "Matched_Norm_Sample_Barcode", "Match_Norm_Seq_Allele1", "Match_Norm_Seq_Allele2",
+            "Tumor_Validation_Allele1", "Tumor_Validation_Allele2", "Match_Norm_Validation_Allele1",
+            "Match_Norm_Validation_Allele2", "Verification_Status", "Validation_Status", "Mutation_Status",
+            "Sequencing_Phase", "Sequence_Source", "Validation_Method", "Score", "BAM_File", "Sequencer",
+            "t_ref_count", "t_alt_count", "n_ref_count", "n_alt_count"));
+
+    public static final RecordSchema ANNOTATED_RECORD = createAnnotatedRecordSchema();
+
+    private final List<String> columns;
+    private final Set<String> columnSet;
+    private final Map<List<String>, RecordSchema> extendedSchemas = new ConcurrentHashMap<>();
+
+    private RecordSchema(List<String> columns) {
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.columnSet = new HashSet<>(columns);
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public boolean contains(String column) {
+        return columnSet.contains(column);
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * @return the schema with the given columns appended, skipping columns this schema already has
+     */
+    public RecordSchema withColumns(List<String> additionalColumns) {
+        return extendedSchemas.computeIfAbsent(additionalColumns, key -> {
+            List<String> extendedColumns = new ArrayList<>(columns);
+            for (String column : key) {
+                if (!columnSet.contains(column) && !extendedColumns.contains(column)) {
+                    extendedColumns.add(column);
+                }
+            }
+            return extendedColumns.size() == columns.size() ? this : new RecordSchema(extendedColumns);
+        });
+    }
+
+    private static RecordSchema createAnnotatedRecordSchema() {
+        List<String> columns = new ArrayList<>(MUTATION_RECORD.getColumns());
+        columns.addAll(Arrays.asList("HGVSc", "HGVSp", "HGVSp_Short", "Transcript_ID", "RefSeq", "Protein_position",
+                "Codons", "Exon_Number"));
+        columns.add(columns.indexOf("Variant_Classification"), "Consequence");
+        return new RecordSchema(columns);
+    }
+}
@@ -50,6 +50,7 @@ import org.cbioportal.annotator.mixin.VariantAnnotationSummaryMixin;
 import org.cbioportal.annotator.util.AnnotationUtil;
 
 import org.genome_nexus.client.AlleleFrequency;
+import org.genome_nexus.client.GenomicLocation;
 import org.genome_nexus.client.Gnomad;
 import org.genome_nexus.client.MyVariantInfo;
 import org.genome_nexus.client.MyVariantInfoAnnotation;
@@ -162,6 +163,10 @@ public class MockGenomeNexusImpl extends GenomeNexusImpl {
     }
 
     public AnnotatedRecord makeMockMyVariantInfoAnnotatedRecord(MutationRecord record) {
+        return makeMockMyVariantInfoAnnotatedRecord(record, null);
+    }
+
+    public AnnotatedRecord makeMockMyVariantInfoAnnotatedRecord(MutationRecord record, Collection<String> outputColumns) {
         VariantAnnotation gnResponse = null;
         try {
             gnResponse = makeMockGenomeNexusResponse(mockGenomeNexusMyVariantInfoResponseMap.get(parseGenomicLocationString(record, false)));
@@ -170,7 +175,26 @@ public class MockGenomeNexusImpl extends GenomeNexusImpl {
             throw new RuntimeException(e);
         }
 
-        return convertResponseToAnnotatedRecord(gnResponse, record, REPLACE, stripMatchingBases, true, false, false);
+        return convertResponseToAnnotatedRecord(gnResponse, record, REPLACE, stripMatchingBases, true, false, false, outputColumns);
+    }
+
+    /**
+     * Returns the mock POST response for a genomic location as returned by the annotation
+     * endpoint, with the original variant query the POST responses are matched by.
+     */
+    public VariantAnnotation makeMockPOSTResponse(GenomicLocation location) {
+        String locationKey = String.join(",", location.getChromosome(), String.valueOf(location.getStart()),
+                String.valueOf(location.getEnd()), location.getReferenceAllele(), location.getVariantAllele());
+        VariantAnnotation gnResponse = null;
+        try {
+            gnResponse = makeMockGenomeNexusResponse(mockGenomeNexusHgvsPOSTResponseMap.get(locationKey));
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        gnResponse.setOriginalVariantQuery(locationKey);
+        gnResponse.setSuccessfullyAnnotated(true);
+        return gnResponse;
     }
 
     private VariantAnnotation makeMockGenomeNexusResponse(String mockReturnJsonString) throws IOException {
@@ -0,0 +1,42 @@
+package org.cbioportal.annotator.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveBatchSizerTest {
+
+    @Test
+    void fastResponsesGrowTheBatchSizeUpToTheMaximum() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10, 200, 10000, 0, 0);
+        assertEquals(125, sizer.recordResponse(100, 1000, 0, 0, false));
+        for (int i = 0; i < 10; i++) {
+            sizer.recordResponse(sizer.getBatchSize(), 1000, 0, 0, false);
+        }
+        assertEquals(200, sizer.getBatchSize());
+    }
+
+    @Test
+    void slowResponsesShrinkTheBatchSizeByAtMostHalf() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10, 1000, 10000, 0, 0);
+        assertEquals(50, sizer.recordResponse(100, 40000, 0, 0, false));
+        assertEquals(40, sizer.recordResponse(50, 12500, 0, 0, false));
+    }
+
+    @Test
+    void failuresHalveTheBatchSizeDownToTheMinimum() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10, 1000, 10000, 0, 0);
+        assertEquals(50, sizer.recordResponse(100, 100, 0, 0, true));
+        assertEquals(25, sizer.recordResponse(50, 100, 0, 0, true));
+        assertEquals(12, sizer.recordResponse(25, 100, 0, 0, true));
+        assertEquals(10, sizer.recordResponse(12, 100, 0, 0, true));
+        assertEquals(10, sizer.recordResponse(10, 100, 0, 0, true));
+    }
+
+    @Test
+    void largePayloadsLimitTheBatchSize() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10, 1000, 10000, 1000, 1000);
+        assertEquals(62, sizer.recordResponse(100, 1000, 500, 1600, false));
+        assertEquals(50, sizer.recordResponse(62, 1000, 1240, 500, false));
+    }
+}
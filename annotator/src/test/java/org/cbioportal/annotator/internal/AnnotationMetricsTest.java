@@ -0,0 +1,57 @@
+package org.cbioportal.annotator.internal;
+
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotationMetricsTest {
+
+    @Test
+    void countersAndGaugesFollowUpdates() {
+        AnnotationMetrics metrics = new AnnotationMetrics();
+        metrics.addRecordsParsed(10);
+        metrics.addRecordsWritten(4);
+        metrics.requestStarted();
+        metrics.requestStarted();
+        metrics.requestCompleted();
+        metrics.addCacheLookups(3, 7);
+        metrics.addQueuedWindows(2);
+        metrics.addQueuedWindows(-1);
+        metrics.addBufferedRecords(5);
+        metrics.addBufferedRecords(-5);
+        assertEquals(10L, metrics.getRecordsParsedTotal());
+        assertEquals(4L, metrics.getRecordsWrittenTotal());
+        assertEquals(1L, metrics.getRequestsInFlight());
+        assertEquals(1L, metrics.getRequestsCompletedTotal());
+        assertEquals(3L, metrics.getCacheHitsTotal());
+        assertEquals(7L, metrics.getCacheMissesTotal());
+        assertEquals(1L, metrics.getQueuedWindows());
+        assertEquals(0L, metrics.getBufferedRecords());
+    }
+
+    @Test
+    void prometheusTextHasOneLinePerMetric() {
+        AnnotationMetrics metrics = new AnnotationMetrics();
+        metrics.addServerFailure();
+        metrics.addAmbiguousAlleleFailure();
+        String text = metrics.toPrometheusText();
+        assertTrue(text.contains("genome_nexus_annotation_server_failures_total 1\n"), text);
+        assertTrue(text.contains("genome_nexus_annotation_ambiguous_allele_failures_total 1\n"), text);
+        assertTrue(text.contains("genome_nexus_annotation_records_parsed_total 0\n"), text);
+        for (String line : text.split("\n")) {
+            assertTrue(line.matches("genome_nexus_annotation_[a-z_]+ -?\\d+"), line);
+        }
+    }
+
+    @Test
+    void sharedInstanceIsRegisteredOverJmx() throws Exception {
+        AnnotationMetrics metrics = AnnotationMetrics.getInstance();
+        assertSame(metrics, AnnotationMetrics.getInstance());
+        ObjectName objectName = new ObjectName(AnnotationMetrics.OBJECT_NAME);
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+        assertNotNull(ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "HeapUsedBytes"));
+    }
+}
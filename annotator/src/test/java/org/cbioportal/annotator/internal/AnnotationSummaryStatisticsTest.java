@@ -1,6 +1,11 @@
 package org.cbioportal.annotator.internal;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,4 +53,69 @@ class AnnotationSummaryStatisticsTest {
         annotationSummaryStatistics.addDuration(5L);
         assertEquals("10", annotationSummaryStatistics.totalResponseTime());
     }
-}
\ No newline at end of file
+
+    @Test
+    void postRetries() {
+        AnnotationSummaryStatistics annotationSummaryStatistics = new AnnotationSummaryStatistics(null);
+        annotationSummaryStatistics.addPostRetries(2, 6, 3, 1500L);
+        annotationSummaryStatistics.addPostRetries(1, 0, 0, 200L);
+        assertEquals(3, annotationSummaryStatistics.getPostRetries());
+        assertEquals(6, annotationSummaryStatistics.getSplitPostRequests());
+        assertEquals(3, annotationSummaryStatistics.getMaxPostSplitDepth());
+    }
+
+    @Test
+    void tieredEnrichment() {
+        AnnotationSummaryStatistics annotationSummaryStatistics = new AnnotationSummaryStatistics(null);
+        annotationSummaryStatistics.addTieredEnrichment(100, 12, 0);
+        annotationSummaryStatistics.addTieredEnrichment(40, 3, 3);
+        assertEquals(140, annotationSummaryStatistics.getTieredEnrichmentVariants());
+        assertEquals(15, annotationSummaryStatistics.getEnrichedVariants());
+        assertEquals(3, annotationSummaryStatistics.getFailedEnrichmentVariants());
+    }
+
+    @Test
+    void failuresAddedBack() {
+        AnnotationSummaryStatistics annotationSummaryStatistics = new AnnotationSummaryStatistics(null);
+        annotationSummaryStatistics.addFailures(new AnnotationSummaryStatistics.Failures(2, 1, 0, 1, Arrays.asList("a", "b")));
+        annotationSummaryStatistics.addFailures(new AnnotationSummaryStatistics.Failures(1, 0, 1, 0, Arrays.asList("c")));
+        AnnotationSummaryStatistics.Failures failures = annotationSummaryStatistics.getFailures();
+        assertEquals(3, failures.total());
+        assertEquals(1, failures.ambiguousTumorSeqAllele());
+        assertEquals(1, failures.nullVariantClassification());
+        assertEquals(1, failures.other());
+        assertEquals(Arrays.asList("a", "b", "c"), failures.errorMessages());
+    }
+
+    @Test
+    void previousOutputRecords() {
+        AnnotationSummaryStatistics annotationSummaryStatistics = new AnnotationSummaryStatistics(null);
+        annotationSummaryStatistics.addPreviousOutputRecords(90, 10);
+        annotationSummaryStatistics.addPreviousOutputRecords(5, 0);
+        assertEquals(95, annotationSummaryStatistics.getReusedRecords());
+        assertEquals(10, annotationSummaryStatistics.getReannotatedRecords());
+    }
+
+    @Test
+    void subSecondResponseTimes() {
+        AnnotationSummaryStatistics annotationSummaryStatistics = new AnnotationSummaryStatistics(null);
+        annotationSummaryStatistics.addResponse(200_000_000L, 100, 0L);
+        annotationSummaryStatistics.addResponse(300_000_000L, 50, 0L);
+        assertEquals("0.250", annotationSummaryStatistics.averageResponseTime());
+        assertEquals(2, annotationSummaryStatistics.getResponseCount());
+        assertEquals(0.3, annotationSummaryStatistics.responseTimePercentile(100), 0.0);
+        assertEquals(0.2, annotationSummaryStatistics.responseTimePercentile(50), 0.2 * 0.03);
+    }
+
+    @Test
+    void summaryIsSavedNextToTheErrorReport(@TempDir Path tempDir) throws Exception {
+        AnnotationSummaryStatistics annotationSummaryStatistics = new AnnotationSummaryStatistics(null);
+        annotationSummaryStatistics.addResponse(200_000_000L, 100, 4096L);
+        String errorReportLocation = tempDir.resolve("error_report.txt").toString();
+        annotationSummaryStatistics.saveSummaryToFile(errorReportLocation);
+        String summary = Files.readString(Path.of(errorReportLocation + AnnotationSummaryStatistics.SUMMARY_FILE_SUFFIX));
+        assertTrue(summary.contains("\"requests\": 1"));
+        assertTrue(summary.contains("\"variants\": 100"));
+        assertTrue(summary.contains("\"p99Seconds\""));
+    }
+}
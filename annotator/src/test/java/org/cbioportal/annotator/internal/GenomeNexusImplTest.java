@@ -33,14 +33,21 @@
 package org.cbioportal.annotator.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.cbioportal.annotator.GenomeNexusTestConfiguration;
 import org.cbioportal.annotator.MockGenomeNexusImpl;
 import org.cbioportal.models.AnnotatedRecord;
 import org.cbioportal.models.MutationRecord;
+import org.genome_nexus.ApiException;
+import org.genome_nexus.client.AnnotationControllerApi;
+import org.genome_nexus.client.GenomicLocation;
+import org.genome_nexus.client.VariantAnnotation;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -203,19 +210,299 @@ public class GenomeNexusImplTest {
     public void testGnomadAnnotationResultsIncluded() throws Exception {
         // annotate now with my_variant_info included in enrichmentFields
         ReflectionTestUtils.setField(annotator, "enrichmentFields", GenomeNexusTestConfiguration.MY_VARIANT_INFO_ENRICHMENT_FIELDS);
+        try {
+            String expectedValue = "4.49569E-4";
 
-        String expectedValue = "4.49569E-4";
+            AnnotatedRecord record = annotator.makeMockMyVariantInfoAnnotatedRecord(mockAnnotatedRecordsWithPost.get(0));
+            if (record.getGNOMAD_AF() == null) {
+                Assert.fail("testGnomadAnnotationResultsIncluded(), annotated record does not have GNOMAD_AF value when my_variant_info was included, expected value is: '" + expectedValue + "', value is null");
+            }
+            if (!record.getGNOMAD_AF().equals(expectedValue)) {
+                Assert.fail("testGnomadAnnotationResultsIncluded(), expected annotated record to have GNOMAD_AF = '" + expectedValue + "', instead it has: '" + record.getGNOMAD_AF() + "'");
+            }
+        } finally {
+            ReflectionTestUtils.setField(annotator, "enrichmentFields", GenomeNexusTestConfiguration.ENRICHMENT_FIELDS);
+        }
+    }
 
-        AnnotatedRecord record = annotator.makeMockMyVariantInfoAnnotatedRecord(mockAnnotatedRecordsWithPost.get(0));
-        if (record.getGNOMAD_AF() == null) {
-            Assert.fail("testGnomadAnnotationResultsIncluded(), annotated record does not have GNOMAD_AF value when my_variant_info was included, expected value is: '" + expectedValue + "', value is null");
+    /**
+     * Test that enrichment fields whose columns are not written to the output are not resolved.
+     */
+    @Test
+    public void testEnrichmentFieldsLimitedToOutputColumns() throws Exception {
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", GenomeNexusTestConfiguration.MY_VARIANT_INFO_ENRICHMENT_FIELDS);
+        try {
+            AnnotatedRecord record = annotator.makeMockMyVariantInfoAnnotatedRecord(mockAnnotatedRecordsWithPost.get(0),
+                    Arrays.asList("Hugo_Symbol", "HGVSp_Short"));
+            Assert.assertNull(record.getGNOMAD_AF());
+
+            record = annotator.makeMockMyVariantInfoAnnotatedRecord(mockAnnotatedRecordsWithPost.get(0),
+                    Arrays.asList("Hugo_Symbol", "HGVSp_Short", "gnomAD_AF"));
+            Assert.assertEquals("4.49569E-4", record.getGNOMAD_AF());
+        } finally {
+            ReflectionTestUtils.setField(annotator, "enrichmentFields", GenomeNexusTestConfiguration.ENRICHMENT_FIELDS);
         }
-        if (!record.getGNOMAD_AF().equals(expectedValue)) {
-            Assert.fail("testGnomadAnnotationResultsIncluded(), expected annotated record to have GNOMAD_AF = '" + expectedValue + "', instead it has: '" + record.getGNOMAD_AF() + "'");
+    }
+
+    /**
+     * Test that the header resolved before annotation matches the header of the annotated records.
+     */
+    @Test
+    public void testAnnotatedRecordHeader() throws Exception {
+        List<String> inputFileHeaders = new MutationRecord().getHeader();
+        List<String> expectedHeader = annotator.getAnnotatedRecordHeader(inputFileHeaders, false, false, null);
+        for (AnnotatedRecord record : mockAnnotatedRecordsWithPost) {
+            Assert.assertEquals(expectedHeader, record.getHeaderWithAdditionalFields());
         }
 
-        // reset enrichment fields
-        ReflectionTestUtils.setField(annotator, "enrichmentFields", GenomeNexusTestConfiguration.ENRICHMENT_FIELDS);
+        // gnomad columns are only part of the header when my_variant_info is included in enrichmentFields
+        ReflectionTestUtils.setField(annotator, "enrichmentFields", GenomeNexusTestConfiguration.MY_VARIANT_INFO_ENRICHMENT_FIELDS);
+        try {
+            AnnotatedRecord record = annotator.makeMockMyVariantInfoAnnotatedRecord(mockAnnotatedRecordsWithPost.get(0));
+            Assert.assertEquals(annotator.getAnnotatedRecordHeader(inputFileHeaders, false, false, null), record.getHeaderWithAdditionalFields());
+        } finally {
+            ReflectionTestUtils.setField(annotator, "enrichmentFields", GenomeNexusTestConfiguration.ENRICHMENT_FIELDS);
+        }
+    }
+
+    /**
+     * Test that tiered enrichment only requests the enrichment fields for variants of the enriched
+     * variant classifications and replaces their summary annotations with the enriched annotations.
+     */
+    @Test
+    public void testTieredEnrichment() throws Exception {
+        List<List<GenomicLocation>> enrichmentRequests = new ArrayList<>();
+        Map<String, Object> annotatorFields = setTieredEnrichment(makeTieredEnrichmentApiClient(enrichmentRequests, false));
+        try {
+            AnnotationSummaryStatistics summaryStatistics = Mockito.mock(AnnotationSummaryStatistics.class);
+            List<AnnotatedRecord> records = annotator.getAnnotatedRecordsUsingPOST(summaryStatistics, makeMockMutationRecords(),
+                    "mskcc", false, true, "all", false, false, false, null);
+
+            // only the missense and nonsense variants are requested again with the enrichment fields
+            Assert.assertEquals(1, enrichmentRequests.size());
+            Assert.assertEquals(2, enrichmentRequests.get(0).size());
+            for (AnnotatedRecord record : records) {
+                Assert.assertEquals("SUCCESS", record.getANNOTATION_STATUS());
+                if (TIERED_ENRICHMENT_CLASSIFICATIONS.contains(record.getVARIANT_CLASSIFICATION())) {
+                    Assert.assertEquals(ENRICHED_HGVSP_SHORT, record.getHGVSP_SHORT());
+                } else {
+                    Assert.assertEquals(makeMockExpectedProteinChange().get(record.getTUMOR_SAMPLE_BARCODE()), record.getHGVSP_SHORT());
+                }
+            }
+            Mockito.verify(summaryStatistics).addTieredEnrichment(records.size(), 2, 0);
+        } finally {
+            resetAnnotatorFields(annotatorFields);
+        }
+    }
+
+    /**
+     * Test that variants whose enrichment request fails are written with their summary annotation
+     * and counted as failed enrichments instead of failed annotations.
+     */
+    @Test
+    public void testTieredEnrichmentFailure() throws Exception {
+        List<List<GenomicLocation>> enrichmentRequests = new ArrayList<>();
+        Map<String, Object> annotatorFields = setTieredEnrichment(makeTieredEnrichmentApiClient(enrichmentRequests, true));
+        try {
+            AnnotationSummaryStatistics summaryStatistics = Mockito.mock(AnnotationSummaryStatistics.class);
+            List<AnnotatedRecord> records = annotator.getAnnotatedRecordsUsingPOST(summaryStatistics, makeMockMutationRecords(),
+                    "mskcc", false, true, "all", false, false, false, null);
+
+            // the enrichment request is retried, then the summary annotations are kept
+            Assert.assertEquals(3, enrichmentRequests.size());
+            Map<String, String> expectedProteinChanges = makeMockExpectedProteinChange();
+            for (AnnotatedRecord record : records) {
+                Assert.assertEquals("SUCCESS", record.getANNOTATION_STATUS());
+                Assert.assertEquals(expectedProteinChanges.get(record.getTUMOR_SAMPLE_BARCODE()), record.getHGVSP_SHORT());
+            }
+            Mockito.verify(summaryStatistics, Mockito.never()).addFailedAnnotatedRecordDueToServer(Mockito.any(), Mockito.any(), Mockito.any());
+            Mockito.verify(summaryStatistics).addTieredEnrichment(records.size(), 2, 2);
+        } finally {
+            resetAnnotatorFields(annotatorFields);
+        }
+    }
+
+    /**
+     * Test that a partition rejected because of one variant is retried, then split in halves
+     * until the failing variant is isolated, and that only that variant is reported as failed.
+     */
+    @Test
+    public void testFailedPartitionSplitToIsolateFailingVariant() throws Exception {
+        List<MutationRecord> mutationRecords = makeMockMutationRecords();
+        MutationRecord failingRecord = mutationRecords.get(6);
+        String failingLocation = annotator.parseGenomicLocationString(failingRecord, false);
+        List<Integer> requestSizes = new ArrayList<>();
+        Map<String, Object> annotatorFields = setSplitFailedPartitions(makeFailingVariantApiClient(failingLocation, 400, requestSizes), 32);
+        try {
+            AnnotationSummaryStatistics summaryStatistics = Mockito.mock(AnnotationSummaryStatistics.class);
+            List<AnnotatedRecord> records = annotator.getAnnotatedRecordsUsingPOST(summaryStatistics, mutationRecords,
+                    "mskcc", false, true, "all", false, false, false, null);
+
+            // the whole partition is sent once and retried once, split partitions are not retried
+            Assert.assertEquals(mutationRecords.size(), (int) requestSizes.get(0));
+            Assert.assertEquals(mutationRecords.size(), (int) requestSizes.get(1));
+            Assert.assertTrue(requestSizes.subList(2, requestSizes.size()).stream().allMatch(size -> size < mutationRecords.size()));
+            // halving 17 variants isolates one of them in at most 5 splits of 2 requests each
+            Assert.assertTrue("unexpected number of requests: " + requestSizes, requestSizes.size() <= 2 + 2 * 5);
+            for (AnnotatedRecord record : records) {
+                if (record.getTUMOR_SAMPLE_BARCODE().equals(failingRecord.getTUMOR_SAMPLE_BARCODE())) {
+                    Assert.assertEquals("FAILED", record.getANNOTATION_STATUS());
+                    Assert.assertEquals("Batch annotation failed", record.getErrorMessage());
+                } else {
+                    Assert.assertEquals("SUCCESS", record.getANNOTATION_STATUS());
+                }
+            }
+            Mockito.verify(summaryStatistics, Mockito.times(1)).addFailedAnnotatedRecordDueToServer(Mockito.any(), Mockito.any(), Mockito.any());
+            Mockito.verify(summaryStatistics).addFailedAnnotatedRecordDueToServer(Mockito.same(failingRecord), Mockito.eq("Batch annotation failed"), Mockito.eq("mskcc"));
+        } finally {
+            resetAnnotatorFields(annotatorFields);
+        }
+    }
+
+    /**
+     * Test that a partition failing with a server error is reported as failed without splitting it.
+     */
+    @Test
+    public void testFailedPartitionNotSplitOnServerError() throws Exception {
+        List<MutationRecord> mutationRecords = makeMockMutationRecords();
+        String failingLocation = annotator.parseGenomicLocationString(mutationRecords.get(6), false);
+        List<Integer> requestSizes = new ArrayList<>();
+        Map<String, Object> annotatorFields = setSplitFailedPartitions(makeFailingVariantApiClient(failingLocation, 503, requestSizes), 32);
+        try {
+            AnnotationSummaryStatistics summaryStatistics = Mockito.mock(AnnotationSummaryStatistics.class);
+            List<AnnotatedRecord> records = annotator.getAnnotatedRecordsUsingPOST(summaryStatistics, mutationRecords,
+                    "mskcc", false, true, "all", false, false, false, null);
+
+            Assert.assertEquals(Arrays.asList(mutationRecords.size(), mutationRecords.size()), requestSizes);
+            for (AnnotatedRecord record : records) {
+                Assert.assertEquals("FAILED", record.getANNOTATION_STATUS());
+            }
+        } finally {
+            resetAnnotatorFields(annotatorFields);
+        }
+    }
+
+    /**
+     * Test that no more split requests than genomenexus.post_max_split_requests are sent for a partition.
+     */
+    @Test
+    public void testFailedPartitionSplitRequestsLimited() throws Exception {
+        List<MutationRecord> mutationRecords = makeMockMutationRecords();
+        MutationRecord failingRecord = mutationRecords.get(6);
+        String failingLocation = annotator.parseGenomicLocationString(failingRecord, false);
+        List<Integer> requestSizes = new ArrayList<>();
+        Map<String, Object> annotatorFields = setSplitFailedPartitions(makeFailingVariantApiClient(failingLocation, 400, requestSizes), 2);
+        try {
+            AnnotationSummaryStatistics summaryStatistics = Mockito.mock(AnnotationSummaryStatistics.class);
+            List<AnnotatedRecord> records = annotator.getAnnotatedRecordsUsingPOST(summaryStatistics, mutationRecords,
+                    "mskcc", false, true, "all", false, false, false, null);
+
+            // the partition and its retry, then two split requests, the variants left are reported as failed together
+            Assert.assertEquals(4, requestSizes.size());
+            long failedRecords = records.stream().filter(record -> "FAILED".equals(record.getANNOTATION_STATUS())).count();
+            Assert.assertTrue("unexpected number of failed records: " + failedRecords, failedRecords > 1);
+            Assert.assertEquals("FAILED", records.get(mutationRecords.indexOf(failingRecord)).getANNOTATION_STATUS());
+        } finally {
+            resetAnnotatorFields(annotatorFields);
+        }
+    }
+
+    /**
+     * Returns an api client answering POST requests with the mock POST responses, except for requests
+     * including failingLocation that fail with the given status. The size of every request is recorded.
+     */
+    private AnnotationControllerApi makeFailingVariantApiClient(String failingLocation, int status, List<Integer> requestSizes) throws Exception {
+        AnnotationControllerApi apiClient = Mockito.mock(AnnotationControllerApi.class);
+        Mockito.when(apiClient.fetchVariantAnnotationByGenomicLocationPOST(Mockito.anyList(), Mockito.any(), Mockito.any(), Mockito.anyList()))
+            .thenAnswer(invocation -> {
+                List<GenomicLocation> locations = invocation.getArgument(0);
+                requestSizes.add(locations.size());
+                List<VariantAnnotation> gnResponses = new ArrayList<>();
+                for (GenomicLocation location : locations) {
+                    VariantAnnotation gnResponse = annotator.makeMockPOSTResponse(location);
+                    if (gnResponse.getOriginalVariantQuery().equals(failingLocation)) {
+                        throw new ApiException(status, "Request failed with status " + status);
+                    }
+                    gnResponses.add(gnResponse);
+                }
+                return gnResponses;
+            });
+        return apiClient;
+    }
+
+    private Map<String, Object> setSplitFailedPartitions(AnnotationControllerApi apiClient, int postMaxSplitRequests) {
+        Map<String, Object> annotatorFields = new HashMap<>();
+        annotatorFields.put("apiClient", apiClient);
+        annotatorFields.put("postMaxRetries", 1);
+        annotatorFields.put("postRetryBackoffMillis", 0L);
+        annotatorFields.put("postSplitFailedPartitions", true);
+        annotatorFields.put("postMaxSplitRequests", postMaxSplitRequests);
+        // annotations must come from the api client rather than from the cache filled by earlier tests
+        annotatorFields.put("inMemoryAnnotationCache", null);
+        annotatorFields.put("memoryCacheMaxEntries", 0L);
+        return setAnnotatorFields(annotatorFields);
+    }
+
+    private static final Set<String> TIERED_ENRICHMENT_CLASSIFICATIONS = new HashSet<>(Arrays.asList("Missense_Mutation", "Nonsense_Mutation"));
+    private static final String ENRICHED_HGVSP_SHORT = "p.ENRICHED";
+
+    /**
+     * Returns an api client answering POST requests with the mock POST responses. Requests for the
+     * enrichment fields are recorded and either fail or return responses marked with ENRICHED_HGVSP_SHORT.
+     */
+    private AnnotationControllerApi makeTieredEnrichmentApiClient(List<List<GenomicLocation>> enrichmentRequests, boolean enrichmentFails) throws Exception {
+        AnnotationControllerApi apiClient = Mockito.mock(AnnotationControllerApi.class);
+        Mockito.when(apiClient.fetchVariantAnnotationByGenomicLocationPOST(Mockito.anyList(), Mockito.any(), Mockito.any(), Mockito.anyList()))
+            .thenAnswer(invocation -> {
+                List<GenomicLocation> locations = invocation.getArgument(0);
+                List<String> fields = invocation.getArgument(3);
+                boolean enrichment = fields.contains("my_variant_info");
+                if (enrichment) {
+                    enrichmentRequests.add(new ArrayList<>(locations));
+                    if (enrichmentFails) {
+                        throw new ApiException(500, "enrichment failed");
+                    }
+                }
+                List<VariantAnnotation> gnResponses = new ArrayList<>();
+                for (GenomicLocation location : locations) {
+                    VariantAnnotation gnResponse = annotator.makeMockPOSTResponse(location);
+                    if (enrichment) {
+                        gnResponse.getAnnotationSummary().getTranscriptConsequences().get(0).setHgvspShort(ENRICHED_HGVSP_SHORT);
+                    }
+                    gnResponses.add(gnResponse);
+                }
+                return gnResponses;
+            });
+        return apiClient;
+    }
+
+    private Map<String, Object> setTieredEnrichment(AnnotationControllerApi apiClient) {
+        Map<String, Object> annotatorFields = new HashMap<>();
+        annotatorFields.put("apiClient", apiClient);
+        annotatorFields.put("enrichmentFields", "annotation_summary,my_variant_info");
+        annotatorFields.put("tieredEnrichmentEnabled", true);
+        annotatorFields.put("tieredEnrichmentVariantClassifications", String.join(",", TIERED_ENRICHMENT_CLASSIFICATIONS));
+        annotatorFields.put("postRetryBackoffMillis", 0L);
+        // annotations must come from the api client rather than from the cache filled by earlier tests
+        annotatorFields.put("inMemoryAnnotationCache", null);
+        annotatorFields.put("memoryCacheMaxEntries", 0L);
+        return setAnnotatorFields(annotatorFields);
+    }
+
+    /**
+     * Sets annotator fields and returns their previous values, to be restored with resetAnnotatorFields.
+     */
+    private Map<String, Object> setAnnotatorFields(Map<String, Object> annotatorFields) {
+        Map<String, Object> previousFields = new HashMap<>();
+        for (Map.Entry<String, Object> field : annotatorFields.entrySet()) {
+            previousFields.put(field.getKey(), ReflectionTestUtils.getField(annotator, field.getKey()));
+            ReflectionTestUtils.setField(annotator, field.getKey(), field.getValue());
+        }
+        return previousFields;
+    }
+
+    private void resetAnnotatorFields(Map<String, Object> previousFields) {
+        previousFields.forEach((name, value) -> ReflectionTestUtils.setField(annotator, name, value));
     }
 
     private List<AnnotatedRecord> makeMockAnnotatedRecordsWithPost() {
@@ -0,0 +1,73 @@
+package org.cbioportal.annotator.internal;
+
+import org.genome_nexus.client.VariantAnnotation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryAnnotationCacheTest {
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedWhenEntryLimitIsReached() {
+        InMemoryAnnotationCache cache = new InMemoryAnnotationCache(2, Long.MAX_VALUE);
+        cache.put("a", makeVariantAnnotation("a"));
+        cache.put("b", makeVariantAnnotation("b"));
+        // touch "a" so "b" becomes the least recently used entry
+        assertNotNull(cache.get("a"));
+        cache.put("c", makeVariantAnnotation("c"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("b"));
+        assertEquals("a", cache.get("a").getVariant());
+        assertEquals("c", cache.get("c").getVariant());
+    }
+
+    @Test
+    void entriesAreEvictedWhenSizeLimitIsReached() {
+        InMemoryAnnotationCache unbounded = new InMemoryAnnotationCache(Long.MAX_VALUE, Long.MAX_VALUE);
+        unbounded.put("a", makeVariantAnnotation("a"));
+        long entrySize = unbounded.getSizeInBytes();
+
+        InMemoryAnnotationCache cache = new InMemoryAnnotationCache(Long.MAX_VALUE, entrySize * 2);
+        cache.put("a", makeVariantAnnotation("a"));
+        cache.put("b", makeVariantAnnotation("b"));
+        cache.put("c", makeVariantAnnotation("c"));
+        assertEquals(2, cache.size());
+        assertEquals(entrySize * 2, cache.getSizeInBytes());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void replacingAnEntryDoesNotGrowTheCache() {
+        InMemoryAnnotationCache cache = new InMemoryAnnotationCache(10, Long.MAX_VALUE);
+        cache.put("a", makeVariantAnnotation("a"));
+        long sizeInBytes = cache.getSizeInBytes();
+        cache.put("a", makeVariantAnnotation("a"));
+        assertEquals(1, cache.size());
+        assertEquals(sizeInBytes, cache.getSizeInBytes());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    void cachedAnnotationIsReturnedWithoutCopying() {
+        InMemoryAnnotationCache cache = new InMemoryAnnotationCache(10, Long.MAX_VALUE);
+        VariantAnnotation variantAnnotation = makeVariantAnnotation("a");
+        cache.put("a", variantAnnotation);
+        assertSame(variantAnnotation, cache.get("a"));
+    }
+
+    @Test
+    void nonLatin1TextIsCountedWithTwoBytesPerCharacter() {
+        InMemoryAnnotationCache cache = new InMemoryAnnotationCache(10, Long.MAX_VALUE);
+        String variant = "\u0394".repeat(1000);
+        cache.put("a", makeVariantAnnotation(variant));
+        assertTrue(cache.getSizeInBytes() >= 2L * variant.length());
+    }
+
+    private VariantAnnotation makeVariantAnnotation(String variant) {
+        VariantAnnotation variantAnnotation = new VariantAnnotation();
+        variantAnnotation.setVariant(variant);
+        variantAnnotation.setSuccessfullyAnnotated(true);
+        return variantAnnotation;
+    }
+}
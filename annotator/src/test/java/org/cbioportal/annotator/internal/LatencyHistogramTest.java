@@ -0,0 +1,42 @@
+package org.cbioportal.annotator.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getPercentileNanos(99));
+        assertEquals(0.0, histogram.getMeanNanos());
+    }
+
+    @Test
+    void percentilesAreWithinThreePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis * 1_000_000L);
+        }
+        assertEquals(1000L, histogram.getCount());
+        assertEquals(500_500L * 1_000_000L, histogram.getTotalNanos());
+        assertEquals(1_000_000_000L, histogram.getMaxNanos());
+        assertEquals(1_000_000_000L, histogram.getPercentileNanos(100));
+        for (double percentile : new double[] { 50, 90, 99 }) {
+            long expected = (long) (percentile * 10) * 1_000_000L;
+            long actual = histogram.getPercentileNanos(percentile);
+            assertTrue(actual >= expected && actual <= expected * 1.03, "p" + percentile + ": " + actual);
+        }
+    }
+
+    @Test
+    void bucketsCoverEveryValue() {
+        for (long value : new long[] { 0L, 31L, 32L, 33L, 1_000_000L, Long.MAX_VALUE }) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.bucketUpperBound(index - 1) < value);
+        }
+    }
+}
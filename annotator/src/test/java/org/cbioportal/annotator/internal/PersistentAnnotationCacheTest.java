@@ -0,0 +1,57 @@
+package org.cbioportal.annotator.internal;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.genome_nexus.client.VariantAnnotation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentAnnotationCacheTest {
+
+    private static final String NAMESPACE = "mskcc|annotation_summary|1.0.0";
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    void annotationsArePersistedAcrossInstances() throws Exception {
+        String cachePath = cacheDirectory.resolve("annotation-cache.db").toString();
+        Map<String, VariantAnnotation> annotations = new HashMap<>();
+        annotations.put("7,140453136,140453136,A,T", makeVariantAnnotation("7:g.140453136A>T"));
+        annotations.put("17,7577539,7577539,G,A", makeVariantAnnotation("17:g.7577539G>A"));
+        try (PersistentAnnotationCache cache = new PersistentAnnotationCache(cachePath)) {
+            cache.putAll(NAMESPACE, annotations);
+        }
+        try (PersistentAnnotationCache cache = new PersistentAnnotationCache(cachePath)) {
+            Map<String, VariantAnnotation> cachedAnnotations = cache.getAll(NAMESPACE,
+                    Arrays.asList("7,140453136,140453136,A,T", "17,7577539,7577539,G,A", "1,1,1,A,C"));
+            assertEquals(2, cachedAnnotations.size());
+            assertEquals("7:g.140453136A>T", cachedAnnotations.get("7,140453136,140453136,A,T").getVariant());
+            assertTrue(cachedAnnotations.get("17,7577539,7577539,G,A").isSuccessfullyAnnotated());
+            assertFalse(cachedAnnotations.containsKey("1,1,1,A,C"));
+        }
+    }
+
+    @Test
+    void annotationsAreScopedByNamespace() throws Exception {
+        try (PersistentAnnotationCache cache = new PersistentAnnotationCache(cacheDirectory.resolve("annotation-cache.db").toString())) {
+            Map<String, VariantAnnotation> annotations = new HashMap<>();
+            annotations.put("7,140453136,140453136,A,T", makeVariantAnnotation("7:g.140453136A>T"));
+            cache.putAll(NAMESPACE, annotations);
+            assertTrue(cache.getAll("uniprot|annotation_summary|1.0.0", annotations.keySet()).isEmpty());
+            assertEquals(1, cache.getAll(NAMESPACE, annotations.keySet()).size());
+        }
+    }
+
+    private VariantAnnotation makeVariantAnnotation(String variant) {
+        VariantAnnotation variantAnnotation = new VariantAnnotation();
+        variantAnnotation.setVariant(variant);
+        variantAnnotation.setSuccessfullyAnnotated(true);
+        return variantAnnotation;
+    }
+}
@@ -0,0 +1,59 @@
+package org.cbioportal.annotator.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhaseProfilerTest {
+
+    @Test
+    void phasesAreOnlyMeasuredWhenEnabled() {
+        PhaseProfiler profiler = new PhaseProfiler();
+        profiler.start(PhaseProfiler.Phase.PARSE).setRecords(10).close();
+        assertEquals(0L, profiler.getCalls(PhaseProfiler.Phase.PARSE));
+
+        profiler.setEnabled(true);
+        profiler.start(PhaseProfiler.Phase.PARSE).setRecords(10).setBytes(100L).close();
+        try (PhaseProfiler.Timer timer = profiler.start(PhaseProfiler.Phase.PARSE)) {
+            timer.setRecords(5).setBytes(50L);
+        }
+        assertEquals(2L, profiler.getCalls(PhaseProfiler.Phase.PARSE));
+        assertEquals(15L, profiler.getRecords(PhaseProfiler.Phase.PARSE));
+        assertEquals(150L, profiler.getBytes(PhaseProfiler.Phase.PARSE));
+        assertEquals(0L, profiler.getCalls(PhaseProfiler.Phase.WRITE));
+    }
+
+    @Test
+    void breakdownListsTimedPhasesOnly() {
+        PhaseProfiler profiler = new PhaseProfiler();
+        profiler.setEnabled(true);
+        profiler.start(PhaseProfiler.Phase.CONVERT).setRecords(3).close();
+        profiler.start(PhaseProfiler.Phase.ENCODE).setRecords(1).setBytes(20L).close();
+        String breakdown = profiler.getBreakdown();
+        assertTrue(breakdown.contains(PhaseProfiler.Phase.CONVERT.getLabel()), breakdown);
+        assertTrue(breakdown.contains(PhaseProfiler.Phase.ENCODE.getLabel()), breakdown);
+        assertFalse(breakdown.contains(PhaseProfiler.Phase.NETWORK.getLabel()), breakdown);
+        assertFalse(breakdown.contains(PhaseProfiler.Phase.WRITE.getLabel()), breakdown);
+    }
+
+    @Test
+    void helperThreadsOnlyAddCpuTimeAndAllocations() throws Exception {
+        PhaseProfiler profiler = new PhaseProfiler();
+        profiler.setEnabled(true);
+        Thread helper = new Thread(() -> {
+            try (PhaseProfiler.Timer timer = profiler.startHelper(PhaseProfiler.Phase.PARSE)) {
+                timer.setRecords(100);
+                StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < 10000; i++) {
+                    builder.append(i);
+                }
+                assertTrue(builder.length() > 0);
+            }
+        });
+        helper.start();
+        helper.join();
+        assertEquals(0L, profiler.getCalls(PhaseProfiler.Phase.PARSE));
+        assertEquals(0L, profiler.getRecords(PhaseProfiler.Phase.PARSE));
+        assertTrue(profiler.getAllocatedBytes(PhaseProfiler.Phase.PARSE) > 0);
+    }
+}
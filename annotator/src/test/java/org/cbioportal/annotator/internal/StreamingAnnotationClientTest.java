@@ -0,0 +1,54 @@
+package org.cbioportal.annotator.internal;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.genome_nexus.client.VariantAnnotation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingAnnotationClientTest {
+
+    private final StreamingAnnotationClient client = new StreamingAnnotationClient("http://localhost:38080/", 1000);
+
+    @Test
+    void decodesEachAnnotationOfTheArrayInOrder() throws Exception {
+        String json = "[{\"variant\":\"7:g.140453136A>T\",\"assembly_name\":\"GRCh37\",\"successfully_annotated\":true,"
+            + "\"transcript_consequences\":[{\"transcript_id\":\"ENST00000288602\",\"gene_symbol\":\"BRAF\"}],"
+            + "\"annotation_summary\":{\"variant\":\"7:g.140453136A>T\",\"canonicalTranscriptId\":\"ENST00000288602\"}},"
+            + "{\"variant\":\"12:g.25398284C>T\",\"successfully_annotated\":false,\"errorMessage\":\"failed\"}]";
+        List<VariantAnnotation> annotations = new ArrayList<>();
+        client.decode(new StringReader(json), annotations::add);
+
+        assertEquals(2, annotations.size());
+        assertEquals("7:g.140453136A>T", annotations.get(0).getVariant());
+        assertEquals("GRCh37", annotations.get(0).getAssemblyName());
+        assertTrue(annotations.get(0).isSuccessfullyAnnotated());
+        assertEquals("ENST00000288602", annotations.get(0).getAnnotationSummary().getCanonicalTranscriptId());
+        assertEquals("12:g.25398284C>T", annotations.get(1).getVariant());
+        assertFalse(annotations.get(1).isSuccessfullyAnnotated());
+        assertEquals("failed", annotations.get(1).getErrorMessage());
+    }
+
+    @Test
+    void skipsFieldsTheAnnotatorDoesNotRead() throws Exception {
+        String json = "[{\"variant\":\"7:g.140453136A>T\",\"most_severe_consequence\":\"missense_variant\","
+            + "\"transcript_consequences\":[{\"transcript_id\":\"ENST00000288602\",\"gene_symbol\":\"BRAF\"}]}]";
+        List<VariantAnnotation> annotations = new ArrayList<>();
+        client.decode(new StringReader(json), annotations::add);
+
+        assertEquals("7:g.140453136A>T", annotations.get(0).getVariant());
+        assertNull(annotations.get(0).getMostSevereConsequence());
+        assertTrue(annotations.get(0).getTranscriptConsequences() == null || annotations.get(0).getTranscriptConsequences().isEmpty());
+    }
+
+    @Test
+    void decodesEmptyAndNullResponses() throws Exception {
+        List<VariantAnnotation> annotations = new ArrayList<>();
+        client.decode(new StringReader("[]"), annotations::add);
+        client.decode(new StringReader("null"), annotations::add);
+        assertTrue(annotations.isEmpty());
+    }
+}
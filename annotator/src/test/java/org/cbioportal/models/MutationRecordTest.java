@@ -118,6 +118,16 @@ public class MutationRecordTest {
         testSortedAdditionalValues(expandedMutationRecordWithRedundancy, redundantAdditionalValuesExpected);
     }
 
+    // test that a copied record has the same values but does not share its additional properties with the original
+    @Test
+    public void testCopyHasOwnAdditionalProperties() {
+        MutationRecord copy = expandedMutationRecord.copy();
+        Assert.assertEquals(expandedMutationRecord.getHeaderWithAdditionalFields(), copy.getHeaderWithAdditionalFields());
+        Assert.assertEquals(expandedMutationRecord.getSortedAdditionalPropertiesValues(), copy.getSortedAdditionalPropertiesValues());
+        copy.addAdditionalProperty("copyOnlyProperty", "value");
+        Assert.assertFalse(expandedMutationRecord.getAdditionalProperties().containsKey("copyOnlyProperty"));
+    }
+
     private void testMutationHeaders(MutationRecord testMutationRecord, List<String> expectedAdditionalHeaders) {
         List<String> expectedMutationHeaders = findExpectedHeaders(expectedAdditionalHeaders);
         List<String> actualMutationHeaders = testMutationRecord.getHeaderWithAdditionalFields();
@@ -0,0 +1,44 @@
+package org.cbioportal.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordSchemaTest {
+
+    @Test
+    void recordsShareTheirSchema() {
+        assertSame(new MutationRecord().getSchema(), new MutationRecord().getSchema());
+        assertSame(new AnnotatedRecord().getSchema(), new AnnotatedRecord().getSchema());
+        assertSame(RecordSchema.MUTATION_RECORD, new AnnotatedRecord(new MutationRecord()).getSchema());
+        assertThrows(UnsupportedOperationException.class, () -> new MutationRecord().getHeader().add("column"));
+    }
+
+    @Test
+    void annotatedRecordSchemaAddsAnnotatedColumns() {
+        List<String> columns = RecordSchema.ANNOTATED_RECORD.getColumns();
+        assertEquals(RecordSchema.MUTATION_RECORD.size() + 9, columns.size());
+        assertEquals(columns.indexOf("Variant_Classification") - 1, columns.indexOf("Consequence"));
+        assertEquals(Arrays.asList("HGVSc", "HGVSp", "HGVSp_Short", "Transcript_ID", "RefSeq", "Protein_position",
+                "Codons", "Exon_Number"), columns.subList(columns.size() - 8, columns.size()));
+        assertTrue(RecordSchema.ANNOTATED_RECORD.contains("HGVSp_Short"));
+        assertFalse(RecordSchema.MUTATION_RECORD.contains("HGVSp_Short"));
+    }
+
+    @Test
+    void extendedSchemasAreShared() {
+        AnnotatedRecord first = new AnnotatedRecord();
+        AnnotatedRecord second = new AnnotatedRecord();
+        first.setGnomadFields("1", "2", "3", "4", "5", "6", "7", "8", "9");
+        second.setGnomadFields("1", "2", "3", "4", "5", "6", "7", "8", "9");
+        assertSame(first.getSchema(), second.getSchema());
+        assertTrue(first.getHeader().containsAll(AnnotatedRecord.GNOMAD_COLUMNS));
+
+        // columns are only added once
+        first.setGnomadFields("1", "2", "3", "4", "5", "6", "7", "8", "9");
+        assertEquals(RecordSchema.ANNOTATED_RECORD.size() + AnnotatedRecord.GNOMAD_COLUMNS.size(), first.getHeader().size());
+    }
+}